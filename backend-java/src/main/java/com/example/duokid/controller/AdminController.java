@@ -2,12 +2,20 @@ package com.example.duokid.controller;
 
 import com.example.duokid.model.*;
 import com.example.duokid.repo.*;
+import com.example.duokid.service.AiPythonClient;
+import com.example.duokid.service.ContentCacheService;
 import com.example.duokid.service.DatabaseSeederService;
+import com.example.duokid.service.GradingService;
 import com.example.duokid.service.LessonDataImportService;
-import com.example.duokid.service.UserService;
+import com.example.duokid.service.QueryMetrics;
+import com.example.duokid.service.TtsCacheService;
+import com.example.duokid.service.UserStateService;
+import com.example.duokid.service.WalletService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -17,38 +25,57 @@ import org.springframework.security.crypto.bcrypt.BCrypt;
 
 import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/admin")
 public class AdminController {
 
     private final LessonDataImportService lessonImportService;
-    private final UserService userService;
     private final UserRepository userRepository;
     private final LessonRepository lessonRepository;
     private final GrammarRepository grammarRepository;
     private final TestRepository testRepository;
     private final TestQuestionRepository testQuestionRepository;
     private final DatabaseSeederService databaseSeederService;
+    private final AiPythonClient aiPythonClient;
+    private final TtsCacheService ttsCacheService;
+    private final GradingService gradingService;
+    private final ContentCacheService contentCacheService;
+    private final QueryMetrics queryMetrics;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UserStateService userStateService;
+    private final WalletService walletService;
 
     public AdminController(
             LessonDataImportService lessonImportService,
-            UserService userService,
             UserRepository userRepository,
             LessonRepository lessonRepository,
             GrammarRepository grammarRepository,
             TestRepository testRepository,
             TestQuestionRepository testQuestionRepository,
-            DatabaseSeederService databaseSeederService) {
+            DatabaseSeederService databaseSeederService,
+            AiPythonClient aiPythonClient,
+            TtsCacheService ttsCacheService,
+            GradingService gradingService,
+            ContentCacheService contentCacheService,
+            QueryMetrics queryMetrics,
+            UserStateService userStateService,
+            WalletService walletService) {
         this.lessonImportService = lessonImportService;
-        this.userService = userService;
         this.userRepository = userRepository;
         this.lessonRepository = lessonRepository;
         this.grammarRepository = grammarRepository;
         this.testRepository = testRepository;
         this.testQuestionRepository = testQuestionRepository;
         this.databaseSeederService = databaseSeederService;
+        this.aiPythonClient = aiPythonClient;
+        this.ttsCacheService = ttsCacheService;
+        this.gradingService = gradingService;
+        this.contentCacheService = contentCacheService;
+        this.queryMetrics = queryMetrics;
+        this.userStateService = userStateService;
+        this.walletService = walletService;
     }
 
     private boolean isAdmin(User user) {
@@ -57,7 +84,7 @@ public class AdminController {
 
     @GetMapping
     public String adminDashboard(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         if (!isAdmin(user)) {
             return "redirect:/dashboard?error=no-permission";
@@ -80,7 +107,7 @@ public class AdminController {
 
     @GetMapping("/import-lessons")
     public String showImportLessonsPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         if (!isAdmin(user)) return "redirect:/dashboard?error=no-permission";
         return "admin-import-lessons";
@@ -90,7 +117,7 @@ public class AdminController {
     public String importLessons(@RequestParam("file") MultipartFile file,
                                HttpSession session,
                                RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         if (!isAdmin(user)) return "redirect:/dashboard?error=no-permission";
 
@@ -122,7 +149,7 @@ public class AdminController {
 
     @GetMapping("/import-tests")
     public String showImportTestsPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         if (!isAdmin(user)) return "redirect:/dashboard?error=no-permission";
         return "admin-import-tests";
@@ -132,7 +159,7 @@ public class AdminController {
     public String importTests(@RequestParam("file") MultipartFile file,
                              HttpSession session,
                              RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         if (!isAdmin(user)) return "redirect:/dashboard?error=no-permission";
 
@@ -192,6 +219,7 @@ public class AdminController {
                     }
                 }
             }
+            contentCacheService.evictAll();
 
             if (errors.isEmpty()) {
                 redirectAttributes.addFlashAttribute("success", 
@@ -211,7 +239,7 @@ public class AdminController {
 
     @GetMapping("/rewards")
     public String showRewardsPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         if (!isAdmin(user)) return "redirect:/dashboard?error=no-permission";
         return "admin-rewards";
@@ -224,7 +252,7 @@ public class AdminController {
                              @RequestParam(value = "hearts", defaultValue = "0") int hearts,
                              HttpSession session,
                              RedirectAttributes redirectAttributes) {
-        User admin = (User) session.getAttribute("user");
+        User admin = userStateService.currentUser(session);
         if (admin == null) return "redirect:/login";
         if (!isAdmin(admin)) return "redirect:/dashboard?error=no-permission";
 
@@ -235,10 +263,12 @@ public class AdminController {
                 return "redirect:/admin/rewards";
             }
 
-            targetUser.setXp(targetUser.getXp() + xp);
-            targetUser.setGems(targetUser.getGems() + gems);
-            targetUser.setHearts(targetUser.getHearts() + hearts);
-            userService.save(targetUser);
+            User rewarded = walletService.change(targetUser.getId(), xp, gems, hearts,
+                    "ADMIN_REWARD", "Admin " + admin.getDisplayName() + " tặng thưởng");
+            if (rewarded == null) {
+                redirectAttributes.addFlashAttribute("error", "Không thể trừ quá số dư hiện có của " + targetUser.getDisplayName());
+                return "redirect:/admin/rewards";
+            }
 
             redirectAttributes.addFlashAttribute("success", 
                 String.format("Đã tặng phần thưởng cho %s: +%d XP, +%d Gems, +%d Hearts", 
@@ -250,9 +280,67 @@ public class AdminController {
         return "redirect:/admin/rewards";
     }
 
+    /**
+     * Tình trạng kết nối tới Python AI service: cầu dao, số liệu từng endpoint, cache TTS và chấm điểm
+     */
+    @GetMapping("/ai/metrics")
+    @ResponseBody
+    public ResponseEntity<?> aiMetrics(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (!isAdmin(user)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        return ResponseEntity.ok(Map.of(
+                "circuitBreaker", aiPythonClient.getCircuitBreaker(),
+                "endpoints", aiPythonClient.getMetrics(),
+                "ttsCache", ttsCacheService.getStats(),
+                "grading", gradingService.getStats()));
+    }
+
+    /**
+     * Số liệu cache cấp 2 của nội dung học (từng vùng: giới hạn, số phần tử, hit / miss / put)
+     */
+    @GetMapping("/cache/content")
+    @ResponseBody
+    public ResponseEntity<?> contentCacheStats(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (!isAdmin(user)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        return ResponseEntity.ok(contentCacheService.getStats());
+    }
+
+    /**
+     * Xóa cache nội dung bằng tay (vd. sau khi sửa dữ liệu trực tiếp trong H2 console)
+     */
+    @PostMapping("/cache/content/evict")
+    @ResponseBody
+    public ResponseEntity<?> evictContentCache(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (!isAdmin(user)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        contentCacheService.evictAll();
+        return ResponseEntity.ok(contentCacheService.getStats());
+    }
+
+    /**
+     * Số câu SQL theo từng endpoint từ lúc khởi động (hoặc lần reset gần nhất), nhiều nhất trước
+     */
+    @GetMapping("/query-metrics")
+    @ResponseBody
+    public ResponseEntity<?> queryMetrics(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (!isAdmin(user)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        return ResponseEntity.ok(queryMetrics.getStats());
+    }
+
+    @PostMapping("/query-metrics/reset")
+    @ResponseBody
+    public ResponseEntity<?> resetQueryMetrics(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (!isAdmin(user)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        queryMetrics.reset();
+        return ResponseEntity.ok(Map.of("reset", true));
+    }
+
     @GetMapping("/vip-avatar")
     public String showVipAvatarPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         if (!isAdmin(user)) return "redirect:/dashboard?error=no-permission";
 
@@ -266,7 +354,7 @@ public class AdminController {
                                @RequestParam("avatarUrl") String avatarUrl,
                                HttpSession session,
                                RedirectAttributes redirectAttributes) {
-        User admin = (User) session.getAttribute("user");
+        User admin = userStateService.currentUser(session);
         if (admin == null) return "redirect:/login";
         if (!isAdmin(admin)) return "redirect:/dashboard?error=no-permission";
 
@@ -277,8 +365,7 @@ public class AdminController {
                 return "redirect:/admin/vip-avatar";
             }
 
-            targetUser.setAvatar(avatarUrl);
-            userService.save(targetUser);
+            userStateService.update(targetUser.getId(), u -> u.setAvatar(avatarUrl));
 
             redirectAttributes.addFlashAttribute("success", 
                 String.format("Đã tặng avatar VIP cho %s!", targetUser.getDisplayName()));
@@ -333,7 +420,7 @@ public class AdminController {
     @PostMapping("/seed-data")
     public String seedData(HttpSession session,
                           RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         if (!isAdmin(user)) return "redirect:/dashboard?error=no-permission";
 
@@ -2,6 +2,7 @@ package com.example.duokid.controller;
 
 import com.example.duokid.model.User;
 import com.example.duokid.service.UserService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -13,9 +14,11 @@ import org.springframework.web.bind.annotation.RequestParam;
 public class AuthController {
 
     private final UserService userService;
+    private final UserStateService userStateService;
 
-    public AuthController(UserService userService) {
+    public AuthController(UserService userService, UserStateService userStateService) {
         this.userService = userService;
+        this.userStateService = userStateService;
     }
 
     @GetMapping("/login")
@@ -39,8 +42,8 @@ public class AuthController {
             model.addAttribute("error", "Sai email hoặc mật khẩu");
             return "login";
         }
-        user = userService.checkDailyHeartRefill(user);
-        session.setAttribute("user", user);
+        userStateService.login(session, user);
+        userService.checkDailyHeartRefill(userStateService.get(user.getId()));
         
         // Tất cả user đều vào dashboard, admin có thể chuyển sang trang admin từ sidebar
         return "redirect:/dashboard";
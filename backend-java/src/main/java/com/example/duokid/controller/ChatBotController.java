@@ -5,29 +5,40 @@ import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.example.duokid.service.VocabularyService;
+import com.example.duokid.service.AiPythonClient;
 import com.example.duokid.service.LessonService;
+import com.example.duokid.service.UserStateService;
+import com.example.duokid.service.VocabularyService;
 import com.example.duokid.model.Lesson;
 import com.example.duokid.model.Vocabulary;
 import java.util.List;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Controller
 @RequestMapping("/chatbot")
 public class ChatBotController {
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final String PYTHON_SERVICE_URL = "http://localhost:5000";
+    private static final String CHAT_UNAVAILABLE = "{\"error\":\"Chat service unavailable\"}";
 
+    // Gọi Python service qua client dùng chung (connection pool, deadline, cầu dao)
+    private final AiPythonClient aiPythonClient;
     private final VocabularyService vocabularyService;
     private final LessonService lessonService;
+    private final UserStateService userStateService;
 
-    public ChatBotController(VocabularyService vocabularyService, LessonService lessonService) {
+    public ChatBotController(AiPythonClient aiPythonClient, VocabularyService vocabularyService, LessonService lessonService,
+                             UserStateService userStateService) {
+        this.aiPythonClient = aiPythonClient;
         this.vocabularyService = vocabularyService;
         this.lessonService = lessonService;
+        this.userStateService = userStateService;
     }
 
     // Small in-memory fallback for very common words (used if DB search misses)
@@ -50,7 +61,7 @@ public class ChatBotController {
      */
     @GetMapping
     public String chatbotPage(HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        User currentUser = userStateService.currentUser(session);
         if (currentUser == null) return "redirect:/login";
 
         model.addAttribute("user", currentUser);
@@ -64,177 +75,173 @@ public class ChatBotController {
      */
     @PostMapping("/api/chat")
     @ResponseBody
-    public ResponseEntity<?> chat(@RequestBody JsonNode request) {
-        try {
-            try {
-                String local = restTemplate.postForObject(
-                    PYTHON_SERVICE_URL + "/api/chat",
-                    request,
-                    String.class
-                );
-                if (local != null && !local.trim().isEmpty()) {
-                    return ResponseEntity.ok(local);
-                }
-            } catch (Exception ex) {
-                // ignore and fall through
-            }
-
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body("{\"error\":\"Chat service unavailable\"}");
+    public Mono<ResponseEntity<String>> chat(@RequestBody JsonNode request) {
+        return aiPythonClient.chat(request)
+                .filter(body -> !body.trim().isEmpty())
+                .map(body -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body))
+                .onErrorResume(e -> Mono.empty())
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(CHAT_UNAVAILABLE));
+    }
 
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body("{\"error\":\"Chat service error\"}");
-        }
+    /**
+     * Chat dạng stream (SSE): event "token" cho từng đoạn câu trả lời, "done" khi xong, "error" khi lỗi
+     */
+    @PostMapping(value = "/api/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public Flux<ServerSentEvent<String>> chatStream(@RequestBody JsonNode request) {
+        return aiPythonClient.streamChat(request)
+                .map(token -> ServerSentEvent.builder(token).event("token").build())
+                .concatWith(Flux.just(ServerSentEvent.builder("").event("done").build()))
+                .onErrorResume(e -> Flux.just(ServerSentEvent.builder("Chat service unavailable").event("error").build()));
     }
 
     /**
      * Proxy vocabulary lookup to Python service
+     * - Chờ tối đa python.service.vocabulary-timeout-ms, cầu dao mở thì bỏ qua ngay; request thread không bị giữ trong lúc chờ
+     * - Python không trả kết quả / lỗi thì tra cục bộ (từ phổ biến, database, nội dung bài học)
      */
     @PostMapping("/api/vocabulary")
     @ResponseBody
-    public ResponseEntity<?> vocabulary(@RequestBody JsonNode request) {
-        try {
-            // Try Python dictionary API first for broad coverage
-            try {
-                String fromPython = restTemplate.postForObject(
-                    PYTHON_SERVICE_URL + "/api/vocabulary",
-                    request,
-                    String.class
-                );
-                if (fromPython != null && !fromPython.trim().isEmpty()) {
-                    return ResponseEntity.ok(fromPython);
-                }
-            } catch (Exception ex) {
-                // ignore and fall through to local fallback
-            }
+    public Mono<ResponseEntity<String>> vocabulary(@RequestBody JsonNode request) {
+        return aiPythonClient.lookupVocabulary(request)
+                .filter(body -> !body.trim().isEmpty())
+                .map(body -> ResponseEntity.ok(body))
+                .onErrorResume(e -> Mono.empty())
+                // Tra database là blocking: chạy trên boundedElastic, không chạy trên event loop của WebClient
+                .switchIfEmpty(Mono.fromCallable(() -> localVocabulary(request))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body("{\"error\":\"Vocabulary lookup failed\"}")));
+    }
 
-            // Local fallback
-            String word = request.has("word") ? request.get("word").asText("") : "";
-            if (word == null || word.trim().isEmpty()) {
-                return ResponseEntity.badRequest().body("{\"error\":\"Word is required\"}");
-            }
-            // Check in-memory fallback first
-            String key = word.trim().toLowerCase();
-            if (FALLBACK_VOCAB.containsKey(key)) {
-                System.out.println("VOCAB FALLBACK HIT: " + key);
-                String[] d = FALLBACK_VOCAB.get(key);
-                String jsonF = String.format(
-                    "{\"word\":\"%s\",\"phonetic\":\"%s\",\"meaning\":\"%s\",\"example\":\"%s\"}",
-                    key, d[0], d[1], d[2]
-                );
-                return ResponseEntity.ok(jsonF);
-            }
+    /**
+     * Local fallback khi Python service không trả được kết quả
+     */
+    private ResponseEntity<String> localVocabulary(JsonNode request) {
+        String word = request.has("word") ? request.get("word").asText("") : "";
+        if (word == null || word.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body("{\"error\":\"Word is required\"}");
+        }
+        // Check in-memory fallback first
+        String key = word.trim().toLowerCase();
+        if (FALLBACK_VOCAB.containsKey(key)) {
+            System.out.println("VOCAB FALLBACK HIT: " + key);
+            String[] d = FALLBACK_VOCAB.get(key);
+            String jsonF = String.format(
+                "{\"word\":\"%s\",\"phonetic\":\"%s\",\"meaning\":\"%s\",\"example\":\"%s\"}",
+                key, d[0], d[1], d[2]
+            );
+            return ResponseEntity.ok(jsonF);
+        }
 
-            List<Vocabulary> results = vocabularyService.searchVocabularies(word.trim());
-            if (results != null && !results.isEmpty()) {
-                // Prefer exact match on english word or whole-word matches in fields
-                String kw = word.trim();
-                java.util.regex.Pattern whole = java.util.regex.Pattern.compile("\\b" + java.util.regex.Pattern.quote(kw) + "\\b", java.util.regex.Pattern.CASE_INSENSITIVE);
-
-                // First try exact englishWord match
-                Vocabulary v = results.stream()
-                    .filter(x -> x.getEnglishWord() != null && x.getEnglishWord().equalsIgnoreCase(kw))
-                    .findFirst()
-                    .orElse(null);
-
-                // Then try whole-word match across englishWord, vietnameseMeaning, exampleSentence
-                if (v == null) {
-                    v = results.stream()
-                        .filter(x -> (x.getEnglishWord() != null && whole.matcher(x.getEnglishWord()).find())
-                            || (x.getVietnameseMeaning() != null && whole.matcher(x.getVietnameseMeaning()).find())
-                            || (x.getExampleSentence() != null && whole.matcher(x.getExampleSentence()).find()))
-                        .findFirst().orElse(null);
-                }
+        List<Vocabulary> results = vocabularyService.searchVocabularies(word.trim());
+        if (results != null && !results.isEmpty()) {
+            // Prefer exact match on english word or whole-word matches in fields
+            String kw = word.trim();
+            java.util.regex.Pattern whole = java.util.regex.Pattern.compile("\\b" + java.util.regex.Pattern.quote(kw) + "\\b", java.util.regex.Pattern.CASE_INSENSITIVE);
+
+            // First try exact englishWord match
+            Vocabulary v = results.stream()
+                .filter(x -> x.getEnglishWord() != null && x.getEnglishWord().equalsIgnoreCase(kw))
+                .findFirst()
+                .orElse(null);
+
+            // Then try whole-word match across englishWord, vietnameseMeaning, exampleSentence
+            if (v == null) {
+                v = results.stream()
+                    .filter(x -> (x.getEnglishWord() != null && whole.matcher(x.getEnglishWord()).find())
+                        || (x.getVietnameseMeaning() != null && whole.matcher(x.getVietnameseMeaning()).find())
+                        || (x.getExampleSentence() != null && whole.matcher(x.getExampleSentence()).find()))
+                    .findFirst().orElse(null);
+            }
 
-                // Fallback to first result only if it contains a whole-word match
-                if (v == null) {
-                    Vocabulary candidate = results.get(0);
-                    boolean candidateMatches = (candidate.getEnglishWord() != null && whole.matcher(candidate.getEnglishWord()).find())
-                            || (candidate.getVietnameseMeaning() != null && whole.matcher(candidate.getVietnameseMeaning()).find())
-                            || (candidate.getExampleSentence() != null && whole.matcher(candidate.getExampleSentence()).find());
-                    if (candidateMatches) v = candidate;
-                }
-                // Build a simple JSON response matching Python format
-                String json = String.format(
-                    "{\"word\":\"%s\",\"phonetic\":\"%s\",\"meaning\":\"%s\",\"example\":\"%s\"}",
-                    v.getEnglishWord(), v.getIpaAmerican() == null ? "" : v.getIpaAmerican(),
-                    v.getVietnameseMeaning() == null ? "" : v.getVietnameseMeaning(),
-                    v.getExampleSentence() == null ? "" : v.getExampleSentence()
-                );
-                return ResponseEntity.ok(json);
+            // Fallback to first result only if it contains a whole-word match
+            if (v == null) {
+                Vocabulary candidate = results.get(0);
+                boolean candidateMatches = (candidate.getEnglishWord() != null && whole.matcher(candidate.getEnglishWord()).find())
+                        || (candidate.getVietnameseMeaning() != null && whole.matcher(candidate.getVietnameseMeaning()).find())
+                        || (candidate.getExampleSentence() != null && whole.matcher(candidate.getExampleSentence()).find());
+                if (candidateMatches) v = candidate;
             }
+            // Build a simple JSON response matching Python format
+            String json = String.format(
+                "{\"word\":\"%s\",\"phonetic\":\"%s\",\"meaning\":\"%s\",\"example\":\"%s\"}",
+                v.getEnglishWord(), v.getIpaAmerican() == null ? "" : v.getIpaAmerican(),
+                v.getVietnameseMeaning() == null ? "" : v.getVietnameseMeaning(),
+                v.getExampleSentence() == null ? "" : v.getExampleSentence()
+            );
+            return ResponseEntity.ok(json);
+        }
 
-            // Not found in DB/fallback — try searching lesson contentHtml
-            System.out.println("VOCAB NOT FOUND IN DB: " + word);
-            try {
-                java.util.List<Lesson> lessons = lessonService.findAll();
-                // More robust lesson HTML lookup: find <b>word</b> then extract surrounding <li> text
-                for (Lesson lesson : lessons) {
-                    String html = lesson.getContentHtml();
-                    if (html == null) continue;
-                    String lowered = html.toLowerCase();
-                    String token = "<b>" + word.toLowerCase() + "</b>";
-                    int idx = lowered.indexOf(token);
-                    if (idx == -1) continue;
-
-                    // find enclosing <li> ... </li>
-                    int liStart = lowered.lastIndexOf("<li", idx);
-                    int liEnd = lowered.indexOf("</li>", idx);
-                    if (liStart == -1 || liEnd == -1) continue;
-                    String li = html.substring(liStart, liEnd);
-
-                    // try to split by common separators (–, -, —)
-                    String meaning = null;
-                    if (li.contains("–")) {
-                        meaning = li.substring(li.indexOf("–") + 1).replaceAll("<.*?>", "").trim();
-                    } else if (li.contains(" - ")) {
-                        meaning = li.substring(li.indexOf(" - ") + 3).replaceAll("<.*?>", "").trim();
-                    } else if (li.contains("—")) {
-                        meaning = li.substring(li.indexOf("—") + 1).replaceAll("<.*?>", "").trim();
-                    } else {
-                        // fallback: remove tags and take text after closing </b>
-                        int bClose = li.toLowerCase().indexOf("</b>");
-                        if (bClose != -1 && bClose + 4 < li.length()) {
-                            meaning = li.substring(bClose + 4).replaceAll("<.*?>", "").trim();
-                        }
+        // Not found in DB/fallback — try searching lesson contentHtml
+        System.out.println("VOCAB NOT FOUND IN DB: " + word);
+        try {
+            // Only lessons whose HTML contains <b>word</b> are loaded (matched in the database)
+            java.util.List<Lesson> lessons = lessonService.findByContentHtmlContaining("<b>" + word + "</b>");
+            // More robust lesson HTML lookup: find <b>word</b> then extract surrounding <li> text
+            for (Lesson lesson : lessons) {
+                String html = lesson.getContentHtml();
+                if (html == null) continue;
+                String lowered = html.toLowerCase();
+                String token = "<b>" + word.toLowerCase() + "</b>";
+                int idx = lowered.indexOf(token);
+                if (idx == -1) continue;
+
+                // find enclosing <li> ... </li>
+                int liStart = lowered.lastIndexOf("<li", idx);
+                int liEnd = lowered.indexOf("</li>", idx);
+                if (liStart == -1 || liEnd == -1) continue;
+                String li = html.substring(liStart, liEnd);
+
+                // try to split by common separators (–, -, —)
+                String meaning = null;
+                if (li.contains("–")) {
+                    meaning = li.substring(li.indexOf("–") + 1).replaceAll("<.*?>", "").trim();
+                } else if (li.contains(" - ")) {
+                    meaning = li.substring(li.indexOf(" - ") + 3).replaceAll("<.*?>", "").trim();
+                } else if (li.contains("—")) {
+                    meaning = li.substring(li.indexOf("—") + 1).replaceAll("<.*?>", "").trim();
+                } else {
+                    // fallback: remove tags and take text after closing </b>
+                    int bClose = li.toLowerCase().indexOf("</b>");
+                    if (bClose != -1 && bClose + 4 < li.length()) {
+                        meaning = li.substring(bClose + 4).replaceAll("<.*?>", "").trim();
                     }
+                }
 
-                    if (meaning != null && !meaning.isEmpty()) {
-                        String jsonLesson = String.format(
-                            "{\"word\":\"%s\",\"phonetic\":\"/word/\",\"meaning\":\"%s\",\"example\":\"From lesson: %s\"}",
-                            word, meaning.replaceAll("\"","'"), lesson.getTitle().replaceAll("\"","'")
+                if (meaning != null && !meaning.isEmpty()) {
+                    String jsonLesson = String.format(
+                        "{\"word\":\"%s\",\"phonetic\":\"/word/\",\"meaning\":\"%s\",\"example\":\"From lesson: %s\"}",
+                        word, meaning.replaceAll("\"","'"), lesson.getTitle().replaceAll("\"","'")
+                    );
+                    return ResponseEntity.ok(jsonLesson);
+                } else {
+                    // try a looser whole-word match and return nearby snippet
+                    java.util.regex.Pattern whole = java.util.regex.Pattern.compile("\\b" + java.util.regex.Pattern.quote(word) + "\\b", java.util.regex.Pattern.CASE_INSENSITIVE);
+                    java.util.regex.Matcher mm = whole.matcher(html);
+                    if (mm.find()) {
+                        int mstart = Math.max(0, mm.start() - 40);
+                        int mend = Math.min(html.length(), mm.end() + 40);
+                        String snippet = html.substring(mstart, mend).replaceAll("<.*?>", "").trim();
+                        String jsonLesson2 = String.format(
+                            "{\"word\":\"%s\",\"phonetic\":\"/word/\",\"meaning\":\"Found in lesson: %s\",\"example\":\"%s\"}",
+                            word, lesson.getTitle().replaceAll("\"","'"), snippet.replaceAll("\"","'")
                         );
-                        return ResponseEntity.ok(jsonLesson);
-                    } else {
-                        // try a looser whole-word match and return nearby snippet
-                        java.util.regex.Pattern whole = java.util.regex.Pattern.compile("\\b" + java.util.regex.Pattern.quote(word) + "\\b", java.util.regex.Pattern.CASE_INSENSITIVE);
-                        java.util.regex.Matcher mm = whole.matcher(html);
-                        if (mm.find()) {
-                            int mstart = Math.max(0, mm.start() - 40);
-                            int mend = Math.min(html.length(), mm.end() + 40);
-                            String snippet = html.substring(mstart, mend).replaceAll("<.*?>", "").trim();
-                            String jsonLesson2 = String.format(
-                                "{\"word\":\"%s\",\"phonetic\":\"/word/\",\"meaning\":\"Found in lesson: %s\",\"example\":\"%s\"}",
-                                word, lesson.getTitle().replaceAll("\"","'"), snippet.replaceAll("\"","'")
-                            );
-                            return ResponseEntity.ok(jsonLesson2);
-                        }
+                        return ResponseEntity.ok(jsonLesson2);
                     }
                 }
-            } catch (Exception ex) {
-                // ignore and return not found
-                System.err.println("Lesson search failed: " + ex.getMessage());
             }
-
-            String notFound = String.format(
-                "{\"word\":\"%s\",\"phonetic\":\"/word/\",\"meaning\":\"Sorry, I don't have this word in my vocabulary database yet. Try another word!\",\"example\":\"Keep learning new words!\"}",
-                word
-            );
-            return ResponseEntity.ok(notFound);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
-                .body("{\"error\":\"Vocabulary lookup failed\"}");
+        } catch (Exception ex) {
+            // ignore and return not found
+            System.err.println("Lesson search failed: " + ex.getMessage());
         }
+
+        String notFound = String.format(
+            "{\"word\":\"%s\",\"phonetic\":\"/word/\",\"meaning\":\"Sorry, I don't have this word in my vocabulary database yet. Try another word!\",\"example\":\"Keep learning new words!\"}",
+            word
+        );
+        return ResponseEntity.ok(notFound);
     }
 }
@@ -1,48 +1,48 @@
 package com.example.duokid.controller;
 
+import com.example.duokid.model.ChatMessageView;
 import com.example.duokid.model.Message;
 import com.example.duokid.model.User;
-import com.example.duokid.repo.MessageRepository;
 import com.example.duokid.repo.UserRepository;
+import com.example.duokid.service.ChatConversationService;
+import com.example.duokid.service.ChatPushService;
+import com.example.duokid.service.UploadStorageService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 @Controller
 @RequestMapping("/chat")
 public class ChatController {
 
-    private final MessageRepository messageRepository;
     private final UserRepository userRepository;
-    private static final String UPLOAD_DIR = "src/main/resources/static/uploads/chat/";
-    private static final String UPLOAD_URL_PREFIX = "/uploads/chat/";
-
-    public ChatController(MessageRepository messageRepository, UserRepository userRepository) {
-        this.messageRepository = messageRepository;
+    private final ChatPushService chatPushService;
+    private final ChatConversationService chatConversationService;
+    private final UploadStorageService uploadStorageService;
+    private final UserStateService userStateService;
+
+    public ChatController(UserRepository userRepository,
+                          ChatPushService chatPushService, ChatConversationService chatConversationService,
+                          UploadStorageService uploadStorageService,
+                          UserStateService userStateService) {
         this.userRepository = userRepository;
-        
-        // Create upload directory if it doesn't exist
-        try {
-            Path uploadPath = Paths.get(UPLOAD_DIR);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-        } catch (IOException e) {
-            System.err.println("Could not create chat upload directory: " + e.getMessage());
-        }
+        this.chatPushService = chatPushService;
+        this.chatConversationService = chatConversationService;
+        this.uploadStorageService = uploadStorageService;
+        this.userStateService = userStateService;
     }
 
     @GetMapping
@@ -50,7 +50,7 @@ public class ChatController {
                           @RequestParam(required = false) Long withUserId,
                           @ModelAttribute("error") String error,
                           @ModelAttribute("success") String success) {
-        User currentUser = (User) session.getAttribute("user");
+        User currentUser = userStateService.currentUser(session);
         if (currentUser == null) return "redirect:/login";
 
         // Lấy danh sách người dùng để chat (trừ admin và chính mình)
@@ -59,38 +59,30 @@ public class ChatController {
                 .toList();
         model.addAttribute("allUsers", allUsers);
 
-        // Lấy danh sách người đã chat với user hiện tại
-        List<Message> userMessages = messageRepository.findMessagesByUser(currentUser);
-        List<User> chatPartners = userMessages.stream()
-                .map(m -> m.getSender().getId().equals(currentUser.getId()) ? m.getReceiver() : m.getSender())
-                .distinct()
-                .toList();
-        model.addAttribute("chatPartners", chatPartners);
-
-        // Đếm tin nhắn chưa đọc
-        Long unreadCount = messageRepository.countUnreadMessages(currentUser);
-        model.addAttribute("unreadCount", unreadCount);
+        // Danh sách hội thoại (người đã chat, tin nhắn cuối, số tin chưa đọc) từ bảng tóm tắt
+        model.addAttribute("conversations", chatConversationService.getConversations(currentUser));
 
         // Nếu có chọn người chat, lấy tin nhắn
         if (withUserId != null) {
             Optional<User> partnerOpt = userRepository.findById(withUserId);
             if (partnerOpt.isPresent()) {
                 User partner = partnerOpt.get();
-                List<Message> messages = messageRepository.findConversationBetweenUsers(currentUser, partner);
+                // Chỉ tải trang tin nhắn mới nhất, tin cũ hơn được tải thêm qua /chat/api/messages?beforeId=
+                ChatConversationService.MessagePage page =
+                        chatConversationService.getPage(currentUser, partner, null, chatConversationService.getPageSize());
                 
-                // Đánh dấu tin nhắn là đã đọc
-                messages.stream()
-                        .filter(m -> m.getReceiver().getId().equals(currentUser.getId()) && !m.getIsRead())
-                        .forEach(m -> {
-                            m.setIsRead(true);
-                            messageRepository.save(m);
-                        });
+                // Đánh dấu tin nhắn là đã đọc (một câu UPDATE cho cả hội thoại)
+                chatConversationService.markConversationRead(currentUser, partner);
                 
                 model.addAttribute("partner", partner);
-                model.addAttribute("messages", messages);
+                model.addAttribute("messages", page.getMessages());
+                model.addAttribute("hasOlderMessages", page.isHasOlder());
             }
         }
 
+        // Đếm tin nhắn chưa đọc (sau khi đã đánh dấu đọc hội thoại đang mở)
+        model.addAttribute("unreadCount", chatConversationService.getUnreadCount(currentUser));
+
         model.addAttribute("user", currentUser);
         model.addAttribute("isAdmin", Boolean.TRUE.equals(currentUser.getIsAdmin()));
         
@@ -111,7 +103,7 @@ public class ChatController {
                              @RequestParam(required = false) MultipartFile image,
                              HttpSession session,
                              RedirectAttributes redirectAttributes) {
-        User sender = (User) session.getAttribute("user");
+        User sender = userStateService.currentUser(session);
         if (sender == null) return "redirect:/login";
 
         // Phải có ít nhất content hoặc image
@@ -158,50 +150,79 @@ public class ChatController {
                     return "redirect:/chat?withUserId=" + receiverId;
                 }
 
-                // Generate unique filename
-                String originalFilename = image.getOriginalFilename();
-                String extension = "";
-                if (originalFilename != null && originalFilename.contains(".")) {
-                    extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-                }
-                String filename = "chat_" + sender.getId() + "_" + UUID.randomUUID().toString() + extension;
-                
-                // Save file
-                Path uploadPath = Paths.get(UPLOAD_DIR);
-                Path filePath = uploadPath.resolve(filename);
-                Files.copy(image.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-                message.setImageUrl(UPLOAD_URL_PREFIX + filename);
+                // Lưu ảnh theo hash nội dung (ảnh thu nhỏ được tạo ở luồng nền)
+                message.setImageUrl(uploadStorageService.store(image, UploadStorageService.CHAT));
             } catch (IOException e) {
                 redirectAttributes.addFlashAttribute("error", "Lỗi khi upload ảnh: " + e.getMessage());
                 return "redirect:/chat?withUserId=" + receiverId;
             }
         }
 
-        messageRepository.save(message);
+        Message saved = chatConversationService.send(message);
+        chatPushService.publish(saved);
 
         redirectAttributes.addFlashAttribute("success", "Tin nhắn đã được gửi!");
         return "redirect:/chat?withUserId=" + receiverId;
     }
 
+    /**
+     * Kết nối SSE nhận tin nhắn mới (thay cho polling /api/messages)
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public ResponseEntity<SseEmitter> stream(HttpSession session) {
+        User currentUser = userStateService.currentUser(session);
+        if (currentUser == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        return ResponseEntity.ok(chatPushService.subscribe(currentUser.getId()));
+    }
+
+    /**
+     * Tin nhắn giữa user hiện tại và withUserId theo trang (tối đa limit tin, sắp xếp cũ → mới)
+     * - beforeId: tin cũ hơn id này (nút "Xem tin nhắn cũ hơn"), bỏ trống = trang mới nhất
+     * - afterId: tin mới hơn id này (bù tin nhắn khi SSE kết nối lại)
+     */
     @GetMapping("/api/messages")
     @ResponseBody
-    public List<Message> getMessages(@RequestParam(required = false) Long withUserId, HttpSession session) {
-        User currentUser = (User) session.getAttribute("user");
+    public List<ChatMessageView> getMessages(@RequestParam(required = false) Long withUserId,
+                                             @RequestParam(required = false) Long beforeId,
+                                             @RequestParam(required = false) Long afterId,
+                                             @RequestParam(defaultValue = "0") int limit,
+                                             HttpSession session) {
+        User currentUser = userStateService.currentUser(session);
         if (currentUser == null || withUserId == null) return List.of();
 
         Optional<User> partnerOpt = userRepository.findById(withUserId);
         if (partnerOpt.isEmpty()) return List.of();
 
-        return messageRepository.findConversationBetweenUsers(currentUser, partnerOpt.get());
+        List<Message> messages = afterId != null
+                ? chatConversationService.getMessagesAfter(currentUser, partnerOpt.get(), afterId, limit)
+                : chatConversationService.getPage(currentUser, partnerOpt.get(), beforeId, limit).getMessages();
+        return messages.stream().map(ChatMessageView::from).toList();
+    }
+
+    /**
+     * Đánh dấu đã đọc hội thoại đang mở khi tin nhắn mới được đẩy qua SSE (trang không tải lại)
+     * @return số tin chưa đọc còn lại của user hiện tại
+     */
+    @PostMapping("/api/read")
+    @ResponseBody
+    public ResponseEntity<Long> markRead(@RequestParam Long withUserId, HttpSession session) {
+        User currentUser = userStateService.currentUser(session);
+        if (currentUser == null) return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+
+        Optional<User> partnerOpt = userRepository.findById(withUserId);
+        if (partnerOpt.isEmpty()) return ResponseEntity.notFound().build();
+
+        chatConversationService.markConversationRead(currentUser, partnerOpt.get());
+        return ResponseEntity.ok((long) chatConversationService.getUnreadCount(currentUser));
     }
 
     @GetMapping("/api/unread")
     @ResponseBody
     public Long getUnreadCount(HttpSession session) {
-        User currentUser = (User) session.getAttribute("user");
+        User currentUser = userStateService.currentUser(session);
         if (currentUser == null) return 0L;
-        return messageRepository.countUnreadMessages(currentUser);
+        return (long) chatConversationService.getUnreadCount(currentUser);
     }
 
     // Common emojis for picker
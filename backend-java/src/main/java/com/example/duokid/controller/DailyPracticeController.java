@@ -1,17 +1,19 @@
 package com.example.duokid.controller;
 
 import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonSummary;
 import com.example.duokid.model.User;
-import com.example.duokid.service.AiPythonClient;
+import com.example.duokid.service.GradingService;
 import com.example.duokid.service.LessonService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Mono;
 
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -54,24 +56,27 @@ public class DailyPracticeController {
     );
 
     private final LessonService lessonService;
-    private final AiPythonClient aiPythonClient;
+    private final GradingService gradingService;
     private final Random random = new Random();
+    private final UserStateService userStateService;
 
     public DailyPracticeController(LessonService lessonService,
-                                   AiPythonClient aiPythonClient) {
+                                   GradingService gradingService,
+                                   UserStateService userStateService) {
         this.lessonService = lessonService;
-        this.aiPythonClient = aiPythonClient;
+        this.gradingService = gradingService;
+        this.userStateService = userStateService;
     }
 
     @GetMapping("/practice")
     public String practice(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
-        List<Lesson> all = lessonService.findAll();
+        List<LessonSummary> all = lessonService.findAllSummaries();
         if (all.isEmpty()) return "redirect:/lessons";
-        Collections.shuffle(all);
-        Lesson randomLesson = all.get(0);
+        Lesson randomLesson = lessonService.findById(all.get(random.nextInt(all.size())).getId());
+        if (randomLesson == null) return "redirect:/lessons";
 
         PracticeTask task = pickTask(randomLesson);
 
@@ -87,17 +92,16 @@ public class DailyPracticeController {
     public String practiceGame(@RequestParam(required = false) Long lessonId,
                               HttpSession session,
                               Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         Lesson lesson;
         if (lessonId != null) {
             lesson = lessonService.findById(lessonId);
         } else {
-            List<Lesson> all = lessonService.findAll();
+            List<LessonSummary> all = lessonService.findAllSummaries();
             if (all.isEmpty()) return "redirect:/practice";
-            Collections.shuffle(all);
-            lesson = all.get(0);
+            lesson = lessonService.findById(all.get(random.nextInt(all.size())).getId());
         }
 
         if (lesson == null) return "redirect:/practice";
@@ -108,17 +112,17 @@ public class DailyPracticeController {
     }
 
     @PostMapping("/practice/grade")
-    public String gradeAnswer(@RequestParam Long lessonId,
-                              @RequestParam String question,
-                              @RequestParam String expected,
-                              @RequestParam("studentAnswer") String answer,
-                              HttpSession session,
-                              Model model) {
-        User user = (User) session.getAttribute("user");
-        if (user == null) return "redirect:/login";
+    public Mono<String> gradeAnswer(@RequestParam Long lessonId,
+                                    @RequestParam String question,
+                                    @RequestParam String expected,
+                                    @RequestParam("studentAnswer") String answer,
+                                    HttpSession session,
+                                    Model model) {
+        User user = userStateService.currentUser(session);
+        if (user == null) return Mono.just("redirect:/login");
 
         Lesson lesson = lessonService.findById(lessonId);
-        if (lesson == null) return "redirect:/practice";
+        if (lesson == null) return Mono.just("redirect:/practice");
 
         model.addAttribute("user", user);
         model.addAttribute("lesson", lesson);
@@ -128,15 +132,17 @@ public class DailyPracticeController {
 
         if (answer == null || answer.trim().isEmpty()) {
             model.addAttribute("gradeError", "Vui lòng nhập câu trả lời trước khi chấm điểm.");
-            return "practice";
+            return Mono.just("practice");
         }
 
-        AiPythonClient.GradeResult result = aiPythonClient.gradeAnswer(question, expected, answer);
-        model.addAttribute("gradeScore", result.score());
-        model.addAttribute("gradeCommentEn", result.commentEn());
-        model.addAttribute("gradeCommentVi", result.commentVi());
-
-        return "practice";
+        // Cùng câu hỏi + cùng câu trả lời thì dùng lại kết quả, các bài nộp cùng lúc được gom thành một request
+        return gradingService.grade(question, expected, answer)
+                .map(result -> {
+                    model.addAttribute("gradeScore", result.score());
+                    model.addAttribute("gradeCommentEn", result.commentEn());
+                    model.addAttribute("gradeCommentVi", result.commentVi());
+                    return "practice";
+                });
     }
 
     private PracticeTask pickTask(Lesson lesson) {
@@ -2,14 +2,16 @@ package com.example.duokid.controller;
 
 import com.example.duokid.model.Achievement;
 import com.example.duokid.model.DailyGoalProgress;
-import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonProgressSummary;
+import com.example.duokid.model.LessonSummary;
 import com.example.duokid.model.Test;
 import com.example.duokid.model.User;
-import com.example.duokid.model.UserLessonProgress;
 import com.example.duokid.service.DailyGoalService;
+import com.example.duokid.service.LessonPathEngine;
 import com.example.duokid.service.LessonProgressService;
 import com.example.duokid.service.TestService;
 import com.example.duokid.service.UserService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -25,32 +27,36 @@ public class DashboardController {
     private final UserService userService;
     private final LessonProgressService lessonProgressService;
     private final TestService testService;
+    private final UserStateService userStateService;
 
     public DashboardController(DailyGoalService dailyGoalService,
                                UserService userService,
                                LessonProgressService lessonProgressService,
-                               TestService testService) {
+                               TestService testService,
+                               UserStateService userStateService) {
         this.dailyGoalService = dailyGoalService;
         this.userService = userService;
         this.lessonProgressService = lessonProgressService;
         this.testService = testService;
+        this.userStateService = userStateService;
     }
 
     @GetMapping({"/", "/dashboard"})
+    @QueryBudget(8)
     public String dashboard(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         user = userService.checkDailyHeartRefill(user);
-        session.setAttribute("user", user);
 
         DailyGoalProgress progress = dailyGoalService.getOrCreateToday(user);
         List<Achievement> achievements = dailyGoalService.getAchievements(user);
         
         
         // Get lesson path and progress
-        List<Lesson> lessonPath = lessonProgressService.getLessonPathForUser(user);
-        Map<Long, UserLessonProgress> progressMap = lessonProgressService.getProgressMap(user);
+        LessonPathEngine.LessonPath path = lessonProgressService.getLessonPathForUser(user);
+        List<LessonSummary> lessonPath = path.lessons();
+        Map<Long, LessonProgressSummary> progressMap = path.progressMap();
         int completedLessonsCount = lessonProgressService.getCompletedLessonsCount(user);
         
         // Get available test for user's level
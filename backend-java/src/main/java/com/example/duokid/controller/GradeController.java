@@ -1,10 +1,11 @@
 package com.example.duokid.controller;
 
 import com.example.duokid.model.Grammar;
-import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonSummary;
 import com.example.duokid.model.User;
 import com.example.duokid.repo.GrammarRepository;
 import com.example.duokid.service.LessonService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -13,7 +14,6 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Controller
 @RequestMapping("/grade")
@@ -21,10 +21,12 @@ public class GradeController {
 
     private final LessonService lessonService;
     private final GrammarRepository grammarRepository;
+    private final UserStateService userStateService;
 
-    public GradeController(LessonService lessonService, GrammarRepository grammarRepository) {
+    public GradeController(LessonService lessonService, GrammarRepository grammarRepository, UserStateService userStateService) {
         this.lessonService = lessonService;
         this.grammarRepository = grammarRepository;
+        this.userStateService = userStateService;
     }
 
     /**
@@ -32,7 +34,7 @@ public class GradeController {
      */
     @GetMapping
     public String defaultGrade(HttpSession session) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         
         // Redirect đến lớp của user hoặc GRADE1 nếu không có
@@ -48,19 +50,11 @@ public class GradeController {
     public String viewGrade(@PathVariable String grade,
                             HttpSession session,
                             Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         // Get lessons for this grade
-        List<Lesson> lessons = lessonService.findAll()
-                .stream()
-                .filter(l -> grade.equalsIgnoreCase(l.getLevel()))
-                .sorted((a, b) -> {
-                    Integer orderA = a.getOrderIndex() != null ? a.getOrderIndex() : Integer.MAX_VALUE;
-                    Integer orderB = b.getOrderIndex() != null ? b.getOrderIndex() : Integer.MAX_VALUE;
-                    return orderA.compareTo(orderB);
-                })
-                .collect(Collectors.toList());
+        List<LessonSummary> lessons = lessonService.findByLevel(grade);
 
         // Get grammar for this grade
         List<Grammar> grammarList = grammarRepository.findByLevelOrderByOrderIndex(grade);
@@ -5,6 +5,8 @@ import com.example.duokid.model.User;
 import com.example.duokid.repo.GrammarRepository;
 import com.example.duokid.service.DailyGoalService;
 import com.example.duokid.service.UserService;
+import com.example.duokid.service.UserStateService;
+import com.example.duokid.service.WalletService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -21,20 +23,26 @@ public class GrammarController {
     private final GrammarRepository grammarRepo;
     private final UserService userService;
     private final DailyGoalService dailyGoalService;
+    private final UserStateService userStateService;
+    private final WalletService walletService;
 
     public GrammarController(GrammarRepository grammarRepo,
                             UserService userService,
-                            DailyGoalService dailyGoalService) {
+                            DailyGoalService dailyGoalService,
+                            UserStateService userStateService,
+                            WalletService walletService) {
         this.grammarRepo = grammarRepo;
         this.userService = userService;
         this.dailyGoalService = dailyGoalService;
+        this.userStateService = userStateService;
+        this.walletService = walletService;
     }
 
     @GetMapping("/{id}")
     public String grammarDetail(@PathVariable Long id,
                                 HttpSession session,
                                 Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         Grammar grammar = grammarRepo.findById(id).orElse(null);
@@ -49,7 +57,7 @@ public class GrammarController {
     public String completeGrammar(@PathVariable Long id,
                                  HttpSession session,
                                  RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         Grammar grammar = grammarRepo.findById(id).orElse(null);
@@ -59,10 +67,8 @@ public class GrammarController {
             dailyGoalService.markLessonCompleted(user);
             
             // Award gems
-            user.setGems(user.getGems() + 10);
-            userService.save(user);
-            
-            session.setAttribute("user", user);
+            walletService.change(user.getId(), 0, 10, 0, "GRAMMAR_REWARD", "Hoàn thành bài ngữ pháp: " + grammar.getTitle());
+
             redirectAttributes.addFlashAttribute("message", "Chúc mừng! Bạn đã hoàn thành bài ngữ pháp!");
         }
         return "redirect:/grammar/" + id;
@@ -1,22 +1,27 @@
 package com.example.duokid.controller;
 
 import com.example.duokid.model.User;
-import com.example.duokid.repo.VocabularyRepository;
-import com.example.duokid.service.GateLessonService;
 import com.example.duokid.service.LessonDataImportService;
-import com.example.duokid.service.QuizGenerationService;
+import com.example.duokid.service.QuizGenerationJob;
+import com.example.duokid.service.TtsPrewarmJob;
+import com.example.duokid.service.UserStateService;
 import com.example.duokid.service.VocabularyImportService;
+import com.example.duokid.service.VocabularyStats;
 import com.example.duokid.service.VocabularyToLessonService;
 import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.InputStream;
+import java.util.Map;
 
 @Controller
 public class ImportController {
@@ -24,34 +29,37 @@ public class ImportController {
     private final LessonDataImportService importService;
     private final VocabularyImportService vocabularyImportService;
     private final VocabularyToLessonService vocabularyToLessonService;
-    private final VocabularyRepository vocabularyRepository;
-    private final QuizGenerationService quizGenerationService;
-    private final GateLessonService gateLessonService;
+    private final VocabularyStats vocabularyStats;
+    private final QuizGenerationJob quizGenerationJob;
+    private final TtsPrewarmJob ttsPrewarmJob;
+    private final UserStateService userStateService;
 
     public ImportController(LessonDataImportService importService, 
                           VocabularyImportService vocabularyImportService,
                           VocabularyToLessonService vocabularyToLessonService,
-                          VocabularyRepository vocabularyRepository,
-                          QuizGenerationService quizGenerationService,
-                          GateLessonService gateLessonService) {
+                          VocabularyStats vocabularyStats,
+                          QuizGenerationJob quizGenerationJob,
+                          TtsPrewarmJob ttsPrewarmJob,
+                          UserStateService userStateService) {
         this.importService = importService;
         this.vocabularyImportService = vocabularyImportService;
         this.vocabularyToLessonService = vocabularyToLessonService;
-        this.vocabularyRepository = vocabularyRepository;
-        this.quizGenerationService = quizGenerationService;
-        this.gateLessonService = gateLessonService;
+        this.vocabularyStats = vocabularyStats;
+        this.quizGenerationJob = quizGenerationJob;
+        this.ttsPrewarmJob = ttsPrewarmJob;
+        this.userStateService = userStateService;
     }
 
     @GetMapping("/admin/import")
     public String showImportPage(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
-        // Thống kê từ vựng để hiển thị
+        // Thống kê từ vựng để hiển thị (đọc từ bộ đếm trong bộ nhớ, không tải từ vựng)
         try {
-            long vocabularyCount = vocabularyRepository.count();
-            long listeningCount = vocabularyRepository.findByTestType("LISTENING").size();
-            long readingCount = vocabularyRepository.findByTestType("READING").size();
+            long vocabularyCount = vocabularyStats.getTotal();
+            long listeningCount = vocabularyStats.countByTestType("LISTENING");
+            long readingCount = vocabularyStats.countByTestType("READING");
             
             model.addAttribute("vocabularyCount", vocabularyCount);
             model.addAttribute("listeningCount", listeningCount);
@@ -79,7 +87,7 @@ public class ImportController {
     public String importData(@RequestParam("file") MultipartFile file,
                             HttpSession session,
                             RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         if (file.isEmpty()) {
@@ -115,7 +123,7 @@ public class ImportController {
                                    @RequestParam(value = "importAll", required = false) Boolean importAll,
                                    HttpSession session,
                                    RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         try {
@@ -212,7 +220,7 @@ public class ImportController {
     @PostMapping("/admin/import/vocabulary-to-lessons")
     public String createLessonsFromVocabulary(HttpSession session,
                                              RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         
         if (user.getIsAdmin() == null || !user.getIsAdmin()) {
@@ -245,7 +253,7 @@ public class ImportController {
     @PostMapping("/admin/import/create-quiz-for-lessons")
     public String createQuizForExistingLessons(HttpSession session,
                                               RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         
         if (user.getIsAdmin() == null || !user.getIsAdmin()) {
@@ -278,12 +286,12 @@ public class ImportController {
     }
 
     /**
-     * Tạo quiz cho TẤT CẢ các bài học chưa có quiz
+     * Tạo quiz cho TẤT CẢ các bài học chưa có quiz (chạy nền, trang import theo dõi tiến độ)
      */
     @PostMapping("/admin/import/create-quiz-for-all-lessons")
     public String createQuizForAllLessons(HttpSession session,
                                           RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         
         if (user.getIsAdmin() == null || !user.getIsAdmin()) {
@@ -291,41 +299,20 @@ public class ImportController {
             return "redirect:/admin/import";
         }
 
-        try {
-            QuizGenerationService.QuizGenerationResult result = 
-                quizGenerationService.createQuizForAllLessons();
-            
-            if (result.getLessonsCreated() > 0) {
-                redirectAttributes.addFlashAttribute("success", 
-                    String.format("✅ Đã tạo quiz cho %d bài học (tổng %d câu hỏi)! " +
-                        "(Bỏ qua %d bài đã có quiz)", 
-                        result.getLessonsCreated(), 
-                        result.getTotalQuestions(),
-                        result.getLessonsSkipped()));
-            } else if (result.getLessonsSkipped() > 0) {
-                redirectAttributes.addFlashAttribute("info", 
-                    String.format("Tất cả bài học đã có quiz (bỏ qua %d bài).", result.getLessonsSkipped()));
-            } else {
-                redirectAttributes.addFlashAttribute("warning", 
-                    "Không tìm thấy bài học nào hoặc có lỗi: " + 
-                    (result.getErrors().isEmpty() ? "Không có lỗi" : 
-                     String.join("; ", result.getErrors().subList(0, Math.min(3, result.getErrors().size())))));
-            }
-        } catch (Exception e) {
-            redirectAttributes.addFlashAttribute("error", "Lỗi khi tạo quiz: " + e.getMessage());
-            e.printStackTrace();
-        }
+        if (isQuizJobRunning(redirectAttributes)) return "redirect:/admin/import";
 
+        quizGenerationJob.startAllLessons();
+        redirectAttributes.addFlashAttribute("info", "⏳ Đang tạo quiz cho tất cả bài học ở chế độ nền...");
         return "redirect:/admin/import";
     }
 
     /**
-     * Tạo bài học theo cấu trúc ô cửa (Gate)
+     * Tạo bài học theo cấu trúc ô cửa (Gate) (chạy nền, trang import theo dõi tiến độ)
      */
     @PostMapping("/admin/import/create-gate-lessons")
     public String createGateLessons(HttpSession session,
                                    RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         
         if (user.getIsAdmin() == null || !user.getIsAdmin()) {
@@ -333,37 +320,90 @@ public class ImportController {
             return "redirect:/admin/import";
         }
 
-        try {
-            GateLessonService.CreateGateLessonsResult result = 
-                gateLessonService.createGateLessons();
-            
-            if (result.getCreated() > 0) {
-                redirectAttributes.addFlashAttribute("success", 
-                    String.format("✅ Đã tạo %d bài học theo cấu trúc ô cửa! " +
-                        "(Bỏ qua %d bài đã tồn tại)\n" +
-                        "• Ô cửa 1 (GRADE1): Test 1-20\n" +
-                        "• Ô cửa 2 (GRADE2): Test 21-40\n" +
-                        "• Ô cửa 3 (GRADE3): Test 41-60\n" +
-                        "• Ô cửa 4 (GRADE4): Test 61-80\n" +
-                        "• Ô cửa 5 (GRADE5): Test 81-100\n" +
-                        "Mỗi test được chia thành 10 bài nhỏ (test1.1, test1.2, ... test1.10)", 
-                        result.getCreated(), 
-                        result.getSkipped()));
-            } else if (result.getSkipped() > 0) {
-                redirectAttributes.addFlashAttribute("info", 
-                    String.format("Tất cả bài học đã được tạo (bỏ qua %d bài).", result.getSkipped()));
-            } else {
-                redirectAttributes.addFlashAttribute("warning", 
-                    "Không tìm thấy từ vựng nào hoặc có lỗi: " + 
-                    (result.getErrors().isEmpty() ? "Không có lỗi" : 
-                     String.join("; ", result.getErrors().subList(0, Math.min(3, result.getErrors().size())))));
-            }
-        } catch (Exception e) {
-            redirectAttributes.addFlashAttribute("error", "Lỗi khi tạo bài học: " + e.getMessage());
-            e.printStackTrace();
-        }
+        if (isQuizJobRunning(redirectAttributes)) return "redirect:/admin/import";
 
+        quizGenerationJob.startGateLessons();
+        redirectAttributes.addFlashAttribute("info", "⏳ Đang tạo bài học theo cấu trúc ô cửa ở chế độ nền " +
+                "(mỗi test được chia thành 10 bài nhỏ, kèm quiz)...");
         return "redirect:/admin/import";
     }
-}
 
+    /**
+     * Tiến độ của job tạo quiz gần nhất (JSON), trang import gọi định kỳ
+     */
+    @GetMapping("/admin/import/quiz-job/status")
+    @ResponseBody
+    public ResponseEntity<?> quizJobStatus(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (user == null || user.getIsAdmin() == null || !user.getIsAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        QuizGenerationJob.JobStatus status = quizGenerationJob.getStatus();
+        if (status == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Yêu cầu hủy job tạo quiz đang chạy
+     */
+    @PostMapping("/admin/import/quiz-job/cancel")
+    @ResponseBody
+    public ResponseEntity<?> cancelQuizJob(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (user == null || user.getIsAdmin() == null || !user.getIsAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        boolean cancelled = quizGenerationJob.cancel();
+        return ResponseEntity.ok(Map.of("cancelRequested", cancelled));
+    }
+
+    /**
+     * Tạo sẵn audio TTS cho từ vựng bài học: trạng thái lần chạy gần nhất và độ phủ cache
+     */
+    @GetMapping("/admin/import/tts-prewarm/status")
+    @ResponseBody
+    public ResponseEntity<?> ttsPrewarmStatus(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (user == null || user.getIsAdmin() == null || !user.getIsAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(Map.of(
+                "status", ttsPrewarmJob.getStatus(),
+                "coverage", ttsPrewarmJob.getCoverage()));
+    }
+
+    /**
+     * Chạy (tiếp) tạo sẵn audio cho những từ vựng bài học chưa có trong cache
+     */
+    @PostMapping("/admin/import/tts-prewarm/start")
+    @ResponseBody
+    public ResponseEntity<?> startTtsPrewarm(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (user == null || user.getIsAdmin() == null || !user.getIsAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(ttsPrewarmJob.resume());
+    }
+
+    @PostMapping("/admin/import/tts-prewarm/cancel")
+    @ResponseBody
+    public ResponseEntity<?> cancelTtsPrewarm(HttpSession session) {
+        User user = userStateService.currentUser(session);
+        if (user == null || user.getIsAdmin() == null || !user.getIsAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(Map.of("cancelRequested", ttsPrewarmJob.cancel()));
+    }
+
+    private boolean isQuizJobRunning(RedirectAttributes redirectAttributes) {
+        QuizGenerationJob.JobStatus status = quizGenerationJob.getStatus();
+        if (status != null && status.isRunning()) {
+            redirectAttributes.addFlashAttribute("warning",
+                    "Đang có một job tạo quiz chạy (#" + status.getId() + "), vui lòng chờ job đó hoàn thành.");
+            return true;
+        }
+        return false;
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.duokid.controller;
 
+import com.example.duokid.model.LeaderboardEntry;
 import com.example.duokid.model.User;
 import com.example.duokid.service.LeaderboardService;
 import com.example.duokid.service.LessonProgressService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -15,16 +17,19 @@ public class LeaderboardController {
 
     private final LeaderboardService leaderboardService;
     private final LessonProgressService lessonProgressService;
+    private final UserStateService userStateService;
 
     public LeaderboardController(LeaderboardService leaderboardService,
-                                LessonProgressService lessonProgressService) {
+                                LessonProgressService lessonProgressService,
+                                UserStateService userStateService) {
         this.leaderboardService = leaderboardService;
         this.lessonProgressService = lessonProgressService;
+        this.userStateService = userStateService;
     }
 
     @GetMapping("/leaderboard")
     public String leaderboard(HttpSession session, Model model) {
-        User current = (User) session.getAttribute("user");
+        User current = userStateService.currentUser(session);
         if (current == null) return "redirect:/login";
 
         // Check unlock requirement (10 completed lessons)
@@ -37,9 +42,11 @@ public class LeaderboardController {
             return "leaderboard";
         }
 
-        List<User> topUsers = leaderboardService.getTop10ByXp();
+        List<LeaderboardEntry> topUsers = leaderboardService.getTop10ByXp();
         model.addAttribute("user", current);
         model.addAttribute("topUsers", topUsers);
+        model.addAttribute("myRank", leaderboardService.getRank(current));
+        model.addAttribute("rankedCount", leaderboardService.getRankedCount());
         model.addAttribute("locked", false);
         return "leaderboard";
     }
@@ -1,21 +1,24 @@
 package com.example.duokid.controller;
 
 import com.example.duokid.model.Lesson;
-import com.example.duokid.model.QuizQuestion;
+import com.example.duokid.model.LessonSummary;
 import com.example.duokid.model.User;
 
-import java.util.List;
 import com.example.duokid.service.AiPythonClient;
 import com.example.duokid.service.DailyGoalService;
 import com.example.duokid.service.LessonProgressService;
 import com.example.duokid.service.LessonService;
 import com.example.duokid.service.MyWordService;
+import com.example.duokid.service.TtsCacheService;
 import com.example.duokid.service.UserService;
+import com.example.duokid.service.UserStateService;
+import com.example.duokid.service.WalletService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import reactor.core.publisher.Mono;
 
 @Controller
 @RequestMapping("/lessons")
@@ -26,29 +29,38 @@ public class LessonController {
     private final DailyGoalService dailyGoalService;
     private final LessonProgressService lessonProgressService;
     private final AiPythonClient aiPythonClient;
+    private final TtsCacheService ttsCacheService;
     private final MyWordService myWordService;
+    private final UserStateService userStateService;
+    private final WalletService walletService;
 
     public LessonController(LessonService lessonService,
                             UserService userService,
                             DailyGoalService dailyGoalService,
                             LessonProgressService lessonProgressService,
                             AiPythonClient aiPythonClient,
-                            MyWordService myWordService) {
+                            TtsCacheService ttsCacheService,
+                            MyWordService myWordService,
+                            UserStateService userStateService,
+                            WalletService walletService) {
         this.lessonService = lessonService;
         this.userService = userService;
         this.dailyGoalService = dailyGoalService;
         this.lessonProgressService = lessonProgressService;
         this.aiPythonClient = aiPythonClient;
+        this.ttsCacheService = ttsCacheService;
         this.myWordService = myWordService;
+        this.userStateService = userStateService;
+        this.walletService = walletService;
     }
 
     @GetMapping
     public String listLessons(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         model.addAttribute("user", user);
-        model.addAttribute("lessons", lessonService.findAll());
+        model.addAttribute("lessons", lessonService.findAllSummaries());
         return "lessons";
     }
 
@@ -56,10 +68,10 @@ public class LessonController {
     public String lessonDetail(@PathVariable Long id,
                                HttpSession session,
                                Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
-        Lesson lesson = lessonService.findById(id);
+        LessonSummary lesson = lessonService.findSummaryById(id);
         if (lesson == null) return "redirect:/lessons";
 
         // Check if lesson is already completed
@@ -68,12 +80,12 @@ public class LessonController {
         boolean isCompleted = progress != null && progress.isCompleted();
         
         // Check if lesson has quiz questions
-        List<QuizQuestion> quizQuestions = lessonService.getQuestionsByLesson(lesson);
-        boolean hasQuiz = !quizQuestions.isEmpty();
+        boolean hasQuiz = lessonService.hasQuestions(lesson.getId());
         boolean isAdmin = user.getIsAdmin() != null && user.getIsAdmin();
 
         model.addAttribute("user", user);
         model.addAttribute("lesson", lesson);
+        model.addAttribute("lessonContent", lessonService.getContentHtml(lesson.getId()));
         model.addAttribute("isCompleted", isCompleted);
         model.addAttribute("hasQuiz", hasQuiz);
         model.addAttribute("isAdmin", isAdmin);
@@ -88,7 +100,7 @@ public class LessonController {
     public String completeLesson(@PathVariable Long id,
                                  HttpSession session,
                                  RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         Lesson lesson = lessonService.findById(id);
@@ -118,10 +130,7 @@ public class LessonController {
             dailyGoalService.markLessonCompleted(user);
             
             // Award gems (10 gems per lesson)
-            user.setGems(user.getGems() + 10);
-            userService.save(user);
-            
-            session.setAttribute("user", user);
+            walletService.change(user.getId(), 0, 10, 0, "LESSON_REWARD", "Hoàn thành bài học: " + lesson.getTitle());
             
             // Thông báo rương thưởng nếu có
             if (gateReward != null && gateReward.isGateCompleted()) {
@@ -140,37 +149,35 @@ public class LessonController {
     }
 
     @PostMapping("/{id}/suggest")
-    public String suggestSentence(@PathVariable Long id,
-                                  @RequestParam("vnText") String vnText,
-                                  HttpSession session,
-                                  Model model) {
-        User user = (User) session.getAttribute("user");
-        if (user == null) return "redirect:/login";
+    public Mono<String> suggestSentence(@PathVariable Long id,
+                                        @RequestParam("vnText") String vnText,
+                                        HttpSession session,
+                                        Model model) {
+        User user = userStateService.currentUser(session);
+        if (user == null) return Mono.just("redirect:/login");
 
-        Lesson lesson = lessonService.findById(id);
-        if (lesson == null) return "redirect:/lessons";
+        LessonSummary lesson = lessonService.findSummaryById(id);
+        if (lesson == null) return Mono.just("redirect:/lessons");
 
         model.addAttribute("user", user);
         model.addAttribute("lesson", lesson);
+        model.addAttribute("lessonContent", lessonService.getContentHtml(lesson.getId()));
 
         if (vnText == null || vnText.trim().isEmpty()) {
             model.addAttribute("aiError", "Vui lòng nhập câu tiếng Việt trước khi yêu cầu gợi ý.");
-            return "lesson_detail";
+            return Mono.just("lesson_detail");
         }
 
-        String suggestion = aiPythonClient.suggestSentence(
-                vnText.trim(),
-                lesson.getTitle(),
-                lesson.getLevel()
-        );
-
-        String audioUrl = aiPythonClient.getTtsAudioUrl(suggestion);
-
-        model.addAttribute("aiSuggestion", suggestion);
-        model.addAttribute("aiAudioUrl", audioUrl);
-        model.addAttribute("vnText", vnText);
-
-        return "lesson_detail";
+        // Không giữ luồng Tomcat trong lúc chờ AI: view được render khi có kết quả
+        return aiPythonClient.suggestSentence(vnText.trim(), lesson.getTitle(), lesson.getLevel())
+                .flatMap(suggestion -> ttsCacheService.getAudioUrl(suggestion)
+                        .defaultIfEmpty("")
+                        .map(audioUrl -> {
+                            model.addAttribute("aiSuggestion", suggestion);
+                            model.addAttribute("aiAudioUrl", audioUrl.isEmpty() ? null : audioUrl);
+                            model.addAttribute("vnText", vnText);
+                            return "lesson_detail";
+                        }));
     }
 
     @PostMapping("/{id}/mywords")
@@ -181,10 +188,10 @@ public class LessonController {
                                     @RequestParam(required = false) String exampleSentence,
                                     HttpSession session,
                                     RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
-        Lesson lesson = lessonService.findById(id);
+        LessonSummary lesson = lessonService.findSummaryById(id);
         if (lesson == null) return "redirect:/lessons";
 
         try {
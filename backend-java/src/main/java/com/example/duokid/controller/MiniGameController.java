@@ -3,7 +3,9 @@ package com.example.duokid.controller;
 import com.example.duokid.model.User;
 import com.example.duokid.model.VocabGameScore;
 import com.example.duokid.service.UserService;
+import com.example.duokid.service.UserStateService;
 import com.example.duokid.service.VocabGameService;
+import com.example.duokid.service.WalletService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
@@ -22,11 +24,17 @@ public class MiniGameController {
 
     private final VocabGameService vocabGameService;
     private final UserService userService;
+    private final UserStateService userStateService;
+    private final WalletService walletService;
 
     public MiniGameController(VocabGameService vocabGameService,
-                              UserService userService) {
+                              UserService userService,
+                              UserStateService userStateService,
+                              WalletService walletService) {
         this.vocabGameService = vocabGameService;
         this.userService = userService;
+        this.userStateService = userStateService;
+        this.walletService = walletService;
     }
 
     @GetMapping("/minigame")
@@ -35,7 +43,7 @@ public class MiniGameController {
                                @RequestParam(required = false) String gameType,
                                HttpSession session,
                                Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         // If gameType is "puzzle", show word puzzle game
@@ -86,7 +94,7 @@ public class MiniGameController {
                              @RequestParam Map<String, String> params,
                              HttpSession session,
                              RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         Map<Long, String> answers = new HashMap<>();
@@ -102,7 +110,6 @@ public class MiniGameController {
         int xpReward = (int) (correct * XP_PER_CORRECT);
         if (xpReward > 0) {
             user = userService.addXp(user, xpReward);
-            session.setAttribute("user", user);
         }
 
         VocabGameScore score = vocabGameService.recordScore(user, points);
@@ -121,7 +128,7 @@ public class MiniGameController {
     public ResponseEntity<Map<String, Object>> submitImageGameResult(
             @RequestBody Map<String, Object> gameResult,
             HttpSession session) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) {
             return ResponseEntity.status(401).body(Map.of("error", "Not logged in"));
         }
@@ -132,27 +139,20 @@ public class MiniGameController {
         int heartsLost = ((Number) gameResult.getOrDefault("heartsLost", 0)).intValue();
         int gemsEarned = ((Number) gameResult.getOrDefault("gemsEarned", 0)).intValue();
 
-        // Update hearts
-        if (heartsLost > 0) {
-            int newHearts = Math.max(0, user.getHearts() - heartsLost);
-            user.setHearts(newHearts);
-        }
+        // Calculate XP (5 XP per correct answer)
+        int xpReward = correct * XP_PER_CORRECT;
 
-        // Update gems
-        if (gemsEarned > 0) {
-            user.setGems(user.getGems() + gemsEarned);
+        // Update hearts, gems and XP
+        if (gemsEarned > 0 || xpReward > 0) {
+            User credited = walletService.change(user.getId(), Math.max(0, xpReward), Math.max(0, gemsEarned), 0,
+                    "MINIGAME_REWARD", "Phần thưởng mini game");
+            if (credited != null) user = credited;
         }
-
-        // Calculate and add XP (5 XP per correct answer)
-        int xpReward = correct * XP_PER_CORRECT;
-        if (xpReward > 0) {
-            user = userService.addXp(user, xpReward);
+        if (heartsLost > 0) {
+            User updated = walletService.loseHearts(user.getId(), heartsLost, "MINIGAME_FAIL", "Mất tim trong mini game");
+            if (updated != null) user = updated;
         }
 
-        // Save user
-        userService.save(user);
-        session.setAttribute("user", user);
-
         // Record score
         vocabGameService.recordScore(user, score);
 
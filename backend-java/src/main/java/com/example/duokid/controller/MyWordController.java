@@ -2,6 +2,7 @@ package com.example.duokid.controller;
 
 import com.example.duokid.model.User;
 import com.example.duokid.service.MyWordService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -17,9 +18,11 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 public class MyWordController {
 
     private final MyWordService myWordService;
+    private final UserStateService userStateService;
 
-    public MyWordController(MyWordService myWordService) {
+    public MyWordController(MyWordService myWordService, UserStateService userStateService) {
         this.myWordService = myWordService;
+        this.userStateService = userStateService;
     }
 
     @GetMapping
@@ -73,7 +76,7 @@ public class MyWordController {
     }
 
     private User currentUser(HttpSession session) {
-        return (User) session.getAttribute("user");
+        return userStateService.currentUser(session);
     }
 }
 
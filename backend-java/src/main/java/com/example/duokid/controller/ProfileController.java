@@ -2,7 +2,8 @@ package com.example.duokid.controller;
 
 import com.example.duokid.model.User;
 import com.example.duokid.service.LessonProgressService;
-import com.example.duokid.service.UserService;
+import com.example.duokid.service.UploadStorageService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -14,45 +15,28 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.util.UUID;
 
 @Controller
 @RequestMapping("/profile")
 public class ProfileController {
 
-    private final UserService userService;
     private final LessonProgressService lessonProgressService;
-    private static final String UPLOAD_DIR = "src/main/resources/static/uploads/avatars/";
-    private static final String UPLOAD_URL_PREFIX = "/uploads/avatars/";
+    private final UploadStorageService uploadStorageService;
+    private final UserStateService userStateService;
 
-    public ProfileController(UserService userService, LessonProgressService lessonProgressService) {
-        this.userService = userService;
+    public ProfileController(LessonProgressService lessonProgressService,
+                             UploadStorageService uploadStorageService,
+                             UserStateService userStateService) {
         this.lessonProgressService = lessonProgressService;
-        
-        // Create upload directory if it doesn't exist
-        try {
-            Path uploadPath = Paths.get(UPLOAD_DIR);
-            if (!Files.exists(uploadPath)) {
-                Files.createDirectories(uploadPath);
-            }
-        } catch (IOException e) {
-            System.err.println("Could not create upload directory: " + e.getMessage());
-        }
+        this.uploadStorageService = uploadStorageService;
+        this.userStateService = userStateService;
     }
 
     @GetMapping
     public String showProfile(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
-        // Refresh user data
-        user = userService.save(user);
-        session.setAttribute("user", user);
-
         // Get user statistics
         int completedLessonsCount = lessonProgressService.getCompletedLessonsCount(user);
         
@@ -65,7 +49,7 @@ public class ProfileController {
     public String uploadAvatar(@RequestParam("avatar") MultipartFile file,
                                HttpSession session,
                                RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         if (file.isEmpty()) {
@@ -87,36 +71,13 @@ public class ProfileController {
         }
 
         try {
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String extension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-            }
-            String filename = "avatar_" + user.getId() + "_" + UUID.randomUUID().toString() + extension;
-            
-            // Save file
-            Path uploadPath = Paths.get(UPLOAD_DIR);
-            Path filePath = uploadPath.resolve(filename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-
-            // Delete old avatar if it's a custom upload (not default avatar)
-            String oldAvatar = user.getAvatar();
-            if (oldAvatar != null && oldAvatar.startsWith("/uploads/avatars/")) {
-                try {
-                    Path oldFilePath = Paths.get("src/main/resources/static" + oldAvatar);
-                    if (Files.exists(oldFilePath)) {
-                        Files.delete(oldFilePath);
-                    }
-                } catch (IOException e) {
-                    // Ignore if old file doesn't exist
-                }
-            }
+            // Lưu ảnh theo hash nội dung; avatar chỉ hiển thị nhỏ nên dùng luôn URL ảnh thu nhỏ
+            // (ảnh cũ không bị xóa vì cùng một file có thể là avatar của nhiều người)
+            String url = uploadStorageService.store(file, UploadStorageService.AVATARS);
 
             // Update user avatar
-            user.setAvatar(UPLOAD_URL_PREFIX + filename);
-            user = userService.save(user);
-            session.setAttribute("user", user);
+            String avatar = UploadStorageService.thumbnailUrl(url);
+            userStateService.update(user.getId(), u -> u.setAvatar(avatar));
 
             redirectAttributes.addFlashAttribute("success", "Cập nhật avatar thành công!");
         } catch (IOException e) {
@@ -131,7 +92,7 @@ public class ProfileController {
                             @RequestParam(value = "gradeLevel", required = false) String gradeLevel,
                             HttpSession session,
                             RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         if (displayName == null || displayName.trim().isEmpty()) {
@@ -139,13 +100,13 @@ public class ProfileController {
             return "redirect:/profile";
         }
 
-        user.setDisplayName(displayName.trim());
-        if (gradeLevel != null && !gradeLevel.isEmpty()) {
-            user.setGradeLevel(gradeLevel);
-        }
-
-        user = userService.save(user);
-        session.setAttribute("user", user);
+        user = userStateService.update(user.getId(), u -> {
+            u.setDisplayName(displayName.trim());
+            if (gradeLevel != null && !gradeLevel.isEmpty()) {
+                u.setGradeLevel(gradeLevel);
+            }
+        });
+        userStateService.refreshPrincipal(session, user);
 
         redirectAttributes.addFlashAttribute("success", "Cập nhật thông tin thành công!");
         return "redirect:/profile";
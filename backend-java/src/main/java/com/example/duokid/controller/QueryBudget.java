@@ -0,0 +1,16 @@
+package com.example.duokid.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Số câu SQL tối đa một request vào controller method này được phép chạy (xem QueryBudgetInterceptor)
+ * Tính cả các câu chạy khi render view (open-in-view), kiểm tra ở QueryBudgetFilter khi request kết thúc
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+    int value();
+}
@@ -0,0 +1,51 @@
+package com.example.duokid.controller;
+
+import com.example.duokid.service.QueryMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Kết thúc đếm câu SQL của request (bắt đầu ở QueryBudgetInterceptor) sau khi view đã render xong
+ * - Số liệu đầy đủ được cộng vào /admin/query-metrics và gắn vào request (RESULT_ATTRIBUTE) cho test đọc
+ * - query.budget.fail-on-exceed=true (bật khi chạy test): vượt @QueryBudget thì ném IllegalStateException
+ *   thay vì chỉ ghi log; chạy ngoài DispatcherServlet nên lỗi không bị nuốt như trong afterCompletion của interceptor
+ */
+@Component
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    public static final String RESULT_ATTRIBUTE = QueryBudgetFilter.class.getName() + ".RESULT";
+
+    private final QueryMetrics queryMetrics;
+    private final boolean failOnExceed;
+
+    public QueryBudgetFilter(QueryMetrics queryMetrics,
+                             @Value("${query.budget.fail-on-exceed:false}") boolean failOnExceed) {
+        this.queryMetrics = queryMetrics;
+        this.failOnExceed = failOnExceed;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        QueryMetrics.RequestQueries result;
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // Handler trả Mono / Flux thì interceptor đã kết thúc đếm, end() trả về null
+            result = queryMetrics.end();
+        }
+        if (result == null) return;
+        request.setAttribute(RESULT_ATTRIBUTE, result);
+        if (failOnExceed && result.isOverBudget()) {
+            throw new IllegalStateException("Query budget exceeded: " + result.getEndpoint() + " ran " +
+                    result.getStatements() + " statements (budget " + result.getBudget() + ")");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.duokid.controller;
+
+import com.example.duokid.service.QueryMetrics;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Đếm câu SQL cho mỗi request vào controller (QueryMetrics) và trả số liệu qua header
+ * - X-Query-Count / X-Query-Time-Ms / X-Query-Entities: số câu SQL, thời gian chạy, số entity được nạp
+ *   tính tới lúc controller trả về (header phải gửi trước khi render view; endpoint trả JSON thì body đã gửi nên không có header)
+ * - Kết thúc đếm và kiểm tra @QueryBudget trên số liệu đầy đủ (gồm cả lúc render view) nằm ở QueryBudgetFilter
+ */
+@Component
+public class QueryBudgetInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+
+    private final QueryMetrics queryMetrics;
+
+    public QueryBudgetInterceptor(QueryMetrics queryMetrics) {
+        this.queryMetrics = queryMetrics;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Chỉ lượt dispatch đầu tiên: lượt dispatch lại sau khi Mono / Flux xong, forward hay trang lỗi không tính thêm
+        if (handler instanceof HandlerMethod method && request.getDispatcherType() == DispatcherType.REQUEST) {
+            QueryBudget budget = method.getMethodAnnotation(QueryBudget.class);
+            queryMetrics.begin(method.getBeanType().getSimpleName() + "." + method.getMethod().getName(),
+                    budget != null ? budget.value() : 0);
+        }
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) {
+        QueryMetrics.RequestQueries current = queryMetrics.current();
+        if (current == null) return;
+        if (!response.isCommitted()) {
+            response.setHeader("X-Query-Count", String.valueOf(current.getStatements()));
+            response.setHeader("X-Query-Time-Ms", String.valueOf(current.getExecuteMillis()));
+            response.setHeader("X-Query-Entities", String.valueOf(current.getEntitiesLoaded()));
+        }
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Handler trả Mono / Flux: phần còn lại chạy trên luồng khác, chỉ tính phần đã chạy trên luồng request
+        queryMetrics.end();
+    }
+}
@@ -7,6 +7,8 @@ import com.example.duokid.service.DailyGoalService;
 import com.example.duokid.service.LessonProgressService;
 import com.example.duokid.service.LessonService;
 import com.example.duokid.service.UserService;
+import com.example.duokid.service.UserStateService;
+import com.example.duokid.service.WalletService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -23,22 +25,28 @@ public class QuizController {
     private final UserService userService;
     private final DailyGoalService dailyGoalService;
     private final LessonProgressService lessonProgressService;
+    private final UserStateService userStateService;
+    private final WalletService walletService;
 
     public QuizController(LessonService lessonService,
                           UserService userService,
                           DailyGoalService dailyGoalService,
-                          LessonProgressService lessonProgressService) {
+                          LessonProgressService lessonProgressService,
+                          UserStateService userStateService,
+                          WalletService walletService) {
         this.lessonService = lessonService;
         this.userService = userService;
         this.dailyGoalService = dailyGoalService;
         this.lessonProgressService = lessonProgressService;
+        this.userStateService = userStateService;
+        this.walletService = walletService;
     }
 
     @GetMapping("/{lessonId}")
     public String showQuiz(@PathVariable Long lessonId,
                            HttpSession session,
                            Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         if (user.getHearts() <= 0) {
@@ -57,11 +65,12 @@ public class QuizController {
     }
 
     @PostMapping("/{lessonId}")
+    @QueryBudget(15)
     public String submitQuiz(@PathVariable Long lessonId,
                              @RequestParam Map<String, String> params,
                              HttpSession session,
                              Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         if (user.getHearts() <= 0) {
@@ -88,10 +97,7 @@ public class QuizController {
         if (wrong < 0) wrong = 0;
 
         if (wrong > 0) {
-            int newHearts = user.getHearts() - wrong;
-            if (newHearts < 0) newHearts = 0;
-            user.setHearts(newHearts);
-            userService.save(user);
+            walletService.loseHearts(user.getId(), wrong, "QUIZ_FAIL", "Trả lời sai trong quiz: " + lesson.getTitle());
         }
 
         double ratio = total == 0 ? 0 : (double) correct / total;
@@ -110,11 +116,10 @@ public class QuizController {
             // Mark lesson as completed - chỉ khi đúng hết
             gateReward = lessonProgressService.markLessonCompleted(user, lesson, score);
             // Award gems (10 gems per lesson)
-            user.setGems(user.getGems() + 10);
-            userService.save(user);
+            walletService.change(user.getId(), 0, 10, 0, "LESSON_REWARD", "Hoàn thành quiz: " + lesson.getTitle());
         }
 
-        session.setAttribute("user", user);
+        user = userStateService.get(user.getId());
 
         model.addAttribute("user", user);
         model.addAttribute("lesson", lesson);
@@ -3,7 +3,8 @@ package com.example.duokid.controller;
 import com.example.duokid.model.ShopTransaction;
 import com.example.duokid.model.User;
 import com.example.duokid.repo.ShopTransactionRepository;
-import com.example.duokid.service.UserService;
+import com.example.duokid.service.UserStateService;
+import com.example.duokid.service.WalletService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -11,27 +12,29 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 @Controller
 public class ShopController {
 
-    private final UserService userService;
     private final ShopTransactionRepository shopTxRepo;
+    private final UserStateService userStateService;
+    private final WalletService walletService;
     private static final int XP_PER_HEART = 10;
 
-    public ShopController(UserService userService,
-                          ShopTransactionRepository shopTxRepo) {
-        this.userService = userService;
+    public ShopController(ShopTransactionRepository shopTxRepo,
+                          UserStateService userStateService,
+                          WalletService walletService) {
         this.shopTxRepo = shopTxRepo;
+        this.userStateService = userStateService;
+        this.walletService = walletService;
     }
 
     @GetMapping("/shop")
     public String shop(@RequestParam(required = false) String reason,
                        HttpSession session,
                        Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         List<ShopTransaction> history = shopTxRepo.findTop20ByUserOrderByTimeDesc(user);
@@ -48,7 +51,7 @@ public class ShopController {
                             @RequestParam(defaultValue = "XP") String paymentType,
                             HttpSession session,
                             Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         List<ShopTransaction> history = shopTxRepo.findTop20ByUserOrderByTimeDesc(user);
@@ -61,40 +64,21 @@ public class ShopController {
             return "shop";
         }
 
-        ShopTransaction tx = new ShopTransaction();
-        tx.setUser(user);
-        tx.setTime(LocalDateTime.now());
-        tx.setHeartsChanged(amount);
+        // Trừ tiền và cộng tim trong một câu UPDATE, không thực hiện nếu số dư không đủ
+        boolean payWithGems = "GEMS".equals(paymentType);
+        // Buy with gems (200 gems per heart) or XP (default)
+        int cost = payWithGems ? amount * 200 : amount * XP_PER_HEART;
+        User updated = payWithGems
+                ? walletService.change(user.getId(), 0, -cost, amount, "BUY_GEMS", "Mua tim bằng Gems")
+                : walletService.change(user.getId(), -cost, 0, amount, "BUY", "Mua tim bằng XP");
 
-        if ("GEMS".equals(paymentType)) {
-            // Buy with gems (200 gems per heart)
-            int gemsPerHeart = 200;
-            int cost = amount * gemsPerHeart;
-            if (user.getGems() < cost) {
-                model.addAttribute("error", "Gems không đủ. Cần " + cost + " Gems để mua " + amount + " tim.");
-                return "shop";
-            }
-            user.setGems(user.getGems() - cost);
-            tx.setXpChanged(0);
-            tx.setType("BUY_GEMS");
-            tx.setNote("Mua tim bằng Gems");
-        } else {
-            // Buy with XP (default)
-            int cost = amount * XP_PER_HEART;
-            if (user.getXp() < cost) {
-                model.addAttribute("error", "XP không đủ. Cần " + cost + " XP để mua " + amount + " tim.");
-                return "shop";
-            }
-            user.setXp(user.getXp() - cost);
-            tx.setXpChanged(-cost);
-            tx.setType("BUY");
-            tx.setNote("Mua tim bằng XP");
+        if (updated == null) {
+            model.addAttribute("error", payWithGems
+                    ? "Gems không đủ. Cần " + cost + " Gems để mua " + amount + " tim."
+                    : "XP không đủ. Cần " + cost + " XP để mua " + amount + " tim.");
+            return "shop";
         }
-
-        user.setHearts(user.getHearts() + amount);
-        userService.save(user);
-        session.setAttribute("user", user);
-        shopTxRepo.save(tx);
+        model.addAttribute("user", updated);
 
         history = shopTxRepo.findTop20ByUserOrderByTimeDesc(user);
         model.addAttribute("history", history);
@@ -5,6 +5,8 @@ import com.example.duokid.model.TestQuestion;
 import com.example.duokid.model.User;
 import com.example.duokid.service.TestService;
 import com.example.duokid.service.UserService;
+import com.example.duokid.service.UserStateService;
+import com.example.duokid.service.WalletService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -26,17 +28,21 @@ public class TestController {
 
     private final TestService testService;
     private final UserService userService;
+    private final UserStateService userStateService;
+    private final WalletService walletService;
 
-    public TestController(TestService testService, UserService userService) {
+    public TestController(TestService testService, UserService userService, UserStateService userStateService, WalletService walletService) {
         this.testService = testService;
         this.userService = userService;
+        this.userStateService = userStateService;
+        this.walletService = walletService;
     }
 
     @GetMapping("/{id}")
     public String showTest(@PathVariable Long id,
                           HttpSession session,
                           Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         // Check if user has enough hearts
@@ -63,7 +69,7 @@ public class TestController {
                             @RequestParam Map<String, String> params,
                             HttpSession session,
                             RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         Optional<Test> testOpt = testService.getTestRepo().findById(id);
@@ -93,15 +99,16 @@ public class TestController {
         if (result.isPassed()) {
             // Passed: reward XP and gems
             userService.addXpAndUpdateStreak(user, test.getXpReward());
-            user.setGems(user.getGems() + test.getGemsReward());
+            walletService.change(user.getId(), 0, test.getGemsReward(), 0, "TEST_REWARD", "Vượt qua bài kiểm tra: " + test.getTitle());
             redirectAttributes.addFlashAttribute("message", 
                 String.format("Chúc mừng! Bạn đã vượt qua bài kiểm tra với %d điểm! Nhận %d XP và %d Gems!", 
                     result.getScore(), test.getXpReward(), test.getGemsReward()));
         } else {
             // Failed: lose hearts
             int heartsLost = test.getHeartsLostOnFail();
-            int newHearts = Math.max(0, user.getHearts() - heartsLost);
-            user.setHearts(newHearts);
+            User updated = walletService.loseHearts(user.getId(), heartsLost,
+                    "TEST_FAIL", "Không vượt qua bài kiểm tra: " + test.getTitle());
+            int newHearts = updated != null ? updated.getHearts() : 0;
             redirectAttributes.addFlashAttribute("error", 
                 String.format("Bạn đã không vượt qua bài kiểm tra (%d điểm). Mất %d tim. Hãy học lại và thử lại nhé!", 
                     result.getScore(), heartsLost));
@@ -111,9 +118,6 @@ public class TestController {
             }
         }
 
-        userService.save(user);
-        session.setAttribute("user", user);
-
         redirectAttributes.addFlashAttribute("testScore", result.getScore());
         redirectAttributes.addFlashAttribute("testCorrect", result.getCorrect());
         redirectAttributes.addFlashAttribute("testTotal", result.getTotal());
@@ -126,7 +130,7 @@ public class TestController {
     public String testResult(@PathVariable Long id,
                             HttpSession session,
                             Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         Optional<Test> testOpt = testService.getTestRepo().findById(id);
@@ -4,6 +4,7 @@ import com.example.duokid.model.Test;
 import com.example.duokid.model.User;
 import com.example.duokid.service.LessonProgressService;
 import com.example.duokid.service.TestService;
+import com.example.duokid.service.UserStateService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -18,15 +19,17 @@ public class TestsController {
 
     private final TestService testService;
     private final LessonProgressService lessonProgressService;
+    private final UserStateService userStateService;
 
-    public TestsController(TestService testService, LessonProgressService lessonProgressService) {
+    public TestsController(TestService testService, LessonProgressService lessonProgressService, UserStateService userStateService) {
         this.testService = testService;
         this.lessonProgressService = lessonProgressService;
+        this.userStateService = userStateService;
     }
 
     @GetMapping
     public String listTests(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         String userLevel = user.getGradeLevel();
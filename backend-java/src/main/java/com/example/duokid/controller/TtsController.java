@@ -1,32 +1,53 @@
 package com.example.duokid.controller;
 
-import com.example.duokid.service.AiPythonClient;
+import com.example.duokid.service.TtsCacheService;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 public class TtsController {
 
-    private final AiPythonClient aiPythonClient;
+    private static final MediaType AUDIO_MPEG = MediaType.parseMediaType("audio/mpeg");
 
-    public TtsController(AiPythonClient aiPythonClient) {
-        this.aiPythonClient = aiPythonClient;
+    private final TtsCacheService ttsCacheService;
+
+    public TtsController(TtsCacheService ttsCacheService) {
+        this.ttsCacheService = ttsCacheService;
     }
 
     @GetMapping("/tts")
-    public ResponseEntity<Map<String, String>> tts(@RequestParam String text) {
+    public Mono<ResponseEntity<Map<String, String>>> tts(@RequestParam String text) {
         if (text == null || text.trim().isEmpty()) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Text is required"));
-        }
-        String audioUrl = aiPythonClient.getTtsAudioUrl(text);
-        if (audioUrl == null) {
-            return ResponseEntity.status(503).body(Map.of("error", "Không tạo được audio lúc này."));
+            return Mono.just(ResponseEntity.badRequest().body(Map.of("error", "Text is required")));
         }
-        return ResponseEntity.ok(Map.of("audioUrl", audioUrl));
+        return ttsCacheService.getAudioUrl(text)
+                .map(audioUrl -> ResponseEntity.ok(Map.of("audioUrl", audioUrl)))
+                .defaultIfEmpty(ResponseEntity.status(503).body(Map.of("error", "Không tạo được audio lúc này.")));
     }
-}
 
+    /**
+     * File audio đã cache: key là hash của text nên nội dung không đổi (cache 1 năm, ETag = key).
+     * Trả về Resource nên Spring tự xử lý If-None-Match (304) và header Range (206) khi trình duyệt tua audio
+     */
+    @GetMapping("/tts/audio/{key}.mp3")
+    public ResponseEntity<Resource> audio(@PathVariable String key) {
+        return ttsCacheService.getAudio(key)
+                .<ResponseEntity<Resource>>map(bytes -> ResponseEntity.ok()
+                        .contentType(AUDIO_MPEG)
+                        .eTag("\"" + key + "\"")
+                        .cacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                        .body(new ByteArrayResource(bytes)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.duokid.controller;
+
+import com.example.duokid.service.UploadStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phục vụ ảnh upload từ thư mục upload.dir
+ * - Ảnh lưu theo hash nội dung không bao giờ đổi nên được cache 1 năm (immutable), ETag chính là hash
+ * - Gửi file bằng sendfile của Tomcat (zero-copy) khi connector hỗ trợ, nếu không thì FileChannel.transferTo
+ * - File upload theo cách cũ (trong src/main/resources/static/uploads) vẫn được phục vụ, cache ngắn
+ */
+@Controller
+public class UploadController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    private static final CacheControl LEGACY = CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic();
+    // Ảnh thu nhỏ chưa tạo xong (đang trả ảnh gốc): không cache để lần sau lấy được ảnh thu nhỏ
+    private static final CacheControl PENDING = CacheControl.noCache();
+
+    private final UploadStorageService uploadStorageService;
+
+    public UploadController(UploadStorageService uploadStorageService) {
+        this.uploadStorageService = uploadStorageService;
+    }
+
+    @GetMapping("/uploads/{category}/{filename:.+}")
+    public void serveUpload(@PathVariable String category,
+                            @PathVariable String filename,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        Optional<Path> stored = uploadStorageService.resolve(category, filename);
+        if (stored.isPresent()) {
+            sendFile(stored.get(), IMMUTABLE, request, response);
+            return;
+        }
+        Optional<Path> legacy = uploadStorageService.resolveLegacy(category, filename);
+        if (legacy.isPresent()) {
+            sendFile(legacy.get(), LEGACY, request, response);
+            return;
+        }
+        response.sendError(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @GetMapping("/uploads/{category}/thumbs/{filename:.+}")
+    public void serveThumbnail(@PathVariable String category,
+                               @PathVariable String filename,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        Optional<Path> file = uploadStorageService.resolveThumbnail(category, filename);
+        if (file.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        boolean ready = file.get().getFileName().toString().equals(filename);
+        sendFile(file.get(), ready ? IMMUTABLE : PENDING, request, response);
+    }
+
+    private void sendFile(Path file, CacheControl cacheControl,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long size = Files.size(file);
+        String name = file.getFileName().toString();
+        String etag = "\"" + (cacheControl == IMMUTABLE
+                ? name.substring(0, name.indexOf('.') > 0 ? name.indexOf('.') : name.length())
+                : Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + "-" + Long.toHexString(size)) + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return; // 304
+        }
+
+        MediaType mediaType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentType(mediaType.toString());
+        // Trình duyệt không tự đoán lại kiểu file (ảnh có nhúng HTML vẫn chỉ được hiển thị như ảnh)
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(size);
+        if ("HEAD".equals(request.getMethod())) return;
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat tự gửi file sau khi request xử lý xong (sendfile của hệ điều hành)
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.example.duokid.controller;
 import com.example.duokid.model.User;
 import com.example.duokid.model.Vocabulary;
 import com.example.duokid.repo.VocabularyRepository;
+import com.example.duokid.service.UserStateService;
 import com.example.duokid.service.VocabularyService;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.stereotype.Controller;
@@ -18,11 +19,14 @@ public class VocabularyController {
 
     private final VocabularyRepository vocabularyRepository;
     private final VocabularyService vocabularyService;
+    private final UserStateService userStateService;
 
     public VocabularyController(VocabularyRepository vocabularyRepository,
-                               VocabularyService vocabularyService) {
+                               VocabularyService vocabularyService,
+                               UserStateService userStateService) {
         this.vocabularyRepository = vocabularyRepository;
         this.vocabularyService = vocabularyService;
+        this.userStateService = userStateService;
     }
 
     /**
@@ -39,7 +43,7 @@ public class VocabularyController {
             HttpSession session,
             Model model) {
         
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         // Lấy danh sách từ vựng theo filter
@@ -127,7 +131,7 @@ public class VocabularyController {
     public String viewVocabulary(@PathVariable Long id,
                                 HttpSession session,
                                 Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
 
         Vocabulary vocabulary = vocabularyService.getVocabularyById(id).orElse(null);
@@ -149,7 +153,7 @@ public class VocabularyController {
     public String deleteVocabulary(@PathVariable Long id,
                                    HttpSession session,
                                    RedirectAttributes redirectAttributes) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         
         if (!isAdmin(user)) {
@@ -175,7 +179,7 @@ public class VocabularyController {
      */
     @GetMapping("/stats")
     public String vocabularyStats(HttpSession session, Model model) {
-        User user = (User) session.getAttribute("user");
+        User user = userStateService.currentUser(session);
         if (user == null) return "redirect:/login";
         
         if (!isAdmin(user)) {
@@ -202,6 +206,10 @@ public class VocabularyController {
         model.addAttribute("readingTestNumbers", readingTestNumbers);
         model.addAttribute("listeningParts", listeningParts);
         model.addAttribute("readingParts", readingParts);
+        model.addAttribute("listeningTestCounts", vocabularyService.getTestNumberCounts("LISTENING"));
+        model.addAttribute("readingTestCounts", vocabularyService.getTestNumberCounts("READING"));
+        model.addAttribute("listeningPartCounts", vocabularyService.getPartCounts("LISTENING"));
+        model.addAttribute("readingPartCounts", vocabularyService.getPartCounts("READING"));
 
         return "vocabulary_stats";
     }
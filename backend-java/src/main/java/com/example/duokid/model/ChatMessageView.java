@@ -0,0 +1,47 @@
+package com.example.duokid.model;
+
+import com.example.duokid.service.UploadStorageService;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Tin nhắn chat gửi cho trình duyệt (JSON / SSE)
+ * Chỉ chứa id người gửi / người nhận, không serialize entity User (tránh lộ mật khẩu đã hash)
+ */
+public class ChatMessageView {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm, dd/MM/yyyy");
+
+    private final Long id;
+    private final Long senderId;
+    private final Long receiverId;
+    private final String content;
+    private final String imageUrl;
+    private final String sentAt;
+
+    public ChatMessageView(Long id, Long senderId, Long receiverId, String content, String imageUrl, String sentAt) {
+        this.id = id;
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.content = content;
+        this.imageUrl = imageUrl;
+        this.sentAt = sentAt;
+    }
+
+    public static ChatMessageView from(Message message) {
+        return new ChatMessageView(message.getId(),
+                message.getSender().getId(),
+                message.getReceiver().getId(),
+                message.getContent(),
+                message.getImageUrl(),
+                message.getSentAt() != null ? message.getSentAt().format(TIME_FORMAT) : null);
+    }
+
+    public Long getId() { return id; }
+    public Long getSenderId() { return senderId; }
+    public Long getReceiverId() { return receiverId; }
+    public String getContent() { return content; }
+    public String getImageUrl() { return imageUrl; }
+    public String getThumbnailUrl() { return UploadStorageService.thumbnailUrl(imageUrl); }
+    public String getSentAt() { return sentAt; }
+}
@@ -0,0 +1,93 @@
+package com.example.duokid.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Tóm tắt một hội thoại nhìn từ phía owner (mỗi cặp người dùng có 2 dòng: A→B và B→A)
+ * - Được cập nhật khi gửi tin nhắn, trang chat đọc danh sách hội thoại từ bảng này thay vì quét toàn bộ tin nhắn
+ */
+@Entity
+@Table(name = "conversation_summaries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversation_owner_partner", columnNames = {"owner_id", "partner_id"}),
+        indexes = @Index(name = "idx_conversation_owner_last", columnList = "owner_id, last_message_at"))
+public class ConversationSummary {
+
+    public static final int PREVIEW_LENGTH = 100;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    private User owner; // Người xem danh sách hội thoại
+
+    @ManyToOne(optional = false)
+    private User partner; // Người trò chuyện cùng
+
+    private Long lastMessageId;
+
+    @Column(length = PREVIEW_LENGTH + 10)
+    private String lastMessagePreview; // Đoạn đầu tin nhắn cuối (hoặc "📷 Ảnh")
+
+    private LocalDateTime lastMessageAt;
+
+    private Long lastSenderId;
+
+    private int unreadCount; // Số tin nhắn partner gửi mà owner chưa đọc
+
+    public ConversationSummary() {}
+
+    public ConversationSummary(User owner, User partner) {
+        this.owner = owner;
+        this.partner = partner;
+    }
+
+    /**
+     * Ghi nhận một tin nhắn mới của hội thoại
+     * @param incoming true nếu tin nhắn do partner gửi cho owner
+     */
+    public void applyMessage(Message message, boolean incoming) {
+        if (lastMessageId == null || message.getId() > lastMessageId) {
+            lastMessageId = message.getId();
+            lastMessageAt = message.getSentAt();
+            lastSenderId = message.getSender().getId();
+            lastMessagePreview = preview(message);
+        }
+        if (incoming && !message.getIsRead()) {
+            unreadCount++;
+        }
+    }
+
+    private static String preview(Message message) {
+        String content = message.getContent();
+        if (content == null || content.isBlank()) {
+            return message.getImageUrl() != null ? "📷 Ảnh" : "";
+        }
+        return content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) + "…" : content;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public User getOwner() { return owner; }
+    public void setOwner(User owner) { this.owner = owner; }
+
+    public User getPartner() { return partner; }
+    public void setPartner(User partner) { this.partner = partner; }
+
+    public Long getLastMessageId() { return lastMessageId; }
+    public void setLastMessageId(Long lastMessageId) { this.lastMessageId = lastMessageId; }
+
+    public String getLastMessagePreview() { return lastMessagePreview; }
+    public void setLastMessagePreview(String lastMessagePreview) { this.lastMessagePreview = lastMessagePreview; }
+
+    public LocalDateTime getLastMessageAt() { return lastMessageAt; }
+    public void setLastMessageAt(LocalDateTime lastMessageAt) { this.lastMessageAt = lastMessageAt; }
+
+    public Long getLastSenderId() { return lastSenderId; }
+    public void setLastSenderId(Long lastSenderId) { this.lastSenderId = lastSenderId; }
+
+    public int getUnreadCount() { return unreadCount; }
+    public void setUnreadCount(int unreadCount) { this.unreadCount = unreadCount; }
+}
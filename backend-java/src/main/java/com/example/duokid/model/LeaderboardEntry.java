@@ -0,0 +1,36 @@
+package com.example.duokid.model;
+
+/**
+ * Một dòng trên bảng xếp hạng XP (bản chụp các field cần hiển thị của User)
+ * Được giữ trong LeaderboardService nên trang xếp hạng không cần query bảng users
+ */
+public class LeaderboardEntry {
+
+    private final Long id;
+    private final String displayName;
+    private final String avatar;
+    private final int xp;
+    private final int gems;
+    private final int streak;
+
+    public LeaderboardEntry(Long id, String displayName, String avatar, int xp, int gems, int streak) {
+        this.id = id;
+        this.displayName = displayName;
+        this.avatar = avatar;
+        this.xp = xp;
+        this.gems = gems;
+        this.streak = streak;
+    }
+
+    public static LeaderboardEntry from(User user) {
+        return new LeaderboardEntry(user.getId(), user.getDisplayName(), user.getAvatar(),
+                user.getXp(), user.getGems(), user.getStreak());
+    }
+
+    public Long getId() { return id; }
+    public String getDisplayName() { return displayName; }
+    public String getAvatar() { return avatar; }
+    public int getXp() { return xp; }
+    public int getGems() { return gems; }
+    public int getStreak() { return streak; }
+}
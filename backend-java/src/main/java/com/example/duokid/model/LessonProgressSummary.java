@@ -0,0 +1,30 @@
+package com.example.duokid.model;
+
+/**
+ * Tiến độ của user ở một bài học (chỉ các cột cần cho lộ trình, không nạp User / Lesson)
+ * Dùng cho dashboard, trang bài học và kiểm tra hoàn thành ô cửa
+ */
+public class LessonProgressSummary {
+
+    private final Long lessonId;
+    private final boolean completed;
+    private final boolean unlocked;
+    private final int score;
+
+    public LessonProgressSummary(Long lessonId, boolean completed, boolean unlocked, int score) {
+        this.lessonId = lessonId;
+        this.completed = completed;
+        this.unlocked = unlocked;
+        this.score = score;
+    }
+
+    public static LessonProgressSummary of(UserLessonProgress progress) {
+        return new LessonProgressSummary(progress.getLesson().getId(), progress.isCompleted(),
+                progress.isUnlocked(), progress.getScore());
+    }
+
+    public Long getLessonId() { return lessonId; }
+    public boolean isCompleted() { return completed; }
+    public boolean isUnlocked() { return unlocked; }
+    public int getScore() { return score; }
+}
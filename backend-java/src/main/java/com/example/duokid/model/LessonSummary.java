@@ -0,0 +1,38 @@
+package com.example.duokid.model;
+
+/**
+ * Thông tin tóm tắt của bài học (không có contentHtml)
+ * Dùng cho danh sách bài học, trang lớp, lộ trình dashboard và kiểm tra ô cửa
+ */
+public class LessonSummary {
+
+    private final Long id;
+    private final String title;
+    private final String description;
+    private final String level;
+    private final Integer orderIndex;
+    private final String partName;
+    private final int xpReward;
+    private final String lessonType;
+
+    public LessonSummary(Long id, String title, String description, String level,
+                         Integer orderIndex, String partName, int xpReward, String lessonType) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.level = level;
+        this.orderIndex = orderIndex;
+        this.partName = partName;
+        this.xpReward = xpReward;
+        this.lessonType = lessonType;
+    }
+
+    public Long getId() { return id; }
+    public String getTitle() { return title; }
+    public String getDescription() { return description; }
+    public String getLevel() { return level; }
+    public Integer getOrderIndex() { return orderIndex; }
+    public String getPartName() { return partName; }
+    public int getXpReward() { return xpReward; }
+    public String getLessonType() { return lessonType; }
+}
@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        // Phân trang hội thoại theo id (keyset): WHERE sender = ? AND receiver = ? AND id < ? ORDER BY id DESC
+        @Index(name = "idx_messages_sender_receiver_id", columnList = "sender_id, receiver_id, id"),
+        @Index(name = "idx_messages_receiver_read", columnList = "receiver_id, is_read")
+})
 public class Message {
 
     @Id
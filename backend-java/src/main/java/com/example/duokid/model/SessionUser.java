@@ -0,0 +1,34 @@
+package com.example.duokid.model;
+
+import java.io.Serializable;
+
+/**
+ * Thông tin đăng nhập lưu trong HttpSession (bất biến, không có mật khẩu hay các chỉ số xp / gems / hearts)
+ * Trạng thái đầy đủ của user lấy qua UserStateService
+ */
+public class SessionUser implements Serializable {
+
+    public static final String SESSION_ATTRIBUTE = "sessionUser";
+
+    private final Long id;
+    private final String displayName;
+    private final String gradeLevel;
+    private final boolean admin;
+
+    public SessionUser(Long id, String displayName, String gradeLevel, boolean admin) {
+        this.id = id;
+        this.displayName = displayName;
+        this.gradeLevel = gradeLevel;
+        this.admin = admin;
+    }
+
+    public static SessionUser of(User user) {
+        return new SessionUser(user.getId(), user.getDisplayName(), user.getGradeLevel(),
+                Boolean.TRUE.equals(user.getIsAdmin()));
+    }
+
+    public Long getId() { return id; }
+    public String getDisplayName() { return displayName; }
+    public String getGradeLevel() { return gradeLevel; }
+    public boolean isAdmin() { return admin; }
+}
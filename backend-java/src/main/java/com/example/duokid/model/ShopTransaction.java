@@ -18,6 +18,8 @@ public class ShopTransaction {
 
     private int heartsChanged;
     private int xpChanged;
+    @Column(columnDefinition = "integer default 0 not null")
+    private int gemsChanged;
 
     private String type;
     private String note;
@@ -39,6 +41,9 @@ public class ShopTransaction {
     public int getXpChanged() { return xpChanged; }
     public void setXpChanged(int xpChanged) { this.xpChanged = xpChanged; }
 
+    public int getGemsChanged() { return gemsChanged; }
+    public void setGemsChanged(int gemsChanged) { this.gemsChanged = gemsChanged; }
+
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
 
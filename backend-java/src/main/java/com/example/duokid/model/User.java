@@ -1,5 +1,6 @@
 package com.example.duokid.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.LocalDate;
 
@@ -14,13 +15,19 @@ public class User {
     @Column(unique = true)
     private String email;
 
+    @JsonIgnore
     private String password;
     private String displayName;
     private String avatar;
 
     private int streak;
+
+    // Số dư chỉ được đổi qua WalletService (UPDATE cộng dồn), lưu cả entity không ghi đè các cột này
+    @Column(updatable = false)
     private int xp;
+    @Column(updatable = false)
     private int gems; // Duolingo-style gems (in-game currency)
+    @Column(updatable = false)
     private int hearts;
 
     private String gradeLevel;
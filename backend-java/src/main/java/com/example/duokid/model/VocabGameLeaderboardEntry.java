@@ -0,0 +1,29 @@
+package com.example.duokid.model;
+
+/**
+ * Một dòng trên bảng xếp hạng mini game từ vựng (bản chụp từ VocabGameScore)
+ */
+public class VocabGameLeaderboardEntry {
+
+    private final Long userId;
+    private final String displayName;
+    private final int totalPoints;
+    private final int bestRoundScore;
+
+    public VocabGameLeaderboardEntry(Long userId, String displayName, int totalPoints, int bestRoundScore) {
+        this.userId = userId;
+        this.displayName = displayName;
+        this.totalPoints = totalPoints;
+        this.bestRoundScore = bestRoundScore;
+    }
+
+    public static VocabGameLeaderboardEntry from(VocabGameScore score) {
+        return new VocabGameLeaderboardEntry(score.getUser().getId(), score.getUser().getDisplayName(),
+                score.getTotalPoints(), score.getBestRoundScore());
+    }
+
+    public Long getUserId() { return userId; }
+    public String getDisplayName() { return displayName; }
+    public int getTotalPoints() { return totalPoints; }
+    public int getBestRoundScore() { return bestRoundScore; }
+}
@@ -0,0 +1,21 @@
+package com.example.duokid.model;
+
+/**
+ * Số dư hiện tại của user (xp, gems, hearts), đọc thẳng từ database sau mỗi lần WalletService ghi
+ */
+public class WalletBalance {
+
+    private final int xp;
+    private final int gems;
+    private final int hearts;
+
+    public WalletBalance(int xp, int gems, int hearts) {
+        this.xp = xp;
+        this.gems = gems;
+        this.hearts = hearts;
+    }
+
+    public int getXp() { return xp; }
+    public int getGems() { return gems; }
+    public int getHearts() { return hearts; }
+}
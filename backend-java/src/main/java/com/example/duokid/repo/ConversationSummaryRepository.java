@@ -0,0 +1,31 @@
+package com.example.duokid.repo;
+
+import com.example.duokid.model.ConversationSummary;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface ConversationSummaryRepository extends JpaRepository<ConversationSummary, Long> {
+
+    // Danh sách hội thoại của user, mới nhất trước
+    @Query("SELECT c FROM ConversationSummary c JOIN FETCH c.partner " +
+           "WHERE c.owner.id = :ownerId ORDER BY c.lastMessageAt DESC")
+    List<ConversationSummary> findByOwnerWithPartner(@Param("ownerId") Long ownerId);
+
+    // Khóa dòng tóm tắt khi cập nhật (2 tin nhắn cùng lúc không ghi đè nhau)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ConversationSummary c WHERE c.owner.id = :ownerId AND c.partner.id = :partnerId")
+    Optional<ConversationSummary> findForUpdate(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId);
+
+    // Owner đã mở hội thoại: xóa số tin chưa đọc
+    @Modifying
+    @Query("UPDATE ConversationSummary c SET c.unreadCount = 0 " +
+           "WHERE c.owner.id = :ownerId AND c.partner.id = :partnerId AND c.unreadCount > 0")
+    int resetUnread(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId);
+}
@@ -1,12 +1,17 @@
 package com.example.duokid.repo;
 
 import com.example.duokid.model.Grammar;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 
 public interface GrammarRepository extends JpaRepository<Grammar, Long> {
     List<Grammar> findByLevel(String level);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<Grammar> findByLevelOrderByOrderIndex(String level);
 }
 
@@ -1,6 +1,21 @@
 package com.example.duokid.repo;
 
 import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
-public interface LessonRepository extends JpaRepository<Lesson, Long> { }
+import java.util.List;
+
+public interface LessonRepository extends JpaRepository<Lesson, Long> {
+
+    @Query("SELECT new com.example.duokid.model.LessonSummary(l.id, l.title, l.description, l.level, " +
+           "l.orderIndex, l.partName, l.xpReward, l.lessonType) FROM Lesson l")
+    List<LessonSummary> findAllSummaries();
+
+    @Query("SELECT l.contentHtml FROM Lesson l WHERE l.id = :id")
+    String findContentHtmlById(Long id);
+
+    @Query(value = "SELECT * FROM lessons WHERE LOWER(content_html) LIKE CONCAT('%', LOWER(:text), '%') ESCAPE '\\'", nativeQuery = true)
+    List<Lesson> findByContentHtmlContaining(String text);
+}
@@ -1,31 +1,39 @@
 package com.example.duokid.repo;
 
 import com.example.duokid.model.Message;
-import com.example.duokid.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
-    
-    // Lấy tất cả tin nhắn giữa 2 người dùng
-    @Query("SELECT m FROM Message m WHERE " +
-           "(m.sender = :user1 AND m.receiver = :user2) OR " +
-           "(m.sender = :user2 AND m.receiver = :user1) " +
-           "ORDER BY m.sentAt ASC")
-    List<Message> findConversationBetweenUsers(@Param("user1") User user1, @Param("user2") User user2);
-    
-    // Lấy tất cả tin nhắn liên quan đến user (để lấy danh sách partners)
-    @Query("SELECT m FROM Message m WHERE m.sender = :user OR m.receiver = :user ORDER BY m.sentAt DESC")
-    List<Message> findMessagesByUser(@Param("user") User user);
-    
-    // Đếm số tin nhắn chưa đọc
-    @Query("SELECT COUNT(m) FROM Message m WHERE m.receiver = :user AND m.isRead = false")
-    Long countUnreadMessages(@Param("user") User user);
-    
-    // Lấy tin nhắn chưa đọc
-    List<Message> findByReceiverAndIsReadFalseOrderBySentAtDesc(User receiver);
-}
 
+    // Tin nhắn senderId gửi cho receiverId có id < beforeId, mới nhất trước (phân trang keyset, dùng index sender/receiver/id)
+    @Query("SELECT m FROM Message m WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId " +
+           "AND m.id < :beforeId ORDER BY m.id DESC")
+    List<Message> findSentBefore(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId,
+                                 @Param("beforeId") Long beforeId, Pageable pageable);
+
+    // Tin nhắn senderId gửi cho receiverId có id > afterId, cũ nhất trước (bù tin nhắn khi kết nối SSE bị gián đoạn)
+    @Query("SELECT m FROM Message m WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId " +
+           "AND m.id > :afterId ORDER BY m.id ASC")
+    List<Message> findSentAfter(@Param("senderId") Long senderId, @Param("receiverId") Long receiverId,
+                                @Param("afterId") Long afterId, Pageable pageable);
+
+    // Đánh dấu đã đọc toàn bộ tin sender gửi cho receiver bằng một câu UPDATE, trả về số tin được cập nhật
+    @Modifying
+    @Query("UPDATE Message m SET m.isRead = true " +
+           "WHERE m.receiver.id = :receiverId AND m.sender.id = :senderId AND m.isRead = false")
+    int markConversationRead(@Param("receiverId") Long receiverId, @Param("senderId") Long senderId);
+
+    // Số tin nhắn chưa đọc của từng người nhận: [receiverId, count]
+    @Query("SELECT m.receiver.id, COUNT(m) FROM Message m WHERE m.isRead = false GROUP BY m.receiver.id")
+    List<Object[]> countUnreadByReceiver();
+
+    // Số tin nhắn chưa đọc của một người nhận, chỉ dùng khi đánh dấu đã đọc để đồng bộ lại bộ đếm trong bộ nhớ
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.receiver.id = :receiverId AND m.isRead = false")
+    long countUnreadByReceiverId(@Param("receiverId") Long receiverId);
+}
@@ -2,10 +2,20 @@ package com.example.duokid.repo;
 
 import com.example.duokid.model.Lesson;
 import com.example.duokid.model.QuizQuestion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 
 public interface QuizQuestionRepository extends JpaRepository<QuizQuestion, Long> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<QuizQuestion> findByLesson(Lesson lesson);
+
+    boolean existsByLessonId(Long lessonId);
+
+    @Query("SELECT DISTINCT q.lesson.id FROM QuizQuestion q WHERE q.lesson IS NOT NULL")
+    List<Long> findLessonIdsWithQuestions();
 }
@@ -2,11 +2,15 @@ package com.example.duokid.repo;
 
 import com.example.duokid.model.Test;
 import com.example.duokid.model.TestQuestion;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.List;
 
 public interface TestQuestionRepository extends JpaRepository<TestQuestion, Long> {
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<TestQuestion> findByTest(Test test);
 }
 
@@ -1,6 +1,7 @@
 package com.example.duokid.repo;
 
 import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonProgressSummary;
 import com.example.duokid.model.User;
 import com.example.duokid.model.UserLessonProgress;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -11,7 +12,10 @@ import java.util.Optional;
 
 public interface UserLessonProgressRepository extends JpaRepository<UserLessonProgress, Long> {
     Optional<UserLessonProgress> findByUserAndLesson(User user, Lesson lesson);
-    List<UserLessonProgress> findByUser(User user);
+
+    @Query("SELECT new com.example.duokid.model.LessonProgressSummary(p.lesson.id, p.completed, p.unlocked, p.score) " +
+           "FROM UserLessonProgress p WHERE p.user.id = :userId AND p.lesson IS NOT NULL")
+    List<LessonProgressSummary> findSummariesByUserId(Long userId);
     
     @Query("SELECT COUNT(ulp) FROM UserLessonProgress ulp WHERE ulp.user = :user AND ulp.completed = true")
     int countCompletedLessonsByUser(User user);
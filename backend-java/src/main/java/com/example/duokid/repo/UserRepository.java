@@ -1,7 +1,11 @@
 package com.example.duokid.repo;
 
 import com.example.duokid.model.User;
+import com.example.duokid.model.WalletBalance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -9,4 +13,22 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     List<User> findTop10ByOrderByXpDesc();
+
+    /**
+     * Cộng / trừ số dư trong một câu UPDATE, không thực hiện (trả về 0) nếu số dư nào bị âm
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.xp = u.xp + :xp, u.gems = u.gems + :gems, u.hearts = u.hearts + :hearts " +
+           "WHERE u.id = :id AND u.xp + :xp >= 0 AND u.gems + :gems >= 0 AND u.hearts + :hearts >= 0")
+    int addBalances(@Param("id") Long id, @Param("xp") int xp, @Param("gems") int gems, @Param("hearts") int hearts);
+
+    /**
+     * Trừ tim chỉ khi số tim vẫn bằng expected (so sánh rồi ghi, dùng khi số tim có thể về 0)
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.hearts = u.hearts - :lost WHERE u.id = :id AND u.hearts = :expected")
+    int takeHearts(@Param("id") Long id, @Param("expected") int expected, @Param("lost") int lost);
+
+    @Query("SELECT new com.example.duokid.model.WalletBalance(u.xp, u.gems, u.hearts) FROM User u WHERE u.id = :id")
+    WalletBalance findBalance(@Param("id") Long id);
 }
@@ -20,6 +20,21 @@ public interface VocabularyRepository extends JpaRepository<Vocabulary, Long> {
     @Query("SELECT DISTINCT v.partNumber FROM Vocabulary v WHERE v.testType = ?1 ORDER BY v.partNumber")
     List<String> findDistinctPartNumbersByTestType(String testType);
     
+    @Query("SELECT LOWER(v.englishWord) FROM Vocabulary v WHERE v.testType = ?1 AND v.testNumber = ?2")
+    List<String> findLowerEnglishWordsByTestTypeAndTestNumber(String testType, Integer testNumber);
+    
+    /**
+     * Số từ theo (testType, testNumber, partNumber) để dựng thống kê trong bộ nhớ
+     */
+    @Query("SELECT v.testType, v.testNumber, v.partNumber, COUNT(v) FROM Vocabulary v GROUP BY v.testType, v.testNumber, v.partNumber")
+    List<Object[]> countByTestTypeNumberAndPart();
+    
+    /**
+     * Từ và câu ví dụ kèm (testType, testNumber, partNumber) để lọc ra từ vựng thuộc bài học (tạo sẵn audio TTS)
+     */
+    @Query("SELECT v.testType, v.testNumber, v.partNumber, v.englishWord, v.exampleSentence FROM Vocabulary v")
+    List<Object[]> findSpeechTextsWithSource();
+    
     boolean existsByEnglishWordIgnoreCaseAndTestTypeAndTestNumber(
         String englishWord, String testType, Integer testNumber
     );
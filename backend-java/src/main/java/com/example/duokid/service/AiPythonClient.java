@@ -1,23 +1,105 @@
 package com.example.duokid.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.net.URI;
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
+/**
+ * Client gọi Python AI service (/suggest, /tts, /grade, /grade/batch, chatbot /api/chat, /api/vocabulary)
+ * - Không block: trả về Mono, controller trả Mono để luồng Tomcat được giải phóng trong lúc chờ AI
+ * - Connection pool dùng chung, mỗi endpoint có deadline và giới hạn số request đồng thời (bulkhead) riêng
+ * - Cầu dao: lỗi liên tiếp thì trả fallback ngay, luồng nền gọi /health định kỳ để đóng cầu dao khi service sống lại
+ * - Số liệu (số lần gọi, lỗi, timeout, bị từ chối, độ trễ) xem tại /admin/ai/metrics
+ */
 @Service
 public class AiPythonClient {
 
+    public static final String NO_SUGGESTION = "AI hiện chưa đưa ra gợi ý. Hãy thử lại sau.";
+    public static final String SUGGEST_UNAVAILABLE = "Không kết nối được tới AI service. Kiểm tra lại Python server.";
+
+    public static final GradeResult GRADE_UNAVAILABLE = new GradeResult(
+            0,
+            "Cannot reach AI grader right now.",
+            "Không kết nối được với AI chấm điểm.");
+
+    private static final GradeResult NOT_GRADED = new GradeResult(0, "AI chưa chấm được câu này.", "AI chưa chấm được câu này.");
+    private static final int MAX_AUDIO_BYTES = 4 * 1024 * 1024;
+
     private final WebClient webClient;
+    private final CircuitBreaker circuitBreaker;
+    private final EndpointMetrics suggest;
+    private final EndpointMetrics tts;
+    private final EndpointMetrics grade;
+    private final EndpointMetrics gradeBatch;
+    private final EndpointMetrics chat;
+    private final EndpointMetrics vocabulary;
+    private final Duration healthTimeout;
+    private final ScheduledExecutorService healthProbe = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ai-health-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public AiPythonClient(
-            @Value("${python.service.base-url:http://localhost:8000}")
-            String baseUrl
+            @Value("${python.service.base-url:http://localhost:5000}") String baseUrl,
+            @Value("${python.service.max-connections:50}") int maxConnections,
+            @Value("${python.service.connect-timeout-ms:2000}") int connectTimeoutMillis,
+            @Value("${python.service.max-concurrent-calls:20}") int maxConcurrentCalls,
+            @Value("${python.service.suggest-timeout-ms:5000}") long suggestTimeoutMillis,
+            @Value("${python.service.tts-timeout-ms:10000}") long ttsTimeoutMillis,
+            @Value("${python.service.grade-timeout-ms:5000}") long gradeTimeoutMillis,
+            @Value("${python.service.chat-timeout-ms:30000}") long chatTimeoutMillis,
+            @Value("${python.service.vocabulary-timeout-ms:5000}") long vocabularyTimeoutMillis,
+            @Value("${python.service.failure-threshold:5}") int failureThreshold,
+            @Value("${python.service.health-probe-seconds:10}") long healthProbeSeconds
     ) {
+        ConnectionProvider pool = ConnectionProvider.builder("python-ai")
+                .maxConnections(Math.max(1, maxConnections))
+                .pendingAcquireTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .build();
+        HttpClient httpClient = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis);
+
         this.webClient = WebClient.builder()
                 .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_AUDIO_BYTES))
                 .build();
+        this.circuitBreaker = new CircuitBreaker(failureThreshold);
+        this.suggest = new EndpointMetrics("/suggest", Duration.ofMillis(suggestTimeoutMillis), maxConcurrentCalls);
+        this.tts = new EndpointMetrics("/tts", Duration.ofMillis(ttsTimeoutMillis), maxConcurrentCalls);
+        this.grade = new EndpointMetrics("/grade", Duration.ofMillis(gradeTimeoutMillis), maxConcurrentCalls);
+        this.gradeBatch = new EndpointMetrics("/grade/batch", Duration.ofMillis(gradeTimeoutMillis), maxConcurrentCalls);
+        this.chat = new EndpointMetrics("/api/chat", Duration.ofMillis(chatTimeoutMillis), maxConcurrentCalls);
+        this.vocabulary = new EndpointMetrics("/api/vocabulary", Duration.ofMillis(vocabularyTimeoutMillis), maxConcurrentCalls);
+        this.healthTimeout = Duration.ofMillis(Math.max(500, connectTimeoutMillis));
+
+        long period = Math.max(1, healthProbeSeconds);
+        healthProbe.scheduleWithFixedDelay(this::probeHealth, period, period, TimeUnit.SECONDS);
     }
 
     private record SuggestRequest(String vietnamese, String topic, String level) {}
@@ -26,68 +108,269 @@ public class AiPythonClient {
     private record TtsResponse(String audio_url) {}
     private record GradeRequest(String question, String expected, String answer) {}
     private record GradeResponse(Integer score, String commentEn, String commentVi) {}
+    private record GradeBatchRequest(List<GradeRequest> items) {}
+    private record GradeBatchResponse(List<GradeResponse> results) {}
 
     public record GradeResult(int score, String commentEn, String commentVi) {}
+    public record GradeItem(String question, String expected, String answer) {}
 
-    public String suggestSentence(String vietnamese, String topic, String level) {
-        try {
-            SuggestRequest req = new SuggestRequest(vietnamese, topic, level);
-            SuggestResponse res = webClient.post()
-                    .uri("/suggest")
-                    .bodyValue(req)
-                    .retrieve()
-                    .bodyToMono(SuggestResponse.class)
-                    .block(Duration.ofSeconds(5));
-            if (res == null || res.sentence() == null) {
-                return "AI hiện chưa đưa ra gợi ý. Hãy thử lại sau.";
+    /**
+     * Gợi ý câu tiếng Anh; lỗi / AI không sẵn sàng thì trả câu thông báo (không bao giờ rỗng)
+     */
+    public Mono<String> suggestSentence(String vietnamese, String topic, String level) {
+        return call(suggest, new SuggestRequest(vietnamese, topic, level), SuggestResponse.class)
+                .map(res -> res.sentence() != null ? res.sentence() : NO_SUGGESTION)
+                .defaultIfEmpty(NO_SUGGESTION)
+                .onErrorReturn(SUGGEST_UNAVAILABLE);
+    }
+
+    /**
+     * URL file audio đọc text; rỗng nếu không tạo được
+     */
+    public Mono<String> getTtsAudioUrl(String text) {
+        return call(tts, new TtsRequest(text), TtsResponse.class)
+                .mapNotNull(TtsResponse::audio_url)
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    /**
+     * Tạo audio đọc text và tải nội dung file mp3 về; rỗng nếu không tạo được
+     * - Python service trả URL tuyệt đối với host cố định, nên chỉ lấy path rồi tải qua base-url đã cấu hình
+     */
+    public Mono<byte[]> synthesizeSpeech(String text) {
+        return getTtsAudioUrl(text)
+                .flatMap(audioUrl -> guarded(tts, () -> webClient.get()
+                        .uri(pathOf(audioUrl))
+                        .retrieve()
+                        .bodyToMono(byte[].class)
+                        .flux())
+                        .singleOrEmpty()
+                        .onErrorResume(e -> Mono.empty()));
+    }
+
+    /**
+     * Chấm điểm câu trả lời; lỗi / AI không sẵn sàng thì trả kết quả 0 điểm kèm lời nhắn
+     */
+    public Mono<GradeResult> gradeAnswer(String question, String expected, String answer) {
+        return call(grade, new GradeRequest(question, expected, answer), GradeResponse.class)
+                .map(AiPythonClient::toGradeResult)
+                .defaultIfEmpty(NOT_GRADED)
+                .onErrorReturn(GRADE_UNAVAILABLE);
+    }
+
+    /**
+     * Chấm nhiều câu trong một request /grade/batch, kết quả theo đúng thứ tự items; lỗi thì Mono kết thúc bằng error
+     * - Python service bản cũ chưa có /grade/batch (404) thì chấm từng câu qua /grade
+     */
+    public Mono<List<GradeResult>> gradeBatch(List<GradeItem> items) {
+        List<GradeRequest> requests = items.stream()
+                .map(item -> new GradeRequest(item.question(), item.expected(), item.answer()))
+                .toList();
+        return call(gradeBatch, new GradeBatchRequest(requests), GradeBatchResponse.class)
+                .flatMap(res -> res.results() != null && res.results().size() == requests.size()
+                        ? Mono.just(res.results().stream().map(AiPythonClient::toGradeResult).toList())
+                        : Mono.<List<GradeResult>>error(new IllegalStateException("Unexpected /grade/batch response")))
+                .switchIfEmpty(Mono.error(new IllegalStateException("Empty /grade/batch response")))
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Flux.fromIterable(requests)
+                        .flatMapSequential(request -> call(grade, request, GradeResponse.class)
+                                .map(AiPythonClient::toGradeResult)
+                                .defaultIfEmpty(NOT_GRADED), 4)
+                        .collectList());
+    }
+
+    private static GradeResult toGradeResult(GradeResponse res) {
+        if (res.score() == null) return NOT_GRADED;
+        return new GradeResult(
+                res.score(),
+                res.commentEn() != null ? res.commentEn() : "",
+                res.commentVi() != null ? res.commentVi() : "");
+    }
+
+    /**
+     * Chatbot: chuyển nguyên request tới /api/chat, trả về JSON của Python service ({"reply": ...})
+     */
+    public Mono<String> chat(JsonNode request) {
+        return call(chat, request, String.class);
+    }
+
+    /**
+     * Chatbot dạng stream: trả về từng đoạn câu trả lời ngay khi nhận được
+     * - Python service trả text/event-stream thì mỗi event là một đoạn
+     * - Trả JSON thường thì cả câu trả lời ("reply") là một đoạn duy nhất
+     */
+    public Flux<String> streamChat(JsonNode request) {
+        return guarded(chat, () -> webClient.post()
+                .uri(chat.path)
+                .accept(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchangeToFlux(response -> {
+                    if (response.statusCode().isError()) {
+                        return response.<String>createError().flux();
+                    }
+                    boolean eventStream = response.headers().contentType()
+                            .map(MediaType.TEXT_EVENT_STREAM::isCompatibleWith)
+                            .orElse(false);
+                    if (eventStream) {
+                        return response.bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                                .mapNotNull(ServerSentEvent::data);
+                    }
+                    return response.bodyToMono(JsonNode.class)
+                            .mapNotNull(json -> json.hasNonNull("reply") ? json.get("reply").asText() : null)
+                            .flux();
+                }));
+    }
+
+    /**
+     * Chatbot: tra từ qua /api/vocabulary, trả về JSON của Python service
+     */
+    public Mono<String> lookupVocabulary(JsonNode request) {
+        return call(vocabulary, request, String.class);
+    }
+
+    public boolean isAvailable() {
+        return circuitBreaker.allowRequest();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public List<EndpointMetrics> getMetrics() {
+        return List.of(suggest, tts, grade, gradeBatch, chat, vocabulary);
+    }
+
+    /**
+     * POST tới endpoint qua cầu dao + bulkhead, có deadline; bị từ chối hoặc lỗi đều kết thúc bằng error
+     */
+    private <T> Mono<T> call(EndpointMetrics endpoint, Object body, Class<T> responseType) {
+        return guarded(endpoint, () -> webClient.post()
+                .uri(endpoint.path)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(responseType)
+                .flux())
+                .singleOrEmpty();
+    }
+
+    /**
+     * Bọc một lời gọi bằng cầu dao + bulkhead + deadline (deadline tính cho từng phần tử nhận về) và ghi số liệu
+     */
+    private <T> Flux<T> guarded(EndpointMetrics endpoint, Supplier<Flux<T>> request) {
+        return Flux.defer(() -> {
+            if (!circuitBreaker.allowRequest()) {
+                endpoint.shortCircuited.incrementAndGet();
+                return Flux.error(new RejectedCallException("circuit open"));
             }
-            return res.sentence();
-        } catch (Exception e) {
-            return "Không kết nối được tới AI service. Kiểm tra lại Python server.";
-        }
+            if (!endpoint.bulkhead.tryAcquire()) {
+                endpoint.rejected.incrementAndGet();
+                return Flux.error(new RejectedCallException("too many concurrent calls"));
+            }
+
+            long start = System.nanoTime();
+            endpoint.calls.incrementAndGet();
+            return request.get()
+                    .timeout(endpoint.timeout)
+                    .doOnComplete(() -> {
+                        endpoint.recordSuccess(System.nanoTime() - start);
+                        circuitBreaker.recordSuccess();
+                    })
+                    .doOnError(e -> {
+                        endpoint.recordFailure(System.nanoTime() - start, e instanceof TimeoutException);
+                        // Lỗi 4xx là do request, không phải do service hỏng
+                        if (!(e instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError())) {
+                            circuitBreaker.recordFailure();
+                        }
+                    })
+                    .doFinally(signal -> endpoint.bulkhead.release());
+        });
+    }
+
+    private static String pathOf(String url) {
+        URI uri = URI.create(url);
+        String path = uri.getRawPath();
+        return uri.getRawQuery() != null ? path + "?" + uri.getRawQuery() : path;
     }
 
-    public String getTtsAudioUrl(String text) {
+    /**
+     * Khi cầu dao đang mở: gọi /health, service trả 2xx thì đóng cầu dao
+     */
+    private void probeHealth() {
+        if (!circuitBreaker.isOpen()) return;
         try {
-            TtsRequest req = new TtsRequest(text);
-            TtsResponse res = webClient.post()
-                    .uri("/tts")
-                    .bodyValue(req)
+            webClient.get()
+                    .uri("/health")
                     .retrieve()
-                    .bodyToMono(TtsResponse.class)
-                    .block(Duration.ofSeconds(10));
-            if (res == null || res.audio_url() == null) {
-                return null;
-            }
-            return res.audio_url();
+                    .toBodilessEntity()
+                    .timeout(healthTimeout)
+                    .block();
+            circuitBreaker.close();
+            System.out.println("🤖 Python AI service đã hoạt động lại, đóng cầu dao");
         } catch (Exception e) {
-            return null;
+            // vẫn chưa sống lại, thử lại ở lượt sau
         }
     }
 
-    public GradeResult gradeAnswer(String question, String expected, String answer) {
-        try {
-            GradeRequest req = new GradeRequest(question, expected, answer);
-            GradeResponse res = webClient.post()
-                    .uri("/grade")
-                    .bodyValue(req)
-                    .retrieve()
-                    .bodyToMono(GradeResponse.class)
-                    .block(Duration.ofSeconds(5));
-            if (res == null || res.score() == null) {
-                return new GradeResult(0, "AI chưa chấm được câu này.", "AI chưa chấm được câu này.");
-            }
-            return new GradeResult(
-                    res.score(),
-                    res.commentEn() != null ? res.commentEn() : "",
-                    res.commentVi() != null ? res.commentVi() : ""
-            );
-        } catch (Exception e) {
-            return new GradeResult(
-                    0,
-                    "Cannot reach AI grader right now.",
-                    "Không kết nối được với AI chấm điểm."
-            );
+    private static class RejectedCallException extends RuntimeException {
+        RejectedCallException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Số liệu của một endpoint (được serialize thành JSON cho trang admin)
+     */
+    public static class EndpointMetrics {
+        private final String path;
+        private final Duration timeout;
+        private final int maxConcurrent;
+        private final Semaphore bulkhead;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong successes = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong shortCircuited = new AtomicLong();
+        private final AtomicLong totalLatencyNanos = new AtomicLong();
+        private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        EndpointMetrics(String path, Duration timeout, int maxConcurrent) {
+            this.path = path;
+            this.timeout = timeout;
+            this.maxConcurrent = Math.max(1, maxConcurrent);
+            this.bulkhead = new Semaphore(this.maxConcurrent);
+        }
+
+        private void recordSuccess(long nanos) {
+            successes.incrementAndGet();
+            recordLatency(nanos);
+        }
+
+        private void recordFailure(long nanos, boolean timedOut) {
+            failures.incrementAndGet();
+            if (timedOut) timeouts.incrementAndGet();
+            recordLatency(nanos);
+        }
+
+        private void recordLatency(long nanos) {
+            totalLatencyNanos.addAndGet(nanos);
+            maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getPath() { return path; }
+        public long getTimeoutMillis() { return timeout.toMillis(); }
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public int getInFlight() { return maxConcurrent - bulkhead.availablePermits(); }
+        public long getCalls() { return calls.get(); }
+        public long getSuccesses() { return successes.get(); }
+        public long getFailures() { return failures.get(); }
+        public long getTimeouts() { return timeouts.get(); }
+        public long getRejected() { return rejected.get(); }
+        public long getShortCircuited() { return shortCircuited.get(); }
+        public long getMaxLatencyMillis() { return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()); }
+
+        public double getAverageLatencyMillis() {
+            long completed = successes.get() + failures.get();
+            return completed > 0 ? totalLatencyNanos.get() / 1_000_000.0 / completed : 0;
         }
     }
 }
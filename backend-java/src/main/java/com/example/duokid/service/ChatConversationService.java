@@ -0,0 +1,220 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.ConversationSummary;
+import com.example.duokid.model.Message;
+import com.example.duokid.model.User;
+import com.example.duokid.repo.ConversationSummaryRepository;
+import com.example.duokid.repo.MessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Đọc hội thoại theo trang và duy trì bảng tóm tắt hội thoại (conversation_summaries)
+ * - Trang tin nhắn dùng keyset theo id ("trước id X, tối đa N tin"), mỗi chiều gửi là một query theo index
+ *   (sender, receiver, id) rồi gộp lại, không dùng điều kiện OR quét cả bảng
+ * - Danh sách người đã chat đọc từ bảng tóm tắt, không tải toàn bộ lịch sử tin nhắn của user
+ * - Tổng số tin chưa đọc của mỗi user được giữ trong bộ nhớ: nạp một lần khi khởi động,
+ *   cộng sau khi tin mới được commit, đọc lại từ database mỗi khi user đánh dấu đã đọc một hội thoại
+ *   (không tính bằng hiệu số nên không bị lệch vĩnh viễn khi gửi và đọc chen nhau)
+ */
+@Service
+public class ChatConversationService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final MessageRepository messageRepository;
+    private final ConversationSummaryRepository summaryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int pageSize;
+    private final Map<Long, Integer> unreadByUser = new ConcurrentHashMap<>();
+
+    public ChatConversationService(MessageRepository messageRepository,
+                                   ConversationSummaryRepository summaryRepository,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${chat.page-size:50}") int pageSize) {
+        this.messageRepository = messageRepository;
+        this.summaryRepository = summaryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, pageSize));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadUnreadCounts() {
+        unreadByUser.clear();
+        for (Object[] row : messageRepository.countUnreadByReceiver()) {
+            unreadByUser.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        System.out.println("💬 Đã nạp số tin nhắn chưa đọc cho " + unreadByUser.size() + " học sinh");
+    }
+
+    /**
+     * Tổng số tin nhắn chưa đọc của user (đọc từ bộ nhớ, không query database)
+     */
+    public int getUnreadCount(User user) {
+        return unreadByUser.getOrDefault(user.getId(), 0);
+    }
+
+    /**
+     * Dựng bảng tóm tắt từ tin nhắn có sẵn (database cũ chưa có bảng này)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillSummaries() {
+        if (summaryRepository.count() > 0 || messageRepository.count() == 0) return;
+
+        Map<String, ConversationSummary> summaries = new LinkedHashMap<>();
+        List<Message> messages = messageRepository.findAll(Sort.by("id"));
+        for (Message message : messages) {
+            User sender = message.getSender();
+            User receiver = message.getReceiver();
+            summaries.computeIfAbsent(sender.getId() + ">" + receiver.getId(),
+                    k -> new ConversationSummary(sender, receiver)).applyMessage(message, false);
+            summaries.computeIfAbsent(receiver.getId() + ">" + sender.getId(),
+                    k -> new ConversationSummary(receiver, sender)).applyMessage(message, true);
+        }
+        transactionTemplate.executeWithoutResult(status -> summaryRepository.saveAll(summaries.values()));
+        System.out.println("💬 Đã dựng " + summaries.size() + " tóm tắt hội thoại từ " + messages.size() + " tin nhắn");
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Danh sách hội thoại của user, mới nhất trước
+     */
+    public List<ConversationSummary> getConversations(User owner) {
+        return summaryRepository.findByOwnerWithPartner(owner.getId());
+    }
+
+    /**
+     * Trang tin nhắn giữa 2 người: tối đa limit tin có id < beforeId (null = mới nhất), sắp xếp cũ → mới
+     */
+    public MessagePage getPage(User me, User partner, Long beforeId, int limit) {
+        int size = clamp(limit);
+        long before = beforeId != null ? beforeId : Long.MAX_VALUE;
+        // Lấy dư 1 tin để biết còn tin cũ hơn hay không
+        PageRequest page = PageRequest.of(0, size + 1);
+
+        List<Message> merged = new ArrayList<>(2 * (size + 1));
+        merged.addAll(messageRepository.findSentBefore(me.getId(), partner.getId(), before, page));
+        merged.addAll(messageRepository.findSentBefore(partner.getId(), me.getId(), before, page));
+        merged.sort(Comparator.comparing(Message::getId).reversed());
+
+        boolean hasOlder = merged.size() > size;
+        List<Message> messages = new ArrayList<>(merged.subList(0, Math.min(size, merged.size())));
+        Collections.reverse(messages);
+        return new MessagePage(messages, hasOlder);
+    }
+
+    /**
+     * Tin nhắn giữa 2 người có id > afterId, sắp xếp cũ → mới
+     */
+    public List<Message> getMessagesAfter(User me, User partner, long afterId, int limit) {
+        int size = clamp(limit);
+        PageRequest page = PageRequest.of(0, size);
+
+        List<Message> merged = new ArrayList<>(2 * size);
+        merged.addAll(messageRepository.findSentAfter(me.getId(), partner.getId(), afterId, page));
+        merged.addAll(messageRepository.findSentAfter(partner.getId(), me.getId(), afterId, page));
+        merged.sort(Comparator.comparing(Message::getId));
+        return merged.size() > size ? new ArrayList<>(merged.subList(0, size)) : merged;
+    }
+
+    /**
+     * Lưu tin nhắn và cập nhật tóm tắt hội thoại của cả người gửi và người nhận trong cùng một transaction;
+     * bộ đếm chưa đọc của người nhận chỉ tăng sau khi commit
+     */
+    public Message send(Message message) {
+        try {
+            return transactionTemplate.execute(status -> saveWithSummaries(message));
+        } catch (DataIntegrityViolationException e) {
+            // Hai tin nhắn đầu tiên của cặp này được gửi cùng lúc: dòng tóm tắt đã được tạo, chạy lại sẽ là cập nhật
+            message.setId(null);
+            return transactionTemplate.execute(status -> saveWithSummaries(message));
+        }
+    }
+
+    /**
+     * Owner đã mở hội thoại với partner: đánh dấu đã đọc mọi tin partner gửi cho owner
+     * @return số tin vừa được đánh dấu đã đọc
+     */
+    public int markConversationRead(User owner, User partner) {
+        Integer marked = transactionTemplate.execute(status -> {
+            // Dòng tóm tắt trước: tin đang được gửi (chưa commit) giữ khóa dòng này, chờ nó commit rồi mới đánh dấu tin
+            summaryRepository.resetUnread(owner.getId(), partner.getId());
+            int updated = messageRepository.markConversationRead(owner.getId(), partner.getId());
+            // Bộ đếm có thể đang cao hơn thật (tin được cộng sau khi đã bị đánh dấu đọc): đọc lại khi còn khác 0
+            if (updated > 0 || getUnreadCount(owner) > 0) {
+                unreadByUser.put(owner.getId(), (int) messageRepository.countUnreadByReceiverId(owner.getId()));
+            }
+            return updated;
+        });
+        return marked != null ? marked : 0;
+    }
+
+    private Message saveWithSummaries(Message message) {
+        Message saved = messageRepository.save(message);
+        applyToSummaries(saved);
+        if (!saved.getIsRead()) {
+            Long receiverId = saved.getReceiver().getId();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    unreadByUser.merge(receiverId, 1, Integer::sum);
+                }
+            });
+        }
+        return saved;
+    }
+
+    private void applyToSummaries(Message message) {
+        User sender = message.getSender();
+        User receiver = message.getReceiver();
+        // Khóa theo thứ tự owner id tăng dần để 2 người nhắn cho nhau cùng lúc không bị deadlock
+        if (sender.getId() < receiver.getId()) {
+            applyToSummary(sender, receiver, message, false);
+            applyToSummary(receiver, sender, message, true);
+        } else {
+            applyToSummary(receiver, sender, message, true);
+            applyToSummary(sender, receiver, message, false);
+        }
+    }
+
+    private void applyToSummary(User owner, User partner, Message message, boolean incoming) {
+        ConversationSummary summary = summaryRepository.findForUpdate(owner.getId(), partner.getId())
+                .orElseGet(() -> new ConversationSummary(owner, partner));
+        summary.applyMessage(message, incoming);
+        summaryRepository.save(summary);
+    }
+
+    private int clamp(int limit) {
+        return limit > 0 ? Math.min(limit, MAX_PAGE_SIZE) : pageSize;
+    }
+
+    /**
+     * Một trang tin nhắn (cũ → mới) và cờ còn tin cũ hơn
+     */
+    public static class MessagePage {
+        private final List<Message> messages;
+        private final boolean hasOlder;
+
+        public MessagePage(List<Message> messages, boolean hasOlder) {
+            this.messages = messages;
+            this.hasOlder = hasOlder;
+        }
+
+        public List<Message> getMessages() { return messages; }
+        public boolean isHasOlder() { return hasOlder; }
+    }
+}
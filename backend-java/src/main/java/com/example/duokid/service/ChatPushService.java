@@ -0,0 +1,118 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.ChatMessageView;
+import com.example.duokid.model.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đẩy tin nhắn chat mới tới trình duyệt qua Server-Sent Events (thay cho polling)
+ * - Mỗi tab chat mở một kết nối SSE, registry giữ các kết nối theo user id
+ * - Khi có tin nhắn mới, chỉ tin đó được gửi tới người gửi và người nhận đang online
+ * - Tab chat để mở không còn tạo query database, chỉ nhận heartbeat định kỳ để phát hiện kết nối chết
+ */
+@Service
+public class ChatPushService {
+
+    private final long timeoutMillis;
+    private final Map<Long, Set<SseEmitter>> connections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chat-sse-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChatPushService(@Value("${chat.sse.timeout-ms:1800000}") long timeoutMillis,
+                           @Value("${chat.sse.heartbeat-seconds:25}") long heartbeatSeconds) {
+        this.timeoutMillis = timeoutMillis;
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Mở kết nối SSE cho user (trình duyệt tự kết nối lại khi hết hạn)
+     */
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        connections.compute(userId, (id, emitters) -> {
+            Set<SseEmitter> set = emitters != null ? emitters : new CopyOnWriteArraySet<>();
+            set.add(emitter);
+            return set;
+        });
+
+        Runnable remove = () -> unregister(userId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        try {
+            emitter.send(SseEmitter.event().name("connected").data("ok"));
+        } catch (IOException e) {
+            unregister(userId, emitter);
+        }
+        return emitter;
+    }
+
+    /**
+     * Gửi tin nhắn vừa lưu tới người gửi và người nhận (mọi tab đang mở)
+     */
+    public void publish(Message message) {
+        ChatMessageView view = ChatMessageView.from(message);
+        send(view.getReceiverId(), view);
+        if (!view.getSenderId().equals(view.getReceiverId())) {
+            send(view.getSenderId(), view);
+        }
+    }
+
+    /**
+     * Số tab đang kết nối của user
+     */
+    public int getConnectionCount(Long userId) {
+        Set<SseEmitter> emitters = connections.get(userId);
+        return emitters != null ? emitters.size() : 0;
+    }
+
+    private void send(Long userId, ChatMessageView view) {
+        Set<SseEmitter> emitters = connections.get(userId);
+        if (emitters == null) return;
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(view.getId()))
+                        .name("message")
+                        .data(view, MediaType.APPLICATION_JSON));
+            } catch (Exception e) {
+                unregister(userId, emitter);
+            }
+        }
+    }
+
+    private void sendHeartbeat() {
+        connections.forEach((userId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                try {
+                    emitter.send(SseEmitter.event().comment("ping"));
+                } catch (Exception e) {
+                    unregister(userId, emitter);
+                }
+            }
+        });
+    }
+
+    private void unregister(Long userId, SseEmitter emitter) {
+        connections.computeIfPresent(userId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.duokid.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cầu dao cho một dịch vụ bên ngoài (Python AI service)
+ * - CLOSED: gọi bình thường; lỗi liên tiếp đủ failureThreshold lần thì chuyển sang OPEN
+ * - OPEN: từ chối ngay (caller trả fallback), không giữ luồng chờ dịch vụ đang chết
+ * - Chỉ đóng lại khi health check thành công (close()), không thử bằng request thật của học sinh
+ */
+public final class CircuitBreaker {
+
+    public static final String CLOSED = "CLOSED";
+    public static final String OPEN = "OPEN";
+
+    private final int failureThreshold;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openedAt = new AtomicLong();
+    private final AtomicInteger timesOpened = new AtomicInteger();
+    private volatile boolean open;
+
+    public CircuitBreaker(int failureThreshold) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+    }
+
+    public boolean allowRequest() {
+        return !open;
+    }
+
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    public void recordFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && !open) {
+            trip();
+        }
+    }
+
+    /**
+     * Mở cầu dao ngay (ví dụ health check thất bại)
+     */
+    public synchronized void trip() {
+        if (open) return;
+        open = true;
+        openedAt.set(System.currentTimeMillis());
+        timesOpened.incrementAndGet();
+    }
+
+    /**
+     * Đóng cầu dao sau khi dịch vụ khỏe lại
+     */
+    public synchronized void close() {
+        consecutiveFailures.set(0);
+        open = false;
+    }
+
+    public boolean isOpen() { return open; }
+    public String getState() { return open ? OPEN : CLOSED; }
+    public int getConsecutiveFailures() { return consecutiveFailures.get(); }
+    public int getTimesOpened() { return timesOpened.get(); }
+    public long getOpenedAt() { return open ? openedAt.get() : 0; }
+}
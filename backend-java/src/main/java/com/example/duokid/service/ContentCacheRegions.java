@@ -0,0 +1,75 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.*;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Các vùng cache cấp 2 (Hibernate L2) cho nội dung học, dựng trên Caffeine qua JCache
+ * - Mỗi entity nội dung (Lesson, QuizQuestion, Grammar, Test, TestQuestion) một vùng, giới hạn số entity theo content.cache.*
+ * - Vùng kết quả truy vấn (findByLesson / findByTest / findByLevelOrderByOrderIndex) giới hạn theo content.cache.max-queries
+ * - Vùng timestamps không giới hạn: Hibernate dựa vào nó để biết kết quả truy vấn nào đã cũ
+ * - CacheManager được đưa cho Hibernate qua hibernate.javax.cache.cache_manager nên kích thước nằm trong application.properties
+ */
+@Component
+public class ContentCacheRegions implements HibernatePropertiesCustomizer {
+
+    public static final String QUERY_REGION = "default-query-results-region";
+    public static final String TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    private final CacheManager cacheManager;
+    // Tên vùng -> số phần tử tối đa (0 = không giới hạn), theo thứ tự hiển thị
+    private final Map<String, Long> regionSizes = new LinkedHashMap<>();
+
+    public ContentCacheRegions(@Value("${content.cache.max-lessons:1000}") long maxLessons,
+                               @Value("${content.cache.max-quiz-questions:20000}") long maxQuizQuestions,
+                               @Value("${content.cache.max-grammar:1000}") long maxGrammar,
+                               @Value("${content.cache.max-tests:500}") long maxTests,
+                               @Value("${content.cache.max-test-questions:10000}") long maxTestQuestions,
+                               @Value("${content.cache.max-queries:5000}") long maxQueries) {
+        regionSizes.put(Lesson.class.getName(), maxLessons);
+        regionSizes.put(QuizQuestion.class.getName(), maxQuizQuestions);
+        regionSizes.put(Grammar.class.getName(), maxGrammar);
+        regionSizes.put(Test.class.getName(), maxTests);
+        regionSizes.put(TestQuestion.class.getName(), maxTestQuestions);
+        regionSizes.put(QUERY_REGION, maxQueries);
+        regionSizes.put(TIMESTAMPS_REGION, 0L);
+
+        this.cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("duokid-content"), getClass().getClassLoader());
+        regionSizes.forEach((name, maxSize) -> {
+            CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+            if (maxSize > 0) config.setMaximumSize(OptionalLong.of(maxSize));
+            if (cacheManager.getCache(name) == null) cacheManager.createCache(name, config);
+        });
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put("hibernate.javax.cache.cache_manager", cacheManager);
+    }
+
+    /**
+     * Tên các vùng và số phần tử tối đa (0 = không giới hạn)
+     */
+    public Map<String, Long> getRegionSizes() {
+        return Collections.unmodifiableMap(regionSizes);
+    }
+
+    /**
+     * Số phần tử hiện có trong vùng (ước lượng của Caffeine), -1 nếu vùng không tồn tại
+     */
+    public long getEntryCount(String region) {
+        javax.cache.Cache<Object, Object> cache = cacheManager.getCache(region);
+        if (cache == null) return -1;
+        return cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).estimatedSize();
+    }
+}
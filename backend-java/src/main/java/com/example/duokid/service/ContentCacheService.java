@@ -0,0 +1,138 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.QuizQuestion;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Xóa và thống kê cache cấp 2 của nội dung học (xem ContentCacheRegions)
+ * - Ghi qua JPA thì Hibernate tự cập nhật cache; importer / seeder vẫn gọi evictAll() để chắc chắn không còn dữ liệu cũ
+ * - Ghi bằng JDBC (QuizQuestionBatchWriter) Hibernate không biết nên bắt buộc phải xóa
+ * - Đang trong transaction thì chờ commit xong mới xóa, tránh request khác nạp lại dữ liệu cũ trước khi commit
+ */
+@Service
+public class ContentCacheService {
+
+    private final SessionFactory sessionFactory;
+    private final ContentCacheRegions regions;
+
+    public ContentCacheService(EntityManagerFactory entityManagerFactory, ContentCacheRegions regions) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        this.regions = regions;
+    }
+
+    /**
+     * Xóa toàn bộ entity nội dung và kết quả truy vấn đã cache
+     */
+    public void evictAll() {
+        afterCommit(() -> {
+            sessionFactory.getCache().evictAllRegions();
+            System.out.println("🧹 Đã xóa cache nội dung (L2)");
+        });
+    }
+
+    /**
+     * Xóa câu hỏi quiz và kết quả truy vấn đã cache (sau khi ghi câu hỏi bằng JDBC)
+     */
+    public void evictQuizQuestions() {
+        afterCommit(() -> {
+            sessionFactory.getCache().evictEntityData(QuizQuestion.class);
+            sessionFactory.getCache().evictQueryRegions();
+        });
+    }
+
+    public ContentCacheStats getStats() {
+        Statistics statistics = sessionFactory.getStatistics();
+        List<RegionStats> regionStats = new ArrayList<>();
+        regions.getRegionSizes().forEach((region, maxEntries) -> {
+            CacheRegionStatistics stats = statistics.getCacheRegionStatistics(region);
+            regionStats.add(new RegionStats(region, maxEntries, regions.getEntryCount(region),
+                    stats != null ? stats.getHitCount() : 0,
+                    stats != null ? stats.getMissCount() : 0,
+                    stats != null ? stats.getPutCount() : 0));
+        });
+        return new ContentCacheStats(statistics.isStatisticsEnabled(), regionStats,
+                statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getPrepareStatementCount());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Số liệu một vùng cache (được serialize thành JSON cho trang admin)
+     */
+    public static class RegionStats {
+        private final String region;
+        private final long maxEntries;
+        private final long entries;
+        private final long hits;
+        private final long misses;
+        private final long puts;
+
+        RegionStats(String region, long maxEntries, long entries, long hits, long misses, long puts) {
+            this.region = region;
+            this.maxEntries = maxEntries;
+            this.entries = entries;
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+        }
+
+        public String getRegion() { return region; }
+        public long getMaxEntries() { return maxEntries; }
+        public long getEntries() { return entries; }
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getPuts() { return puts; }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total > 0 ? Math.round(hits * 1000.0 / total) / 10.0 : 0;
+        }
+    }
+
+    /**
+     * Số liệu cache nội dung: từng vùng, truy vấn cache và tổng số câu SQL đã chạy từ lúc khởi động
+     */
+    public static class ContentCacheStats {
+        private final boolean statisticsEnabled;
+        private final List<RegionStats> regions;
+        private final long queryCacheHits;
+        private final long queryCacheMisses;
+        private final long statementsExecuted;
+
+        ContentCacheStats(boolean statisticsEnabled, List<RegionStats> regions,
+                          long queryCacheHits, long queryCacheMisses, long statementsExecuted) {
+            this.statisticsEnabled = statisticsEnabled;
+            this.regions = regions;
+            this.queryCacheHits = queryCacheHits;
+            this.queryCacheMisses = queryCacheMisses;
+            this.statementsExecuted = statementsExecuted;
+        }
+
+        public boolean isStatisticsEnabled() { return statisticsEnabled; }
+        public List<RegionStats> getRegions() { return regions; }
+        public long getQueryCacheHits() { return queryCacheHits; }
+        public long getQueryCacheMisses() { return queryCacheMisses; }
+        public long getStatementsExecuted() { return statementsExecuted; }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.duokid.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Đọc file CSV theo chuẩn RFC 4180 với ít cấp phát bộ nhớ
+ * - File được map vào bộ nhớ và giải mã UTF-8 một lần thành một mảng char
+ * - Mỗi bản ghi chỉ lưu vị trí (offset) của các field, không tạo String
+ * - get(i) mới tạo String cho đúng cột cần dùng (đã bỏ quotes, "" -> ", trim)
+ * - Hỗ trợ field trong quotes chứa dấu phẩy, xuống dòng và quotes được escape ("")
+ */
+public final class CsvRecordReader {
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+
+    private final char[] data;
+    private final int length;
+    private int pos;
+
+    // Vị trí field của bản ghi hiện tại (dùng lại giữa các bản ghi)
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    private boolean[] escaped = new boolean[32];
+    private int fieldCount;
+
+    private int line = 1;
+    private int recordLine;
+
+    private CsvRecordReader(CharBuffer chars) {
+        if (chars.hasArray()) {
+            this.data = chars.array();
+            this.pos = chars.arrayOffset() + chars.position();
+            this.length = chars.arrayOffset() + chars.limit();
+        } else {
+            this.data = new char[chars.remaining()];
+            chars.get(this.data);
+            this.pos = 0;
+            this.length = this.data.length;
+        }
+        // Bỏ BOM nếu có
+        if (pos < length && data[pos] == '\uFEFF') {
+            pos++;
+        }
+    }
+
+    /**
+     * Mở file CSV (UTF-8) qua memory-mapped FileChannel
+     */
+    public static CsvRecordReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new CsvRecordReader(StandardCharsets.UTF_8.newDecoder().decode(mapped));
+        }
+    }
+
+    /**
+     * Đọc CSV (UTF-8) từ mảng byte, ví dụ file upload
+     */
+    public static CsvRecordReader of(byte[] bytes) throws IOException {
+        return new CsvRecordReader(StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)));
+    }
+
+    /**
+     * Chuyển sang bản ghi tiếp theo
+     * @return false nếu đã hết file
+     */
+    public boolean next() {
+        if (pos >= length) {
+            fieldCount = 0;
+            return false;
+        }
+        fieldCount = 0;
+        recordLine = line;
+
+        while (true) {
+            int start = pos;
+            if (pos < length && data[pos] == QUOTE) {
+                // Field trong quotes: đọc đến quote đóng, "" là một dấu " trong nội dung
+                boolean hasEscapedQuote = false;
+                pos++;
+                start = pos;
+                int end = length;
+                while (pos < length) {
+                    char c = data[pos];
+                    if (c == QUOTE) {
+                        if (pos + 1 < length && data[pos + 1] == QUOTE) {
+                            hasEscapedQuote = true;
+                            pos += 2;
+                            continue;
+                        }
+                        end = pos;
+                        pos++;
+                        break;
+                    }
+                    // Xuống dòng trong quotes: \n, \r\n (đếm một lần ở \n) hoặc \r đứng riêng
+                    if (c == '\n' || (c == '\r' && (pos + 1 >= length || data[pos + 1] != '\n'))) line++;
+                    pos++;
+                }
+                // Bỏ qua ký tự lạc sau quote đóng (không hợp lệ theo RFC 4180)
+                while (pos < length && data[pos] != DELIMITER && data[pos] != '\n' && data[pos] != '\r') {
+                    pos++;
+                }
+                addField(start, end, hasEscapedQuote);
+            } else {
+                // Field không có quotes: dấu " ở giữa field được giữ nguyên
+                while (pos < length && data[pos] != DELIMITER && data[pos] != '\n' && data[pos] != '\r') {
+                    pos++;
+                }
+                addField(start, pos, false);
+            }
+
+            if (pos >= length) {
+                return true;
+            }
+            char c = data[pos];
+            if (c == DELIMITER) {
+                pos++;
+                continue;
+            }
+            // Kết thúc bản ghi: \n, \r\n hoặc \r
+            pos++;
+            if (c == '\r' && pos < length && data[pos] == '\n') {
+                pos++;
+            }
+            line++;
+            return true;
+        }
+    }
+
+    /**
+     * Số field của bản ghi hiện tại
+     */
+    public int size() {
+        return fieldCount;
+    }
+
+    /**
+     * Số dòng (trong file) nơi bản ghi hiện tại bắt đầu
+     */
+    public int lineNumber() {
+        return recordLine;
+    }
+
+    /**
+     * Bản ghi chỉ gồm khoảng trắng (dòng trống)
+     */
+    public boolean isBlank() {
+        for (int i = 0; i < fieldCount; i++) {
+            for (int j = starts[i]; j < ends[i]; j++) {
+                if (data[j] > ' ') return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Giá trị của field thứ index: đã bỏ quotes, "" -> ", trim; null nếu rỗng hoặc không tồn tại
+     */
+    public String get(int index) {
+        if (index < 0 || index >= fieldCount) {
+            return null;
+        }
+        int start = starts[index];
+        int end = ends[index];
+        while (start < end && data[start] <= ' ') start++;
+        while (end > start && data[end - 1] <= ' ') end--;
+        if (start == end) {
+            return null;
+        }
+        if (!escaped[index]) {
+            return new String(data, start, end - start);
+        }
+
+        StringBuilder value = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = data[i];
+            value.append(c);
+            if (c == QUOTE && i + 1 < end && data[i + 1] == QUOTE) {
+                i++;
+            }
+        }
+        return value.toString();
+    }
+
+    private void addField(int start, int end, boolean hasEscapedQuote) {
+        if (fieldCount == starts.length) {
+            int newSize = starts.length * 2;
+            starts = Arrays.copyOf(starts, newSize);
+            ends = Arrays.copyOf(ends, newSize);
+            escaped = Arrays.copyOf(escaped, newSize);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        escaped[fieldCount] = hasEscapedQuote;
+        fieldCount++;
+    }
+}
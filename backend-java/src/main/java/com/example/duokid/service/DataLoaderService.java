@@ -24,6 +24,8 @@ public class DataLoaderService {
 
     private final LessonRepository lessonRepo;
     private final QuizQuestionRepository quizRepo;
+    private final LessonCatalog lessonCatalog;
+    private final ContentCacheService contentCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     // Map để lưu các từ vựng đã trích xuất theo chủ đề
@@ -36,9 +38,12 @@ public class DataLoaderService {
     // List để lưu practice tasks
     private final List<PracticeTaskData> practiceTasks = new ArrayList<>();
 
-    public DataLoaderService(LessonRepository lessonRepo, QuizQuestionRepository quizRepo) {
+    public DataLoaderService(LessonRepository lessonRepo, QuizQuestionRepository quizRepo, LessonCatalog lessonCatalog,
+                             ContentCacheService contentCache) {
         this.lessonRepo = lessonRepo;
         this.quizRepo = quizRepo;
+        this.lessonCatalog = lessonCatalog;
+        this.contentCache = contentCache;
     }
 
     @PostConstruct
@@ -277,6 +282,8 @@ public class DataLoaderService {
             lesson.setContentHtml(html.toString());
             lessonRepo.save(lesson);
         }
+        lessonCatalog.invalidate();
+        contentCache.evictAll();
     }
 
     private void createQuizQuestions() {
@@ -21,17 +21,23 @@ public class DatabaseSeederService {
     private final QuizQuestionRepository quizQuestionRepository;
     private final TestRepository testRepository;
     private final TestQuestionRepository testQuestionRepository;
+    private final LessonCatalog lessonCatalog;
+    private final ContentCacheService contentCache;
 
     public DatabaseSeederService(UserRepository userRepository,
                                 LessonRepository lessonRepository,
                                 QuizQuestionRepository quizQuestionRepository,
                                 TestRepository testRepository,
-                                TestQuestionRepository testQuestionRepository) {
+                                TestQuestionRepository testQuestionRepository,
+                                LessonCatalog lessonCatalog,
+                                ContentCacheService contentCache) {
         this.userRepository = userRepository;
         this.lessonRepository = lessonRepository;
         this.quizQuestionRepository = quizQuestionRepository;
         this.testRepository = testRepository;
         this.testQuestionRepository = testQuestionRepository;
+        this.lessonCatalog = lessonCatalog;
+        this.contentCache = contentCache;
     }
 
     /**
@@ -250,6 +256,8 @@ public class DatabaseSeederService {
                 "<li><b>Egg</b> - Trứng</li>" +
                 "</ul>");
         lessonRepository.save(lesson5);
+        lessonCatalog.invalidate();
+        contentCache.evictAll();
 
         System.out.println("  ✅ Đã tạo 5 bài học mẫu");
     }
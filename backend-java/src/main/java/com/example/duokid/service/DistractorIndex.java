@@ -0,0 +1,116 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.Vocabulary;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chỉ mục nghĩa tiếng Việt dùng làm đáp án sai (distractor) khi tạo quiz
+ * - Dựng một lần cho mỗi lượt tạo quiz từ danh sách từ vựng đã nạp sẵn, không gọi findAll() cho từng bài
+ * - Nghĩa được gom nhóm (đã bỏ trùng) theo loại từ + testType + part, rồi loại từ + testType, testType, toàn bộ
+ * - sample() bốc ngẫu nhiên theo chỉ số nên mỗi lần bốc là O(1), đáp án sai cùng loại từ / cùng part với đáp án đúng
+ * - Nhóm hẹp không đủ nghĩa thì lấy thêm từ nhóm rộng hơn
+ */
+public final class DistractorIndex {
+
+    private static final String ANY = "*";
+
+    // Số lần bốc ngẫu nhiên cho mỗi đáp án cần lấy trước khi chuyển sang duyệt tuần tự (nhóm quá nhỏ)
+    private static final int ATTEMPTS_PER_PICK = 4;
+
+    private final Map<String, List<String>> buckets;
+
+    private DistractorIndex(Map<String, List<String>> buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * Dựng chỉ mục từ danh sách từ vựng
+     */
+    public static DistractorIndex build(Collection<Vocabulary> vocabularies) {
+        Map<String, Set<String>> groups = new HashMap<>();
+        for (Vocabulary v : vocabularies) {
+            String meaning = v.getVietnameseMeaning();
+            if (meaning == null || meaning.isBlank()) continue;
+
+            String wordType = normalize(v.getWordType());
+            String testType = normalize(v.getTestType());
+            String part = normalize(v.getPartNumber());
+            for (String key : keysFor(wordType, testType, part)) {
+                groups.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(meaning);
+            }
+        }
+
+        Map<String, List<String>> buckets = new HashMap<>();
+        groups.forEach((key, meanings) -> buckets.put(key, List.copyOf(meanings)));
+        return new DistractorIndex(buckets);
+    }
+
+    /**
+     * Lấy tối đa k nghĩa khác nhau, khác nghĩa của từ đích, ưu tiên cùng loại từ và cùng part
+     */
+    public List<String> sample(Vocabulary target, int k) {
+        return sample(target.getVietnameseMeaning(),
+                keysFor(normalize(target.getWordType()), normalize(target.getTestType()), normalize(target.getPartNumber())),
+                k);
+    }
+
+    /**
+     * Lấy tối đa k nghĩa khác nhau từ toàn bộ từ vựng, khác correctMeaning (dùng cho quiz tạo từ contentHtml)
+     */
+    public List<String> sample(String correctMeaning, int k) {
+        return sample(correctMeaning, List.of(key(ANY, ANY, ANY)), k);
+    }
+
+    private List<String> sample(String correctMeaning, List<String> keys, int k) {
+        Set<String> picked = new LinkedHashSet<>();
+        for (String key : keys) {
+            if (picked.size() >= k) break;
+            fill(buckets.get(key), correctMeaning, k, picked);
+        }
+        return new ArrayList<>(picked);
+    }
+
+    private static void fill(List<String> bucket, String correctMeaning, int k, Set<String> picked) {
+        if (bucket == null || bucket.isEmpty()) return;
+        Random random = ThreadLocalRandom.current();
+        int size = bucket.size();
+
+        int attempts = ATTEMPTS_PER_PICK * k;
+        while (picked.size() < k && attempts-- > 0) {
+            String meaning = bucket.get(random.nextInt(size));
+            if (!meaning.equals(correctMeaning)) {
+                picked.add(meaning);
+            }
+        }
+
+        // Nhóm nhỏ (nhiều lần bốc trùng): duyệt tuần tự từ một vị trí ngẫu nhiên
+        if (picked.size() < k) {
+            int start = random.nextInt(size);
+            for (int i = 0; i < size && picked.size() < k; i++) {
+                String meaning = bucket.get((start + i) % size);
+                if (!meaning.equals(correctMeaning)) {
+                    picked.add(meaning);
+                }
+            }
+        }
+    }
+
+    private static List<String> keysFor(String wordType, String testType, String part) {
+        return List.of(
+                key(wordType, testType, part),
+                key(wordType, testType, ANY),
+                key(ANY, testType, ANY),
+                key(ANY, ANY, ANY));
+    }
+
+    private static String key(String wordType, String testType, String part) {
+        return wordType + '|' + testType + '|' + part;
+    }
+
+    private static String normalize(String value) {
+        if (value == null || value.isBlank()) return "";
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -1,10 +1,10 @@
 package com.example.duokid.service;
 
 import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonSummary;
 import com.example.duokid.model.QuizQuestion;
 import com.example.duokid.model.Vocabulary;
 import com.example.duokid.repo.LessonRepository;
-import com.example.duokid.repo.QuizQuestionRepository;
 import com.example.duokid.repo.VocabularyRepository;
 import org.springframework.stereotype.Service;
 
@@ -26,14 +26,23 @@ public class GateLessonService {
 
     private final VocabularyRepository vocabularyRepository;
     private final LessonRepository lessonRepository;
-    private final QuizQuestionRepository quizQuestionRepository;
+    private final QuizQuestionBatchWriter batchWriter;
+    private final LessonCatalog lessonCatalog;
+    private final ContentCacheService contentCache;
+    private final TtsPrewarmJob ttsPrewarmJob;
 
     public GateLessonService(VocabularyRepository vocabularyRepository,
                             LessonRepository lessonRepository,
-                            QuizQuestionRepository quizQuestionRepository) {
+                            QuizQuestionBatchWriter batchWriter,
+                            LessonCatalog lessonCatalog,
+                            ContentCacheService contentCache,
+                            TtsPrewarmJob ttsPrewarmJob) {
         this.vocabularyRepository = vocabularyRepository;
         this.lessonRepository = lessonRepository;
-        this.quizQuestionRepository = quizQuestionRepository;
+        this.batchWriter = batchWriter;
+        this.lessonCatalog = lessonCatalog;
+        this.contentCache = contentCache;
+        this.ttsPrewarmJob = ttsPrewarmJob;
     }
 
     /**
@@ -90,9 +99,21 @@ public class GateLessonService {
      * Tạo tất cả bài học theo cấu trúc ô cửa
      */
     public CreateGateLessonsResult createGateLessons() {
+        return createGateLessons(QuizGenerationJob.JobStatus.detached(QuizGenerationJob.GATE_LESSONS));
+    }
+
+    /**
+     * Tạo tất cả bài học theo cấu trúc ô cửa, báo tiến độ qua status (dùng cho QuizGenerationJob)
+     * - Tiêu đề bài học đã có được đọc một lần thay vì findAll() cho mỗi bài nhỏ
+     * - Câu hỏi quiz được gom lại và ghi bằng JDBC batch
+     * - Dừng giữa các bài khi status bị yêu cầu hủy
+     */
+    public CreateGateLessonsResult createGateLessons(QuizGenerationJob.JobStatus status) {
         int created = 0;
         int skipped = 0;
         List<String> errors = new ArrayList<>();
+        List<QuizQuestion> pending = new ArrayList<>();
+        List<Vocabulary> newLessonVocabularies = new ArrayList<>();
 
         try {
             List<Vocabulary> allVocabularies = vocabularyRepository.findAll();
@@ -101,6 +122,9 @@ public class GateLessonService {
                 return new CreateGateLessonsResult(0, 0, List.of("Không có từ vựng nào trong database. Hãy import từ vựng trước!"));
             }
 
+            // Dựng chỉ mục đáp án sai một lần cho tất cả bài
+            DistractorIndex distractors = DistractorIndex.build(allVocabularies);
+
             // Nhóm theo testType và testNumber
             Map<String, Map<Integer, List<Vocabulary>>> groupedByTest = allVocabularies.stream()
                     .filter(v -> v.getTestType() != null && v.getTestNumber() != null)
@@ -109,7 +133,19 @@ public class GateLessonService {
                             Collectors.groupingBy(Vocabulary::getTestNumber)
                     ));
 
+            // Mỗi test được chia thành tối đa 10 bài nhỏ
+            status.setTotalLessons(groupedByTest.values().stream()
+                    .flatMap(tests -> tests.values().stream())
+                    .mapToInt(v -> Math.min(10, v.size()))
+                    .sum());
+
+            Set<String> existingTitles = new HashSet<>();
+            for (LessonSummary summary : lessonRepository.findAllSummaries()) {
+                if (summary.getTitle() != null) existingTitles.add(summary.getTitle());
+            }
+
             // Tạo lessons cho mỗi test
+            testLoop:
             for (Map.Entry<String, Map<Integer, List<Vocabulary>>> testTypeEntry : groupedByTest.entrySet()) {
                 String testType = testTypeEntry.getKey();
                 Map<Integer, List<Vocabulary>> testNumbers = testTypeEntry.getValue();
@@ -131,19 +167,20 @@ public class GateLessonService {
 
                         // Tạo lesson cho mỗi sub-test
                         for (int subIndex = 1; subIndex <= subTests.size(); subIndex++) {
+                            if (status.isCancelRequested()) {
+                                errors.add("Đã hủy sau " + status.getLessonsProcessed() + "/" + status.getTotalLessons() + " bài học");
+                                break testLoop;
+                            }
                             List<Vocabulary> subTestVocabs = subTests.get(subIndex - 1);
                             if (subTestVocabs.isEmpty()) continue;
 
                             String subTestNumber = getSubTestNumber(testNumber, subIndex);
-                            String lessonTitle = testType + " - TEST " + subTestNumber;
+                            String lessonTitle = LessonVocabularyScope.testTitle(testType, subTestNumber);
 
                             // Kiểm tra xem đã có Lesson này chưa
-                            List<Lesson> existing = lessonRepository.findAll().stream()
-                                    .filter(l -> l.getTitle() != null && l.getTitle().equals(lessonTitle))
-                                    .toList();
-
-                            if (!existing.isEmpty()) {
+                            if (!existingTitles.add(lessonTitle)) {
                                 skipped++;
+                                status.lessonProcessed(false);
                                 continue;
                             }
 
@@ -167,10 +204,15 @@ public class GateLessonService {
 
                             lessonRepository.save(lesson);
                             
-                            // Tạo quiz questions
-                            createQuizQuestionsForLesson(lesson, subTestVocabs);
+                            // Tạo quiz questions (ghi theo lô)
+                            pending.addAll(createQuizQuestionsForLesson(lesson, subTestVocabs, distractors));
+                            if (pending.size() >= batchWriter.getBatchSize()) {
+                                flush(pending, status, errors);
+                            }
                             
+                            newLessonVocabularies.addAll(subTestVocabs);
                             created++;
+                            status.lessonProcessed(true);
                         }
                     } catch (Exception e) {
                         errors.add("Lỗi khi tạo Lesson cho " + testType + " TEST " + testNumber + ": " + e.getMessage());
@@ -181,10 +223,30 @@ public class GateLessonService {
         } catch (Exception e) {
             errors.add("Lỗi tổng quát: " + e.getMessage());
         }
+        flush(pending, status, errors);
 
+        if (created > 0) {
+            lessonCatalog.invalidate();
+            contentCache.evictAll();
+            ttsPrewarmJob.enqueueVocabulary(newLessonVocabularies);
+        }
         return new CreateGateLessonsResult(created, skipped, errors);
     }
 
+    /**
+     * Ghi các câu hỏi đang chờ bằng JDBC batch
+     */
+    private void flush(List<QuizQuestion> pending, QuizGenerationJob.JobStatus status, List<String> errors) {
+        if (pending.isEmpty()) return;
+        try {
+            status.questionsWritten(batchWriter.write(pending));
+        } catch (Exception e) {
+            errors.add("Lỗi khi ghi " + pending.size() + " câu hỏi: " + e.getMessage());
+        } finally {
+            pending.clear();
+        }
+    }
+
     /**
      * Tạo HTML content từ danh sách từ vựng
      */
@@ -235,10 +297,12 @@ public class GateLessonService {
     }
 
     /**
-     * Tạo quiz questions cho lesson
+     * Dựng quiz questions cho lesson (chưa lưu, người gọi ghi theo lô)
      */
-    private void createQuizQuestionsForLesson(Lesson lesson, List<Vocabulary> vocabularies) {
-        if (vocabularies == null || vocabularies.isEmpty()) return;
+    private List<QuizQuestion> createQuizQuestionsForLesson(Lesson lesson, List<Vocabulary> vocabularies,
+                                                            DistractorIndex distractors) {
+        List<QuizQuestion> questions = new ArrayList<>();
+        if (vocabularies == null || vocabularies.isEmpty()) return questions;
         
         // Chọn ngẫu nhiên tối đa 10 từ vựng để tạo câu hỏi
         List<Vocabulary> selectedVocabs = new ArrayList<>(vocabularies);
@@ -246,18 +310,13 @@ public class GateLessonService {
         int maxQuestions = Math.min(10, selectedVocabs.size());
         selectedVocabs = selectedVocabs.subList(0, maxQuestions);
         
-        // Lấy tất cả từ vựng để làm đáp án sai
-        List<Vocabulary> allVocabs = vocabularyRepository.findAll();
+        // Lesson vừa tạo (hoặc chưa có quiz) nên chỉ cần tránh trùng với các câu vừa tạo trong vòng lặp
+        Set<String> usedWords = new HashSet<>();
         
         for (Vocabulary vocab : selectedVocabs) {
             try {
                 // Kiểm tra xem đã có câu hỏi này chưa
-                List<QuizQuestion> existing = quizQuestionRepository.findByLesson(lesson).stream()
-                        .filter(q -> q.getQuestion() != null && 
-                                q.getQuestion().contains(vocab.getEnglishWord()))
-                        .toList();
-                
-                if (!existing.isEmpty()) continue;
+                if (vocab.getEnglishWord() == null || !usedWords.add(vocab.getEnglishWord())) continue;
                 
                 // Tạo câu hỏi về nghĩa của từ
                 QuizQuestion question = new QuizQuestion();
@@ -268,14 +327,7 @@ public class GateLessonService {
                 String correctAnswer = vocab.getVietnameseMeaning();
                 
                 // Tạo 3 đáp án sai
-                List<String> wrongAnswers = allVocabs.stream()
-                        .filter(v -> !v.getId().equals(vocab.getId()) && 
-                                v.getVietnameseMeaning() != null && 
-                                !v.getVietnameseMeaning().equals(correctAnswer))
-                        .map(Vocabulary::getVietnameseMeaning)
-                        .distinct()
-                        .limit(3)
-                        .collect(Collectors.toList());
+                List<String> wrongAnswers = distractors.sample(vocab, 3);
                 
                 // Đảm bảo có đủ 3 đáp án sai
                 while (wrongAnswers.size() < 3) {
@@ -307,11 +359,12 @@ public class GateLessonService {
                         (vocab.getExampleSentence() != null && !vocab.getExampleSentence().trim().isEmpty() ? 
                                 "Ví dụ: " + vocab.getExampleSentence() : ""));
                 
-                quizQuestionRepository.save(question);
+                questions.add(question);
             } catch (Exception e) {
                 System.err.println("Lỗi khi tạo câu hỏi cho từ: " + vocab.getEnglishWord() + " - " + e.getMessage());
             }
         }
+        return questions;
     }
 
     private String escapeHtml(String text) {
@@ -0,0 +1,207 @@
+package com.example.duokid.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Chấm câu trả lời luyện tập hằng ngày qua Python service, có cache và gom lô
+ * - Khóa cache là (câu hỏi, câu mẫu, câu trả lời đã chuẩn hóa); chuẩn hóa = NFC, bỏ khoảng trắng thừa, chữ thường
+ *   (bộ chấm /grade so khớp từ không phân biệt hoa thường nên cùng khóa luôn cùng kết quả)
+ * - Kết quả chấm được giữ trong LRU tối đa grading.cache.max-entries câu; lỗi kết nối không được cache
+ * - Các câu cùng khóa đang chờ chấm dùng chung một kết quả
+ * - Các câu khác nhau nộp gần nhau được gom trong grading.batch.window-ms (tối đa grading.batch.max-size câu)
+ *   thành một request /grade/batch
+ */
+@Service
+public class GradingService {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final AiPythonClient aiPythonClient;
+    private final int maxBatchSize;
+    private final long windowMillis;
+    private final int maxCacheEntries;
+
+    private final Map<GradeKey, AiPythonClient.GradeResult> cache;
+    private final Map<GradeKey, CompletableFuture<AiPythonClient.GradeResult>> inFlight = new ConcurrentHashMap<>();
+    private final List<PendingGrade> pending = new ArrayList<>();
+    private boolean flushScheduled;
+    private final ScheduledExecutorService batcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "grade-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong itemsSent = new AtomicLong();
+
+    public GradingService(AiPythonClient aiPythonClient,
+                          @Value("${grading.batch.max-size:32}") int maxBatchSize,
+                          @Value("${grading.batch.window-ms:25}") long windowMillis,
+                          @Value("${grading.cache.max-entries:10000}") int maxCacheEntries) {
+        this.aiPythonClient = aiPythonClient;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.windowMillis = Math.max(0, windowMillis);
+        this.maxCacheEntries = Math.max(1, maxCacheEntries);
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<GradeKey, AiPythonClient.GradeResult> eldest) {
+                return size() > GradingService.this.maxCacheEntries;
+            }
+        };
+    }
+
+    /**
+     * Chấm một câu trả lời; không kết nối được AI thì trả kết quả 0 điểm kèm lời nhắn (không bao giờ lỗi)
+     */
+    public Mono<AiPythonClient.GradeResult> grade(String question, String expected, String answer) {
+        requests.incrementAndGet();
+        GradeKey key = new GradeKey(normalize(question, false), normalize(expected, false), normalize(answer, true));
+
+        synchronized (cache) {
+            AiPythonClient.GradeResult cached = cache.get(key);
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                return Mono.just(cached);
+            }
+        }
+
+        boolean[] created = new boolean[1];
+        CompletableFuture<AiPythonClient.GradeResult> future = inFlight.computeIfAbsent(key, k -> {
+            created[0] = true;
+            return new CompletableFuture<>();
+        });
+        if (created[0]) {
+            enqueue(new PendingGrade(key, new AiPythonClient.GradeItem(question, expected, answer.trim())));
+        } else {
+            coalesced.incrementAndGet();
+        }
+        // Một future dùng chung cho nhiều request: request bị hủy không được hủy future
+        return Mono.fromFuture(future, true);
+    }
+
+    public GradingStats getStats() {
+        int cacheEntries;
+        synchronized (cache) {
+            cacheEntries = cache.size();
+        }
+        return new GradingStats(requests.get(), cacheHits.get(), coalesced.get(), batches.get(), itemsSent.get(),
+                cacheEntries, inFlight.size());
+    }
+
+    private void enqueue(PendingGrade grade) {
+        List<PendingGrade> batch = null;
+        synchronized (pending) {
+            pending.add(grade);
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                batcher.schedule(this::flush, windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (batch != null) send(batch);
+    }
+
+    private void flush() {
+        List<PendingGrade> batch;
+        synchronized (pending) {
+            flushScheduled = false;
+            batch = takePending();
+        }
+        if (!batch.isEmpty()) send(batch);
+    }
+
+    private List<PendingGrade> takePending() {
+        List<PendingGrade> batch = new ArrayList<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void send(List<PendingGrade> batch) {
+        batches.incrementAndGet();
+        itemsSent.addAndGet(batch.size());
+        List<AiPythonClient.GradeItem> items = batch.stream().map(PendingGrade::item).toList();
+        aiPythonClient.gradeBatch(items).subscribe(
+                results -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        GradeKey key = batch.get(i).key();
+                        AiPythonClient.GradeResult result = results.get(i);
+                        synchronized (cache) {
+                            cache.put(key, result);
+                        }
+                        complete(key, result);
+                    }
+                },
+                error -> {
+                    for (PendingGrade grade : batch) {
+                        complete(grade.key(), AiPythonClient.GRADE_UNAVAILABLE);
+                    }
+                });
+    }
+
+    private void complete(GradeKey key, AiPythonClient.GradeResult result) {
+        CompletableFuture<AiPythonClient.GradeResult> future = inFlight.remove(key);
+        if (future != null) future.complete(result);
+    }
+
+    private static String normalize(String text, boolean ignoreCase) {
+        if (text == null) return "";
+        String collapsed = WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").trim();
+        return ignoreCase ? collapsed.toLowerCase(Locale.ROOT) : collapsed;
+    }
+
+    private record GradeKey(String question, String expected, String answer) {}
+
+    private record PendingGrade(GradeKey key, AiPythonClient.GradeItem item) {}
+
+    /**
+     * Số liệu chấm điểm (được serialize thành JSON cho trang admin)
+     */
+    public static class GradingStats {
+        private final long requests;
+        private final long cacheHits;
+        private final long coalesced;
+        private final long batches;
+        private final long itemsSent;
+        private final int cacheEntries;
+        private final int inFlight;
+
+        GradingStats(long requests, long cacheHits, long coalesced, long batches, long itemsSent,
+                     int cacheEntries, int inFlight) {
+            this.requests = requests;
+            this.cacheHits = cacheHits;
+            this.coalesced = coalesced;
+            this.batches = batches;
+            this.itemsSent = itemsSent;
+            this.cacheEntries = cacheEntries;
+            this.inFlight = inFlight;
+        }
+
+        public long getRequests() { return requests; }
+        public long getCacheHits() { return cacheHits; }
+        public long getCoalesced() { return coalesced; }
+        public long getBatches() { return batches; }
+        public long getItemsSent() { return itemsSent; }
+        public int getCacheEntries() { return cacheEntries; }
+        public int getInFlight() { return inFlight; }
+
+        public double getAverageBatchSize() {
+            return batches > 0 ? (double) itemsSent / batches : 0;
+        }
+    }
+}
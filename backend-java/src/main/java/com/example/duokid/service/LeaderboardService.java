@@ -1,21 +1,68 @@
 package com.example.duokid.service;
 
+import com.example.duokid.model.LeaderboardEntry;
 import com.example.duokid.model.User;
 import com.example.duokid.repo.UserRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 
+/**
+ * Bảng xếp hạng XP trong bộ nhớ
+ * - Nạp từ database một lần khi ứng dụng khởi động xong
+ * - UserService gọi update() mỗi khi lưu user (cộng XP, trao rương thưởng, mua tim...)
+ * - Top 10 và "hạng của tôi" được đọc từ RankedBoard, không query bảng users
+ */
 @Service
 public class LeaderboardService {
 
+    private static final int TOP_SIZE = 10;
+
     private final UserRepository userRepo;
+    private final RankedBoard<LeaderboardEntry> xpBoard = new RankedBoard<>();
 
     public LeaderboardService(UserRepository userRepo) {
         this.userRepo = userRepo;
     }
 
-    public List<User> getTop10ByXp() {
-        return userRepo.findTop10ByOrderByXpDesc();
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        xpBoard.clear();
+        for (User user : userRepo.findAll()) {
+            update(user);
+        }
+        System.out.println("🏆 Đã nạp bảng xếp hạng XP cho " + xpBoard.size() + " học sinh");
+    }
+
+    /**
+     * Cập nhật điểm và thông tin hiển thị của user trên bảng xếp hạng
+     */
+    public void update(User user) {
+        if (user == null || user.getId() == null) return;
+        xpBoard.put(user.getId(), user.getXp(), LeaderboardEntry.from(user));
+    }
+
+    public List<LeaderboardEntry> getTop10ByXp() {
+        return xpBoard.top(TOP_SIZE);
+    }
+
+    /**
+     * Hạng XP của user (bắt đầu từ 1)
+     */
+    public int getRank(User user) {
+        if (user == null || user.getId() == null) return 0;
+        int rank = xpBoard.rankOf(user.getId());
+        if (rank == 0) {
+            // User được tạo ngoài UserService (ví dụ tài khoản admin mới), thêm vào bảng rồi tính hạng
+            update(user);
+            rank = xpBoard.rankOf(user.getId());
+        }
+        return rank;
+    }
+
+    public int getRankedCount() {
+        return xpBoard.size();
     }
 }
@@ -0,0 +1,157 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.LessonSummary;
+import com.example.duokid.repo.LessonRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Danh mục bài học trong bộ nhớ (snapshot bất biến, có version)
+ * - Chỉ giữ LessonSummary, contentHtml được đọc riêng qua LessonContentCache
+ * - Bài học sắp xếp theo orderIndex, tra cứu theo id / vị trí / level / partName không cần SQL
+ * - Importer và seeder gọi invalidate() sau khi ghi bài học, snapshot được dựng lại ở lần đọc tiếp theo
+ * - Snapshot được thay thế nguyên khối nên người đọc không bao giờ thấy trạng thái dở dang
+ */
+@Component
+public class LessonCatalog {
+
+    private final LessonRepository lessonRepo;
+
+    private final AtomicLong versionCounter = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private volatile boolean stale = true;
+
+    public LessonCatalog(LessonRepository lessonRepo) {
+        this.lessonRepo = lessonRepo;
+    }
+
+    /**
+     * Đánh dấu danh mục cần dựng lại.
+     * Nếu đang trong transaction thì chờ commit xong mới đánh dấu, tránh dựng lại từ dữ liệu chưa commit.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stale = true;
+                }
+            });
+        } else {
+            stale = true;
+        }
+    }
+
+    /**
+     * Version của snapshot hiện tại, tăng mỗi lần dựng lại
+     */
+    public long getVersion() {
+        return current().version();
+    }
+
+    /**
+     * Tất cả bài học theo thứ tự lộ trình (danh sách bất biến)
+     */
+    public List<LessonSummary> getLessons() {
+        return current().lessons();
+    }
+
+    public Optional<LessonSummary> findById(Long id) {
+        if (id == null) return Optional.empty();
+        return Optional.ofNullable(current().byId().get(id));
+    }
+
+    /**
+     * Vị trí của bài học trong lộ trình, -1 nếu không có
+     */
+    public int positionOf(Long lessonId) {
+        Integer position = current().positionById().get(lessonId);
+        return position != null ? position : -1;
+    }
+
+    /**
+     * Bài học kế tiếp trong lộ trình
+     */
+    public Optional<LessonSummary> findNext(Long lessonId) {
+        Snapshot s = current();
+        Integer position = s.positionById().get(lessonId);
+        if (position == null || position + 1 >= s.lessons().size()) {
+            return Optional.empty();
+        }
+        return Optional.of(s.lessons().get(position + 1));
+    }
+
+    /**
+     * Bài học của một lớp (GRADE1..GRADE5), không phân biệt hoa thường
+     */
+    public List<LessonSummary> getLessonsByLevel(String level) {
+        if (level == null) return List.of();
+        return current().byLevel().getOrDefault(level.toUpperCase(Locale.ROOT), List.of());
+    }
+
+    /**
+     * Bài học của một ô cửa, ví dụ "PHẦN 1, CỬA 2"
+     */
+    public List<LessonSummary> getLessonsByPart(String partName) {
+        if (partName == null) return List.of();
+        return current().byPart().getOrDefault(partName, List.of());
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s != null && !stale) {
+            return s;
+        }
+        synchronized (this) {
+            if (snapshot == null || stale) {
+                // Hạ cờ trước khi đọc database: nếu có invalidate() trong lúc dựng thì lần đọc sau sẽ dựng lại
+                stale = false;
+                snapshot = build();
+            }
+            return snapshot;
+        }
+    }
+
+    private Snapshot build() {
+        List<LessonSummary> lessons = new ArrayList<>(lessonRepo.findAllSummaries());
+        lessons.sort(Comparator.comparing(LessonSummary::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        Map<Long, LessonSummary> byId = new HashMap<>();
+        Map<Long, Integer> positionById = new HashMap<>();
+        Map<String, List<LessonSummary>> byLevel = new HashMap<>();
+        Map<String, List<LessonSummary>> byPart = new HashMap<>();
+        for (int i = 0; i < lessons.size(); i++) {
+            LessonSummary lesson = lessons.get(i);
+            byId.put(lesson.getId(), lesson);
+            positionById.put(lesson.getId(), i);
+            if (lesson.getLevel() != null) {
+                byLevel.computeIfAbsent(lesson.getLevel().toUpperCase(Locale.ROOT), k -> new ArrayList<>()).add(lesson);
+            }
+            if (lesson.getPartName() != null) {
+                byPart.computeIfAbsent(lesson.getPartName(), k -> new ArrayList<>()).add(lesson);
+            }
+        }
+
+        long version = versionCounter.incrementAndGet();
+        System.out.println("📚 Đã nạp danh mục " + lessons.size() + " bài học (version " + version + ")");
+        return new Snapshot(version, List.copyOf(lessons), Map.copyOf(byId), Map.copyOf(positionById),
+                copyGroups(byLevel), copyGroups(byPart));
+    }
+
+    private static Map<String, List<LessonSummary>> copyGroups(Map<String, List<LessonSummary>> groups) {
+        Map<String, List<LessonSummary>> copy = new HashMap<>();
+        groups.forEach((key, list) -> copy.put(key, List.copyOf(list)));
+        return Map.copyOf(copy);
+    }
+
+    private record Snapshot(long version,
+                            List<LessonSummary> lessons,
+                            Map<Long, LessonSummary> byId,
+                            Map<Long, Integer> positionById,
+                            Map<String, List<LessonSummary>> byLevel,
+                            Map<String, List<LessonSummary>> byPart) {}
+}
@@ -0,0 +1,57 @@
+package com.example.duokid.service;
+
+import com.example.duokid.repo.LessonRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache nội dung HTML của bài học (contentHtml), khóa theo id bài học và version của LessonCatalog
+ * - Chỉ trang chi tiết bài học cần đến contentHtml, các trang khác dùng LessonSummary
+ * - Khi danh mục bài học được dựng lại (import/seed), version đổi nên nội dung cũ không còn được dùng
+ * - Giới hạn số bài giữ trong bộ nhớ (LRU) vì bài ETS có khối <style> khá lớn
+ */
+@Component
+public class LessonContentCache {
+
+    private static final int MAX_ENTRIES = 64;
+
+    private final LessonRepository lessonRepo;
+    private final LessonCatalog lessonCatalog;
+
+    private final Map<ContentKey, String> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ContentKey, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    public LessonContentCache(LessonRepository lessonRepo, LessonCatalog lessonCatalog) {
+        this.lessonRepo = lessonRepo;
+        this.lessonCatalog = lessonCatalog;
+    }
+
+    /**
+     * Lấy contentHtml của bài học, đọc database nếu chưa có trong cache
+     */
+    public String getContentHtml(Long lessonId) {
+        if (lessonId == null) return null;
+        ContentKey key = new ContentKey(lessonId, lessonCatalog.getVersion());
+
+        synchronized (cache) {
+            String cached = cache.get(key);
+            if (cached != null) return cached;
+        }
+
+        String content = lessonRepo.findContentHtmlById(lessonId);
+        if (content == null) return null;
+
+        synchronized (cache) {
+            cache.put(key, content);
+        }
+        return content;
+    }
+
+    private record ContentKey(Long lessonId, long version) {}
+}
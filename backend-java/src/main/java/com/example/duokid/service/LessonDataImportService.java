@@ -19,14 +19,20 @@ public class LessonDataImportService {
     private final LessonRepository lessonRepo;
     private final GrammarRepository grammarRepo;
     private final QuizGenerationService quizGenerationService;
+    private final LessonCatalog lessonCatalog;
+    private final ContentCacheService contentCache;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     public LessonDataImportService(LessonRepository lessonRepo, 
                                    GrammarRepository grammarRepo,
-                                   QuizGenerationService quizGenerationService) {
+                                   QuizGenerationService quizGenerationService,
+                                   LessonCatalog lessonCatalog,
+                                   ContentCacheService contentCache) {
         this.lessonRepo = lessonRepo;
         this.grammarRepo = grammarRepo;
         this.quizGenerationService = quizGenerationService;
+        this.lessonCatalog = lessonCatalog;
+        this.contentCache = contentCache;
     }
 
     /**
@@ -69,6 +75,8 @@ public class LessonDataImportService {
 
         // Import lessons
         if (rootNode.has("lessons") && rootNode.get("lessons").isArray()) {
+            // Một lượt tạo quiz cho cả file: từ vựng được nạp một lần, không nạp lại cho từng bài
+            QuizGenerationService.GenerationRun quizRun = quizGenerationService.newRun();
             for (JsonNode lessonNode : rootNode.get("lessons")) {
                 try {
                     Lesson lesson = new Lesson();
@@ -93,7 +101,7 @@ public class LessonDataImportService {
                         
                         // Tự động tạo quiz cho lesson vừa import
                         try {
-                            quizGenerationService.createQuizForLesson(lesson);
+                            quizGenerationService.createQuizForLesson(lesson, quizRun);
                         } catch (Exception e) {
                             // Log nhưng không fail import
                             System.err.println("Không thể tạo quiz cho lesson: " + lesson.getTitle() + " - " + e.getMessage());
@@ -136,6 +144,10 @@ public class LessonDataImportService {
             }
         }
 
+        if (lessonsImported > 0) {
+            lessonCatalog.invalidate();
+            contentCache.evictAll();
+        }
         return new ImportResult(lessonsImported, grammarImported, errors);
     }
 
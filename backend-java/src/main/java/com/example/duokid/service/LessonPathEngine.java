@@ -0,0 +1,57 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.LessonProgressSummary;
+import com.example.duokid.model.LessonSummary;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Tính trạng thái mở khóa của lộ trình học (Duolingo-style) mà không ghi database
+ * - Thứ tự bài học lấy từ LessonCatalog (không truy vấn bảng lessons)
+ * - Tiến độ của user được nén thành BitSet theo vị trí bài học trong lộ trình
+ * - Bài học user chưa chạm tới chỉ có progress tạm (không lưu, chỉ mang unlocked/completed),
+ *   unlocked khi bài trước đã hoàn thành
+ */
+@Component
+public class LessonPathEngine {
+
+    private final LessonCatalog lessonCatalog;
+
+    public LessonPathEngine(LessonCatalog lessonCatalog) {
+        this.lessonCatalog = lessonCatalog;
+    }
+
+    /**
+     * Lộ trình đã sắp xếp và progressMap cho mọi bài học
+     */
+    public record LessonPath(List<LessonSummary> lessons, Map<Long, LessonProgressSummary> progressMap) {}
+
+    /**
+     * Dựng lộ trình của user từ tiến độ đã lưu (lessonId -> progress)
+     */
+    public LessonPath buildPath(Map<Long, LessonProgressSummary> storedProgress) {
+        List<LessonSummary> lessons = lessonCatalog.getLessons();
+
+        Map<Long, LessonProgressSummary> progressMap = new HashMap<>(storedProgress);
+        BitSet completed = new BitSet(lessons.size());
+        for (LessonProgressSummary p : storedProgress.values()) {
+            int position = lessonCatalog.positionOf(p.getLessonId());
+            if (position >= 0 && p.isCompleted()) {
+                completed.set(position);
+            }
+        }
+
+        for (int i = 0; i < lessons.size(); i++) {
+            LessonSummary lesson = lessons.get(i);
+            if (progressMap.containsKey(lesson.getId())) continue;
+
+            // Bài đầu tiên luôn mở, các bài khác mở khi bài trước đã hoàn thành
+            boolean unlocked = i == 0 || completed.get(i - 1);
+
+            progressMap.put(lesson.getId(), new LessonProgressSummary(lesson.getId(), false, unlocked, 0));
+        }
+
+        return new LessonPath(lessons, progressMap);
+    }
+}
@@ -1,79 +1,63 @@
 package com.example.duokid.service;
 
 import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonProgressSummary;
+import com.example.duokid.model.LessonSummary;
 import com.example.duokid.model.User;
 import com.example.duokid.model.UserLessonProgress;
 import com.example.duokid.repo.LessonRepository;
 import com.example.duokid.repo.UserLessonProgressRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Tiến độ học của user
+ * - Đọc bằng projection LessonProgressSummary (lessonId, completed, unlocked, score), không nạp User / Lesson
+ * - Trong một request chỉ đọc một lần: dashboard, trang bài học, kiểm tra ô cửa và đếm số bài hoàn thành
+ *   dùng chung kết quả (lưu trong request attribute), các lần ghi trong cùng request cập nhật luôn bản này
+ */
 @Service
 public class LessonProgressService {
 
+    private static final String REQUEST_ATTRIBUTE = LessonProgressService.class.getName() + ".progress.";
+
     private final UserLessonProgressRepository progressRepo;
     private final LessonRepository lessonRepo;
-    private final UserService userService;
+    private final LessonCatalog lessonCatalog;
+    private final LessonPathEngine lessonPathEngine;
+    private final WalletService walletService;
 
     public LessonProgressService(UserLessonProgressRepository progressRepo,
                                  LessonRepository lessonRepo,
-                                 UserService userService) {
+                                 LessonCatalog lessonCatalog,
+                                 LessonPathEngine lessonPathEngine,
+                                 WalletService walletService) {
         this.progressRepo = progressRepo;
         this.lessonRepo = lessonRepo;
-        this.userService = userService;
+        this.lessonCatalog = lessonCatalog;
+        this.lessonPathEngine = lessonPathEngine;
+        this.walletService = walletService;
     }
 
-    public List<Lesson> getLessonPathForUser(User user) {
-        List<Lesson> allLessons = lessonRepo.findAll();
-        List<UserLessonProgress> userProgress = progressRepo.findByUser(user);
-        
-        Map<Long, UserLessonProgress> progressMap = userProgress.stream()
-            .collect(Collectors.toMap(p -> p.getLesson().getId(), p -> p));
-
-        // Sort by orderIndex
-        allLessons.sort(Comparator.comparing(Lesson::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder())));
-
-        // Determine unlock status
-        for (int i = 0; i < allLessons.size(); i++) {
-            Lesson lesson = allLessons.get(i);
-            UserLessonProgress progress = progressMap.get(lesson.getId());
-            
-            if (progress == null) {
-                // First lesson is always unlocked
-                if (i == 0) {
-                    progress = new UserLessonProgress();
-                    progress.setUser(user);
-                    progress.setLesson(lesson);
-                    progress.setUnlocked(true);
-                    progress.setCompleted(false);
-                    progressRepo.save(progress);
-                } else {
-                    // Check if previous lesson is completed
-                    Lesson prevLesson = allLessons.get(i - 1);
-                    UserLessonProgress prevProgress = progressMap.get(prevLesson.getId());
-                    boolean unlocked = prevProgress != null && prevProgress.isCompleted();
-                    
-                    progress = new UserLessonProgress();
-                    progress.setUser(user);
-                    progress.setLesson(lesson);
-                    progress.setUnlocked(unlocked);
-                    progress.setCompleted(false);
-                    progressRepo.save(progress);
-                }
-            }
-        }
-
-        return allLessons;
+    /**
+     * Lộ trình học của user: danh sách bài học đã sắp xếp và trạng thái từng bài.
+     * Không ghi database - chỉ những bài user đã học/mở khóa mới có dòng progress được lưu.
+     */
+    public LessonPathEngine.LessonPath getLessonPathForUser(User user) {
+        return lessonPathEngine.buildPath(loadProgress(user));
     }
 
-    public Map<Long, UserLessonProgress> getProgressMap(User user) {
-        List<UserLessonProgress> progressList = progressRepo.findByUser(user);
-        return progressList.stream()
-            .collect(Collectors.toMap(p -> p.getLesson().getId(), p -> p));
+    /**
+     * Tiến độ đã lưu của user, theo lessonId (chỉ đọc)
+     */
+    public Map<Long, LessonProgressSummary> getProgressMap(User user) {
+        return Collections.unmodifiableMap(loadProgress(user));
     }
 
     @Transactional
@@ -91,6 +75,7 @@ public class LessonProgressService {
         progress.setCompletedAt(LocalDateTime.now());
         progress.setUnlocked(true);
         progressRepo.save(progress);
+        updateProgress(user, progress);
 
         // Unlock next lesson
         unlockNextLesson(user, lesson);
@@ -145,18 +130,12 @@ public class LessonProgressService {
         }
         
         // Lấy tất cả bài học trong ô cửa hiện tại
-        List<Lesson> gateLessons = lessonRepo.findAll().stream()
-                .filter(l -> partName.equals(l.getPartName()))
-                .sorted(Comparator.comparing(Lesson::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder())))
-                .toList();
+        List<LessonSummary> gateLessons = lessonCatalog.getLessonsByPart(partName);
+        Set<Long> gateLessonIds = gateLessons.stream().map(LessonSummary::getId).collect(Collectors.toSet());
         
         // Kiểm tra xem đã hoàn thành hết chưa
-        List<UserLessonProgress> gateProgress = progressRepo.findByUser(user).stream()
-                .filter(p -> gateLessons.stream().anyMatch(l -> l.getId().equals(p.getLesson().getId())))
-                .toList();
-        
-        long completedCount = gateProgress.stream()
-                .filter(UserLessonProgress::isCompleted)
+        long completedCount = loadProgress(user).values().stream()
+                .filter(p -> p.isCompleted() && gateLessonIds.contains(p.getLessonId()))
                 .count();
         
         // Nếu đã hoàn thành hết bài trong ô cửa
@@ -203,11 +182,8 @@ public class LessonProgressService {
      * Trao rương thưởng khi hoàn thành một ô cửa
      */
     private void awardGateReward(User user, int gate, int gemsReward, int xpReward) {
-        user.setGems(user.getGems() + gemsReward);
-        user.setXp(user.getXp() + xpReward);
-        
-        // Lưu user
-        userService.save(user);
+        walletService.change(user.getId(), xpReward, gemsReward, 0,
+                "GATE_REWARD", "Rương thưởng Ô cửa " + gate);
         
         System.out.println("🎁 Rương thưởng Ô cửa " + gate + ": +" + gemsReward + " gems, +" + xpReward + " XP cho user " + user.getDisplayName());
     }
@@ -218,63 +194,82 @@ public class LessonProgressService {
     private void unlockNextGate(User user, int nextGate) {
         String nextPartName = "PHẦN 1, CỬA " + nextGate;
         
-        List<Lesson> nextGateLessons = lessonRepo.findAll().stream()
-                .filter(l -> nextPartName.equals(l.getPartName()))
-                .sorted(Comparator.comparing(Lesson::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder())))
-                .toList();
+        List<LessonSummary> nextGateLessons = lessonCatalog.getLessonsByPart(nextPartName);
         
         // Unlock bài học đầu tiên của ô cửa tiếp theo
         if (!nextGateLessons.isEmpty()) {
-            Lesson firstLesson = nextGateLessons.get(0);
-            Optional<UserLessonProgress> progress = progressRepo.findByUserAndLesson(user, firstLesson);
-            
-            if (progress.isEmpty()) {
-                UserLessonProgress newProgress = new UserLessonProgress();
-                newProgress.setUser(user);
-                newProgress.setLesson(firstLesson);
-                newProgress.setUnlocked(true);
-                newProgress.setCompleted(false);
-                progressRepo.save(newProgress);
-            } else {
-                UserLessonProgress existingProgress = progress.get();
-                if (!existingProgress.isUnlocked()) {
-                    existingProgress.setUnlocked(true);
-                    progressRepo.save(existingProgress);
-                }
-            }
+            unlockLesson(user, nextGateLessons.get(0).getId());
         }
     }
 
     private void unlockNextLesson(User user, Lesson completedLesson) {
-        List<Lesson> allLessons = lessonRepo.findAll();
-        allLessons.sort(Comparator.comparing(Lesson::getOrderIndex, Comparator.nullsLast(Comparator.naturalOrder())));
-        
-        for (int i = 0; i < allLessons.size(); i++) {
-            if (allLessons.get(i).getId().equals(completedLesson.getId()) && i + 1 < allLessons.size()) {
-                Lesson nextLesson = allLessons.get(i + 1);
-                Optional<UserLessonProgress> nextProgress = progressRepo.findByUserAndLesson(user, nextLesson);
-                
-                if (nextProgress.isEmpty()) {
-                    UserLessonProgress progress = new UserLessonProgress();
-                    progress.setUser(user);
-                    progress.setLesson(nextLesson);
-                    progress.setUnlocked(true);
-                    progress.setCompleted(false);
-                    progressRepo.save(progress);
-                } else {
-                    UserLessonProgress existingProgress = nextProgress.get();
-                    if (!existingProgress.isUnlocked()) {
-                        existingProgress.setUnlocked(true);
-                        progressRepo.save(existingProgress);
-                    }
-                }
-                break;
+        lessonCatalog.findNext(completedLesson.getId())
+                .ifPresent(next -> unlockLesson(user, next.getId()));
+    }
+
+    /**
+     * Tạo hoặc cập nhật dòng progress để mở khóa một bài học
+     */
+    private void unlockLesson(User user, Long lessonId) {
+        Lesson lesson = lessonRepo.getReferenceById(lessonId);
+        Optional<UserLessonProgress> existing = progressRepo.findByUserAndLesson(user, lesson);
+
+        if (existing.isEmpty()) {
+            UserLessonProgress progress = new UserLessonProgress();
+            progress.setUser(user);
+            progress.setLesson(lesson);
+            progress.setUnlocked(true);
+            progress.setCompleted(false);
+            progressRepo.save(progress);
+            updateProgress(user, progress);
+        } else {
+            UserLessonProgress existingProgress = existing.get();
+            if (!existingProgress.isUnlocked()) {
+                existingProgress.setUnlocked(true);
+                progressRepo.save(existingProgress);
+                updateProgress(user, existingProgress);
             }
         }
     }
 
     public int getCompletedLessonsCount(User user) {
-        return progressRepo.countCompletedLessonsByUser(user);
+        Map<Long, LessonProgressSummary> progress = requestProgress(user);
+        if (progress == null) return progressRepo.countCompletedLessonsByUser(user);
+        return (int) progress.values().stream().filter(LessonProgressSummary::isCompleted).count();
+    }
+
+    /**
+     * Tiến độ của user: lấy bản đã đọc trong request hiện tại, chưa có thì đọc database (một câu SELECT)
+     */
+    private Map<Long, LessonProgressSummary> loadProgress(User user) {
+        Map<Long, LessonProgressSummary> progress = requestProgress(user);
+        if (progress != null) return progress;
+
+        progress = new HashMap<>();
+        for (LessonProgressSummary summary : progressRepo.findSummariesByUserId(user.getId())) {
+            progress.put(summary.getLessonId(), summary);
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE + user.getId(), progress, RequestAttributes.SCOPE_REQUEST);
+        }
+        return progress;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, LessonProgressSummary> requestProgress(User user) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request == null || user.getId() == null) return null;
+        return (Map<Long, LessonProgressSummary>) request.getAttribute(REQUEST_ATTRIBUTE + user.getId(),
+                RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * Ghi lại dòng progress vừa lưu vào bản dùng chung của request (nếu đã đọc)
+     */
+    private void updateProgress(User user, UserLessonProgress progress) {
+        Map<Long, LessonProgressSummary> cached = requestProgress(user);
+        if (cached != null) cached.put(progress.getLesson().getId(), LessonProgressSummary.of(progress));
     }
 }
 
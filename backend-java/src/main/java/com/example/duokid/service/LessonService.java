@@ -1,6 +1,7 @@
 package com.example.duokid.service;
 
 import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonSummary;
 import com.example.duokid.model.QuizQuestion;
 import com.example.duokid.repo.LessonRepository;
 import com.example.duokid.repo.QuizQuestionRepository;
@@ -14,10 +15,18 @@ public class LessonService {
 
     private final LessonRepository lessonRepo;
     private final QuizQuestionRepository quizRepo;
+    private final LessonCatalog lessonCatalog;
+    private final LessonContentCache lessonContentCache;
+    private final ContentCacheService contentCache;
 
-    public LessonService(LessonRepository lessonRepo, QuizQuestionRepository quizRepo) {
+    public LessonService(LessonRepository lessonRepo, QuizQuestionRepository quizRepo,
+                         LessonCatalog lessonCatalog, LessonContentCache lessonContentCache,
+                         ContentCacheService contentCache) {
         this.lessonRepo = lessonRepo;
         this.quizRepo = quizRepo;
+        this.lessonCatalog = lessonCatalog;
+        this.lessonContentCache = lessonContentCache;
+        this.contentCache = contentCache;
     }
 
     @PostConstruct
@@ -176,6 +185,8 @@ public class LessonService {
         animals = lessonRepo.save(animals);
         family.setParentId(animals.getId());
         family = lessonRepo.save(family);
+        lessonCatalog.invalidate();
+        contentCache.evictAll();
 
         if (quizRepo.count() == 0) {
             quizRepo.saveAll(List.of(
@@ -266,14 +277,48 @@ public class LessonService {
         }
     }
 
-    public List<Lesson> findAll() {
-        return lessonRepo.findAll();
+    /**
+     * Tóm tắt tất cả bài học theo thứ tự lộ trình, lấy từ LessonCatalog (danh sách bất biến)
+     */
+    public List<LessonSummary> findAllSummaries() {
+        return lessonCatalog.getLessons();
+    }
+
+    /**
+     * Tóm tắt bài học của một lớp theo thứ tự lộ trình
+     */
+    public List<LessonSummary> findByLevel(String level) {
+        return lessonCatalog.getLessonsByLevel(level);
+    }
+
+    public LessonSummary findSummaryById(Long id) {
+        return lessonCatalog.findById(id).orElse(null);
+    }
+
+    /**
+     * Nội dung HTML của bài học (qua LessonContentCache)
+     */
+    public String getContentHtml(Long id) {
+        return lessonContentCache.getContentHtml(id);
+    }
+
+    /**
+     * Tìm các bài học có nội dung chứa đoạn text (so khớp trong database, không nạp mọi contentHtml)
+     */
+    public List<Lesson> findByContentHtmlContaining(String text) {
+        // Escape ký tự đại diện của LIKE để từ người dùng nhập (vd. "%", "a_c") chỉ khớp đúng nguyên văn
+        String escaped = text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return lessonRepo.findByContentHtmlContaining(escaped);
     }
 
     public Lesson findById(Long id) {
         return lessonRepo.findById(id).orElse(null);
     }
 
+    public boolean hasQuestions(Long lessonId) {
+        return quizRepo.existsByLessonId(lessonId);
+    }
+
     public java.util.List<QuizQuestion> getQuestionsByLesson(Lesson lesson) {
         return quizRepo.findByLesson(lesson);
     }
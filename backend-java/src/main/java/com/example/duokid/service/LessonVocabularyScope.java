@@ -0,0 +1,74 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.LessonSummary;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Từ vựng nào thuộc bài học, suy ra từ tiêu đề bài học
+ * - "{testType} - TEST {n}" (VocabularyToLessonService) và "{testType} - TEST {n}.{k}" (GateLessonService, chia nhỏ test n):
+ *   toàn bộ từ của (testType, testNumber = n)
+ * - "{testType} - {partNumber}" (bài theo Part của VocabularyToLessonService): toàn bộ từ của (testType, partNumber);
+ *   tiêu đề khác có dạng "A - B" (bài seed) không khớp từ vựng nào nên không ảnh hưởng
+ * - Các service tạo bài học dùng testTitle() / partTitle() nên tiêu đề và cách đọc lại luôn khớp nhau
+ */
+public final class LessonVocabularyScope {
+
+    private static final Pattern TEST_TITLE = Pattern.compile("^(.+) - TEST (\\d+)(?:\\.\\d+)?$");
+    private static final Pattern PART_TITLE = Pattern.compile("^(.+?) - (.+)$");
+
+    private final Set<TestKey> tests = new HashSet<>();
+    private final Set<PartKey> parts = new HashSet<>();
+
+    private LessonVocabularyScope() {
+    }
+
+    public static String testTitle(String testType, Object testNumber) {
+        return testType + " - TEST " + testNumber;
+    }
+
+    public static String partTitle(String testType, String partNumber) {
+        return testType + " - " + partNumber;
+    }
+
+    public static LessonVocabularyScope of(Collection<LessonSummary> lessons) {
+        LessonVocabularyScope scope = new LessonVocabularyScope();
+        for (LessonSummary lesson : lessons) {
+            String title = lesson.getTitle();
+            if (title == null) continue;
+            Matcher test = TEST_TITLE.matcher(title);
+            if (test.matches()) {
+                scope.tests.add(new TestKey(test.group(1), Integer.parseInt(test.group(2))));
+                continue;
+            }
+            Matcher part = PART_TITLE.matcher(title);
+            if (part.matches()) {
+                scope.parts.add(new PartKey(part.group(1), part.group(2)));
+            }
+        }
+        return scope;
+    }
+
+    public boolean isEmpty() {
+        return tests.isEmpty() && parts.isEmpty();
+    }
+
+    /**
+     * Từ vựng có (testType, testNumber, partNumber) này có nằm trong một bài học nào không
+     */
+    public boolean contains(String testType, Integer testNumber, String partNumber) {
+        if (testType == null) return false;
+        if (testNumber != null && tests.contains(new TestKey(testType, testNumber))) return true;
+        return partNumber != null && parts.contains(new PartKey(testType, partNumber));
+    }
+
+    private record TestKey(String testType, int testNumber) {
+    }
+
+    private record PartKey(String testType, String partNumber) {
+    }
+}
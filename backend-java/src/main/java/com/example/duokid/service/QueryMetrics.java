@@ -0,0 +1,254 @@
+package com.example.duokid.service;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Đếm câu SQL theo từng request / từng endpoint (controller method)
+ * - StatementInspector của Hibernate đếm câu lệnh và gom theo nội dung SQL để phát hiện N+1
+ *   (cùng một câu lặp lại từ query.metrics.repeat-threshold lần trở lên trong một request)
+ * - SessionEventListener đo thời gian chạy câu lệnh, PostLoad listener đếm số entity được nạp
+ * - Chỉ đếm trên luồng đang xử lý request (QueryBudgetInterceptor gọi begin / end), việc chạy nền không bị tính
+ * - Endpoint khai báo @QueryBudget thì mỗi lần vượt ngân sách được ghi log và cộng vào số liệu
+ */
+@Component
+public class QueryMetrics implements HibernatePropertiesCustomizer, StatementInspector {
+
+    private static final ThreadLocal<RequestQueries> CURRENT = new ThreadLocal<>();
+
+    private final int repeatThreshold;
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+
+    public QueryMetrics(@Value("${query.metrics.repeat-threshold:5}") int repeatThreshold) {
+        this.repeatThreshold = Math.max(2, repeatThreshold);
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, this);
+        hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, StatementTimer.class.getName());
+        hibernateProperties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> List.of(new EntityLoadCounter()));
+    }
+
+    @Override
+    public String inspect(String sql) {
+        RequestQueries current = CURRENT.get();
+        if (current != null) current.statement(sql);
+        return sql;
+    }
+
+    /**
+     * Bắt đầu đếm cho request hiện tại
+     * @param budget số câu SQL tối đa, 0 = không giới hạn
+     */
+    public void begin(String endpoint, int budget) {
+        CURRENT.set(new RequestQueries(endpoint, budget));
+    }
+
+    /**
+     * Số liệu của request đang chạy trên luồng hiện tại, null nếu không có
+     */
+    public RequestQueries current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Kết thúc request: cộng vào số liệu của endpoint, ghi log khi vượt ngân sách hoặc nghi N+1
+     * @return số liệu của request vừa kết thúc, null nếu luồng hiện tại không đếm
+     */
+    public RequestQueries end() {
+        RequestQueries request = CURRENT.get();
+        CURRENT.remove();
+        if (request == null) return null;
+
+        EndpointStats stats = endpoints.computeIfAbsent(request.endpoint, k -> new EndpointStats(k, request.budget));
+        stats.record(request);
+
+        if (request.isOverBudget()) {
+            stats.budgetExceeded.incrementAndGet();
+            System.out.println("⚠️ Vượt ngân sách truy vấn: " + request.endpoint + " chạy " + request.statements +
+                    " câu SQL (ngân sách " + request.budget + ")");
+        }
+        String repeated = request.mostRepeatedSql();
+        int repeats = repeated != null ? request.sqlCounts.get(repeated) : 0;
+        if (repeats >= repeatThreshold) {
+            stats.suspectedNPlusOne.incrementAndGet();
+            System.out.println("🔁 Nghi N+1 ở " + request.endpoint + ": câu SQL lặp " + repeats + " lần: " +
+                    (repeated.length() > 200 ? repeated.substring(0, 200) + "..." : repeated));
+        }
+        return request;
+    }
+
+    /**
+     * Số liệu các endpoint, nhiều câu SQL nhất trước
+     */
+    public List<EndpointStats> getStats() {
+        List<EndpointStats> list = new ArrayList<>(endpoints.values());
+        list.sort(Comparator.comparingLong(EndpointStats::getStatements).reversed());
+        return list;
+    }
+
+    public void reset() {
+        endpoints.clear();
+    }
+
+    /**
+     * Số liệu của một request (chỉ luồng xử lý request đó ghi vào)
+     */
+    public static class RequestQueries {
+        private final String endpoint;
+        private final int budget;
+        private final Map<String, Integer> sqlCounts = new HashMap<>();
+        private int statements;
+        private int entitiesLoaded;
+        private long executeNanos;
+
+        RequestQueries(String endpoint, int budget) {
+            this.endpoint = endpoint;
+            this.budget = budget;
+        }
+
+        private void statement(String sql) {
+            statements++;
+            sqlCounts.merge(sql, 1, Integer::sum);
+        }
+
+        private String mostRepeatedSql() {
+            return sqlCounts.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse(null);
+        }
+
+        public String getEndpoint() { return endpoint; }
+        public int getBudget() { return budget; }
+        public int getStatements() { return statements; }
+        public int getEntitiesLoaded() { return entitiesLoaded; }
+
+        /**
+         * Số lần chạy mỗi câu SQL (khác nhau theo nội dung)
+         */
+        public Map<String, Integer> getSqlCounts() {
+            return Collections.unmodifiableMap(sqlCounts);
+        }
+
+        public long getExecuteMillis() {
+            return executeNanos / 1_000_000;
+        }
+
+        public boolean isOverBudget() {
+            return budget > 0 && statements > budget;
+        }
+    }
+
+    /**
+     * Số liệu cộng dồn của một endpoint (được serialize thành JSON cho trang admin)
+     */
+    public static class EndpointStats {
+        private final String endpoint;
+        private final int budget;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong maxStatements = new AtomicLong();
+        private final AtomicLong entitiesLoaded = new AtomicLong();
+        private final AtomicLong executeNanos = new AtomicLong();
+        private final AtomicLong budgetExceeded = new AtomicLong();
+        private final AtomicLong suspectedNPlusOne = new AtomicLong();
+
+        EndpointStats(String endpoint, int budget) {
+            this.endpoint = endpoint;
+            this.budget = budget;
+        }
+
+        private void record(RequestQueries request) {
+            requests.incrementAndGet();
+            statements.addAndGet(request.statements);
+            maxStatements.accumulateAndGet(request.statements, Math::max);
+            entitiesLoaded.addAndGet(request.entitiesLoaded);
+            executeNanos.addAndGet(request.executeNanos);
+        }
+
+        public String getEndpoint() { return endpoint; }
+        public int getBudget() { return budget; }
+        public long getRequests() { return requests.get(); }
+        public long getStatements() { return statements.get(); }
+        public long getMaxStatements() { return maxStatements.get(); }
+        public long getEntitiesLoaded() { return entitiesLoaded.get(); }
+        public long getExecuteMillis() { return executeNanos.get() / 1_000_000; }
+        public long getBudgetExceeded() { return budgetExceeded.get(); }
+        public long getSuspectedNPlusOne() { return suspectedNPlusOne.get(); }
+
+        public double getAverageStatements() {
+            long count = requests.get();
+            return count > 0 ? Math.round(statements.get() * 10.0 / count) / 10.0 : 0;
+        }
+    }
+
+    /**
+     * Đo thời gian chạy câu lệnh JDBC (Hibernate tạo một instance cho mỗi session)
+     */
+    public static class StatementTimer extends BaseSessionEventListener {
+        private long startedAt;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            startedAt = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            addElapsed();
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            startedAt = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            addElapsed();
+        }
+
+        private void addElapsed() {
+            RequestQueries current = CURRENT.get();
+            if (current != null && startedAt > 0) current.executeNanos += System.nanoTime() - startedAt;
+            startedAt = 0;
+        }
+    }
+
+    /**
+     * Đăng ký PostLoad listener để đếm entity được nạp trong request
+     */
+    private static class EntityLoadCounter implements Integrator {
+        @Override
+        public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+            sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class)
+                    .appendListeners(EventType.POST_LOAD, event -> {
+                        RequestQueries current = CURRENT.get();
+                        if (current != null) current.entitiesLoaded++;
+                    });
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.duokid.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Chạy việc tạo quiz / tạo bài học ô cửa ở chế độ nền để request của admin không bị timeout
+ * - Mỗi lúc chỉ chạy một job, bấm lại khi job đang chạy sẽ trả về job hiện tại
+ * - Trang import của admin gọi /admin/import/quiz-job/status để xem tiến độ, có thể yêu cầu hủy
+ * - Hủy được kiểm tra giữa các bài học, các lô câu hỏi đã ghi vẫn được giữ lại
+ */
+@Component
+public class QuizGenerationJob {
+
+    public static final String ALL_LESSONS = "ALL_LESSONS";
+    public static final String GATE_LESSONS = "GATE_LESSONS";
+
+    private final QuizGenerationService quizGenerationService;
+    private final GateLessonService gateLessonService;
+
+    private final AtomicLong jobCounter = new AtomicLong();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "quiz-generation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile JobStatus current;
+
+    public QuizGenerationJob(QuizGenerationService quizGenerationService, GateLessonService gateLessonService) {
+        this.quizGenerationService = quizGenerationService;
+        this.gateLessonService = gateLessonService;
+    }
+
+    /**
+     * Bắt đầu job tạo quiz cho tất cả bài học chưa có quiz
+     */
+    public JobStatus startAllLessons() {
+        return start(ALL_LESSONS, status -> {
+            QuizGenerationService.QuizGenerationResult result = quizGenerationService.createQuizForAllLessons(status);
+            result.getErrors().forEach(status::addError);
+            return String.format("Đã tạo quiz cho %d bài học (tổng %d câu hỏi), bỏ qua %d bài đã có quiz",
+                    result.getLessonsCreated(), result.getTotalQuestions(), result.getLessonsSkipped());
+        });
+    }
+
+    /**
+     * Bắt đầu job tạo bài học theo cấu trúc ô cửa (kèm quiz)
+     */
+    public JobStatus startGateLessons() {
+        return start(GATE_LESSONS, status -> {
+            GateLessonService.CreateGateLessonsResult result = gateLessonService.createGateLessons(status);
+            result.getErrors().forEach(status::addError);
+            return String.format("Đã tạo %d bài học theo cấu trúc ô cửa (tổng %d câu hỏi), bỏ qua %d bài đã tồn tại",
+                    result.getCreated(), status.getQuestionsCreated(), result.getSkipped());
+        });
+    }
+
+    /**
+     * Yêu cầu hủy job đang chạy
+     * @return false nếu không có job nào đang chạy
+     */
+    public boolean cancel() {
+        JobStatus status = current;
+        if (status == null || !status.isRunning()) return false;
+        status.cancelRequested = true;
+        return true;
+    }
+
+    /**
+     * Job gần nhất (đang chạy hoặc đã xong), null nếu chưa chạy job nào
+     */
+    public JobStatus getStatus() {
+        return current;
+    }
+
+    private synchronized JobStatus start(String type, Function<JobStatus, String> work) {
+        JobStatus running = current;
+        if (running != null && running.isRunning()) {
+            return running;
+        }
+
+        JobStatus status = new JobStatus(jobCounter.incrementAndGet(), type);
+        current = status;
+        executor.submit(() -> {
+            try {
+                String message = work.apply(status);
+                status.finish(status.cancelRequested ? JobStatus.CANCELLED : JobStatus.COMPLETED, message);
+            } catch (Exception e) {
+                status.addError("Lỗi tổng quát: " + e.getMessage());
+                status.finish(JobStatus.FAILED, "Job bị lỗi: " + e.getMessage());
+                e.printStackTrace();
+            }
+            System.out.println("🧩 Job tạo quiz #" + status.getId() + " (" + type + ") " + status.getState() +
+                    ": " + status.getQuestionsCreated() + " câu hỏi, " + status.getLessonsProcessed() + "/" +
+                    status.getTotalLessons() + " bài trong " + status.getElapsedMillis() + " ms");
+        });
+        return status;
+    }
+
+    /**
+     * Trạng thái / tiến độ của một job (được serialize thành JSON cho trang admin)
+     */
+    public static class JobStatus {
+        public static final String RUNNING = "RUNNING";
+        public static final String COMPLETED = "COMPLETED";
+        public static final String CANCELLED = "CANCELLED";
+        public static final String FAILED = "FAILED";
+
+        private static final int MAX_ERRORS = 20;
+
+        private final long id;
+        private final String type;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicInteger totalLessons = new AtomicInteger();
+        private final AtomicInteger lessonsProcessed = new AtomicInteger();
+        private final AtomicInteger lessonsCreated = new AtomicInteger();
+        private final AtomicInteger questionsCreated = new AtomicInteger();
+        private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        private volatile String state = RUNNING;
+        private volatile String message;
+        private volatile long finishedAt;
+        private volatile boolean cancelRequested;
+
+        public JobStatus(long id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+
+        /**
+         * Trạng thái không gắn với job nào, dùng khi gọi đồng bộ (không theo dõi tiến độ)
+         */
+        public static JobStatus detached(String type) {
+            return new JobStatus(0, type);
+        }
+
+        public void setTotalLessons(int total) { totalLessons.set(total); }
+
+        public void lessonProcessed(boolean created) {
+            lessonsProcessed.incrementAndGet();
+            if (created) lessonsCreated.incrementAndGet();
+        }
+
+        public void questionsWritten(int count) { questionsCreated.addAndGet(count); }
+
+        // Tạo quiz theo lô: bài chỉ được tính sau khi lô câu hỏi của nó được ghi
+        public void lessonsCreated(int count) { lessonsCreated.addAndGet(count); }
+
+        public void addError(String error) {
+            if (errors.size() < MAX_ERRORS) errors.add(error);
+        }
+
+        private void finish(String finalState, String finalMessage) {
+            this.message = finalMessage;
+            this.finishedAt = System.currentTimeMillis();
+            this.state = finalState;
+        }
+
+        public long getId() { return id; }
+        public String getType() { return type; }
+        public String getState() { return state; }
+        public String getMessage() { return message; }
+        public boolean isRunning() { return RUNNING.equals(state); }
+        public boolean isCancelRequested() { return cancelRequested; }
+        public int getTotalLessons() { return totalLessons.get(); }
+        public int getLessonsProcessed() { return lessonsProcessed.get(); }
+        public int getLessonsCreated() { return lessonsCreated.get(); }
+        public int getQuestionsCreated() { return questionsCreated.get(); }
+
+        public List<String> getErrors() {
+            synchronized (errors) {
+                return List.copyOf(errors);
+            }
+        }
+
+        public int getPercent() {
+            int total = totalLessons.get();
+            if (total == 0) return isRunning() ? 0 : 100;
+            return (int) Math.min(100, lessonsProcessed.get() * 100L / total);
+        }
+
+        public long getElapsedMillis() {
+            long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+            return end - startedAt;
+        }
+
+        public double getQuestionsPerSecond() {
+            long elapsed = getElapsedMillis();
+            return elapsed > 0 ? questionsCreated.get() * 1000.0 / elapsed : 0;
+        }
+    }
+}
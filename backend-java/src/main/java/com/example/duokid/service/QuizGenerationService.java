@@ -15,7 +15,6 @@ import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Service để tự động tạo quiz questions cho các bài học
@@ -26,13 +25,16 @@ public class QuizGenerationService {
     private final LessonRepository lessonRepository;
     private final QuizQuestionRepository quizQuestionRepository;
     private final VocabularyRepository vocabularyRepository;
+    private final QuizQuestionBatchWriter batchWriter;
 
     public QuizGenerationService(LessonRepository lessonRepository,
                                 QuizQuestionRepository quizQuestionRepository,
-                                VocabularyRepository vocabularyRepository) {
+                                VocabularyRepository vocabularyRepository,
+                                QuizQuestionBatchWriter batchWriter) {
         this.lessonRepository = lessonRepository;
         this.quizQuestionRepository = quizQuestionRepository;
         this.vocabularyRepository = vocabularyRepository;
+        this.batchWriter = batchWriter;
     }
 
     /**
@@ -41,15 +43,32 @@ public class QuizGenerationService {
      * @return Số câu hỏi đã tạo
      */
     public int createQuizForLesson(Lesson lesson) {
+        return createQuizForLesson(lesson, newRun());
+    }
+
+    /**
+     * Tạo quiz cho một lesson, dùng chung từ vựng đã nạp của run (import nhiều bài: một run cho cả lượt import)
+     * @return Số câu hỏi đã tạo
+     */
+    public int createQuizForLesson(Lesson lesson, GenerationRun run) {
         if (lesson == null) return 0;
 
         // Kiểm tra xem đã có quiz chưa
-        List<QuizQuestion> existingQuestions = quizQuestionRepository.findByLesson(lesson);
-        if (!existingQuestions.isEmpty()) {
+        if (lesson.getId() != null && quizQuestionRepository.existsByLessonId(lesson.getId())) {
             return 0; // Đã có quiz rồi
         }
 
-        int created = 0;
+        List<QuizQuestion> questions = buildQuizForLesson(lesson, run);
+        quizQuestionRepository.saveAll(questions);
+        return questions.size();
+    }
+
+    /**
+     * Dựng (chưa lưu) câu hỏi cho một lesson chưa có quiz,
+     * dùng chung từ vựng và DistractorIndex của cả lượt tạo
+     */
+    private List<QuizQuestion> buildQuizForLesson(Lesson lesson, GenerationRun run) {
+        List<QuizQuestion> created = new ArrayList<>();
 
         // Nếu là lesson từ ETS vocabulary, tìm từ vựng liên quan
         if (lesson.getTitle() != null && 
@@ -57,15 +76,15 @@ public class QuizGenerationService {
              lesson.getTitle().contains("LISTENING") || 
              lesson.getTitle().contains("READING"))) {
             
-            List<Vocabulary> relatedVocabs = findVocabulariesForLesson(lesson);
+            List<Vocabulary> relatedVocabs = findVocabulariesForLesson(lesson, run.vocabularies());
             if (!relatedVocabs.isEmpty()) {
-                created = createQuizFromVocabularies(lesson, relatedVocabs);
+                created = buildQuizFromVocabularies(lesson, relatedVocabs, run.distractors());
             }
         }
 
         // Nếu chưa tạo được từ vocabulary, thử tạo từ contentHtml
-        if (created == 0 && lesson.getContentHtml() != null && !lesson.getContentHtml().trim().isEmpty()) {
-            created = createQuizFromContentHtml(lesson);
+        if (created.isEmpty() && lesson.getContentHtml() != null && !lesson.getContentHtml().trim().isEmpty()) {
+            created = buildQuizFromContentHtml(lesson, run.distractors());
         }
 
         return created;
@@ -74,12 +93,10 @@ public class QuizGenerationService {
     /**
      * Tìm từ vựng liên quan đến lesson (cho ETS lessons)
      */
-    private List<Vocabulary> findVocabulariesForLesson(Lesson lesson) {
+    private List<Vocabulary> findVocabulariesForLesson(Lesson lesson, List<Vocabulary> allVocabularies) {
         String title = lesson.getTitle();
         if (title == null) return new ArrayList<>();
 
-        List<Vocabulary> allVocabularies = vocabularyRepository.findAll();
-
         // Nếu là TEST lesson (ví dụ: "LISTENING - TEST 1")
         if (title.contains("TEST")) {
             String[] parts = title.split("TEST");
@@ -127,8 +144,10 @@ public class QuizGenerationService {
     /**
      * Tạo quiz từ danh sách từ vựng
      */
-    private int createQuizFromVocabularies(Lesson lesson, List<Vocabulary> vocabularies) {
-        if (vocabularies == null || vocabularies.isEmpty()) return 0;
+    private List<QuizQuestion> buildQuizFromVocabularies(Lesson lesson, List<Vocabulary> vocabularies,
+                                                         DistractorIndex distractors) {
+        List<QuizQuestion> created = new ArrayList<>();
+        if (vocabularies == null || vocabularies.isEmpty()) return created;
 
         // Chọn ngẫu nhiên tối đa 10 từ vựng để tạo câu hỏi
         List<Vocabulary> selectedVocabs = new ArrayList<>(vocabularies);
@@ -136,19 +155,13 @@ public class QuizGenerationService {
         int maxQuestions = Math.min(10, selectedVocabs.size());
         selectedVocabs = selectedVocabs.subList(0, maxQuestions);
 
-        // Lấy tất cả từ vựng để làm đáp án sai
-        List<Vocabulary> allVocabs = vocabularyRepository.findAll();
+        // Bài chưa có quiz nên chỉ cần tránh trùng với các câu vừa dựng
+        List<String> existingQuestions = new ArrayList<>();
 
-        int created = 0;
         for (Vocabulary vocab : selectedVocabs) {
             try {
                 // Kiểm tra xem đã có câu hỏi này chưa
-                List<QuizQuestion> existing = quizQuestionRepository.findByLesson(lesson).stream()
-                        .filter(q -> q.getQuestion() != null && 
-                                q.getQuestion().contains(vocab.getEnglishWord()))
-                        .toList();
-
-                if (!existing.isEmpty()) continue;
+                if (containsWord(existingQuestions, vocab.getEnglishWord())) continue;
 
                 // Tạo câu hỏi về nghĩa của từ
                 QuizQuestion question = new QuizQuestion();
@@ -158,15 +171,8 @@ public class QuizGenerationService {
                 // Đáp án đúng
                 String correctAnswer = vocab.getVietnameseMeaning();
 
-                // Tạo 3 đáp án sai từ các từ vựng khác
-                List<String> wrongAnswers = allVocabs.stream()
-                        .filter(v -> !v.getId().equals(vocab.getId()) && 
-                                v.getVietnameseMeaning() != null && 
-                                !v.getVietnameseMeaning().equals(correctAnswer))
-                        .map(Vocabulary::getVietnameseMeaning)
-                        .distinct()
-                        .limit(3)
-                        .collect(Collectors.toList());
+                // Tạo 3 đáp án sai từ các từ vựng khác (ưu tiên cùng loại từ, cùng part)
+                List<String> wrongAnswers = distractors.sample(vocab, 3);
 
                 // Đảm bảo có đủ 3 đáp án sai
                 while (wrongAnswers.size() < 3) {
@@ -199,8 +205,8 @@ public class QuizGenerationService {
                         (vocab.getExampleSentence() != null && !vocab.getExampleSentence().trim().isEmpty() ? 
                                 "Ví dụ: " + vocab.getExampleSentence() : ""));
 
-                quizQuestionRepository.save(question);
-                created++;
+                existingQuestions.add(question.getQuestion());
+                created.add(question);
             } catch (Exception e) {
                 System.err.println("Lỗi khi tạo câu hỏi cho từ: " + vocab.getEnglishWord() + " - " + e.getMessage());
             }
@@ -212,37 +218,27 @@ public class QuizGenerationService {
     /**
      * Tạo quiz từ contentHtml của lesson (parse HTML để lấy từ vựng)
      */
-    private int createQuizFromContentHtml(Lesson lesson) {
+    private List<QuizQuestion> buildQuizFromContentHtml(Lesson lesson, DistractorIndex distractors) {
+        List<QuizQuestion> created = new ArrayList<>();
         String contentHtml = lesson.getContentHtml();
-        if (contentHtml == null || contentHtml.trim().isEmpty()) return 0;
+        if (contentHtml == null || contentHtml.trim().isEmpty()) return created;
 
         // Parse HTML để lấy từ vựng
         List<WordMeaning> wordMeanings = extractWordsFromHtml(contentHtml);
-        if (wordMeanings.isEmpty()) return 0;
+        if (wordMeanings.isEmpty()) return created;
 
         // Chọn ngẫu nhiên tối đa 10 từ để tạo câu hỏi
         Collections.shuffle(wordMeanings);
         int maxQuestions = Math.min(10, wordMeanings.size());
         wordMeanings = wordMeanings.subList(0, maxQuestions);
 
-        // Lấy tất cả từ vựng để làm đáp án sai
-        List<Vocabulary> allVocabs = vocabularyRepository.findAll();
-        List<String> allMeanings = allVocabs.stream()
-                .map(Vocabulary::getVietnameseMeaning)
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(Collectors.toList());
+        // Bài chưa có quiz nên chỉ cần tránh trùng với các câu vừa dựng
+        List<String> existingQuestions = new ArrayList<>();
 
-        int created = 0;
         for (WordMeaning wm : wordMeanings) {
             try {
                 // Kiểm tra xem đã có câu hỏi này chưa
-                List<QuizQuestion> existing = quizQuestionRepository.findByLesson(lesson).stream()
-                        .filter(q -> q.getQuestion() != null && 
-                                q.getQuestion().contains(wm.word))
-                        .toList();
-
-                if (!existing.isEmpty()) continue;
+                if (containsWord(existingQuestions, wm.word)) continue;
 
                 // Tạo câu hỏi về nghĩa của từ
                 QuizQuestion question = new QuizQuestion();
@@ -253,11 +249,7 @@ public class QuizGenerationService {
                 String correctAnswer = wm.meaning;
 
                 // Tạo 3 đáp án sai
-                List<String> wrongAnswers = allMeanings.stream()
-                        .filter(m -> !m.equals(correctAnswer))
-                        .distinct()
-                        .limit(3)
-                        .collect(Collectors.toList());
+                List<String> wrongAnswers = distractors.sample(correctAnswer, 3);
 
                 // Đảm bảo có đủ 3 đáp án sai
                 while (wrongAnswers.size() < 3) {
@@ -286,8 +278,8 @@ public class QuizGenerationService {
 
                 question.setExplanation("Từ \"" + wm.word + "\" có nghĩa là \"" + correctAnswer + "\".");
 
-                quizQuestionRepository.save(question);
-                created++;
+                existingQuestions.add(question.getQuestion());
+                created.add(question);
             } catch (Exception e) {
                 System.err.println("Lỗi khi tạo câu hỏi cho từ: " + wm.word + " - " + e.getMessage());
             }
@@ -382,43 +374,147 @@ public class QuizGenerationService {
      * Tạo quiz cho tất cả lessons chưa có quiz
      */
     public QuizGenerationResult createQuizForAllLessons() {
-        int created = 0;
+        return createQuizForAllLessons(QuizGenerationJob.JobStatus.detached(QuizGenerationJob.ALL_LESSONS));
+    }
+
+    /**
+     * Tạo quiz cho tất cả lessons chưa có quiz, báo tiến độ qua status (dùng cho QuizGenerationJob)
+     * - Danh sách bài đã có quiz được đọc một lần, không query lại cho từng bài / từng từ
+     * - Câu hỏi được gom lại và ghi bằng JDBC batch
+     * - Dừng giữa các bài khi status bị yêu cầu hủy
+     */
+    public QuizGenerationResult createQuizForAllLessons(QuizGenerationJob.JobStatus status) {
         int skipped = 0;
-        int totalQuestions = 0;
         List<String> errors = new ArrayList<>();
+        PendingQuiz pending = new PendingQuiz();
 
         try {
             List<Lesson> allLessons = lessonRepository.findAll();
-            
+            Set<Long> lessonsWithQuiz = new HashSet<>(quizQuestionRepository.findLessonIdsWithQuestions());
+            status.setTotalLessons(allLessons.size());
+
+            // Nạp từ vựng và dựng DistractorIndex một lần cho cả lượt
+            GenerationRun run = newRun();
+
             for (Lesson lesson : allLessons) {
+                if (status.isCancelRequested()) {
+                    errors.add("Đã hủy sau " + status.getLessonsProcessed() + "/" + allLessons.size() + " bài học");
+                    break;
+                }
                 try {
                     // Kiểm tra xem đã có quiz chưa
-                    List<QuizQuestion> existing = quizQuestionRepository.findByLesson(lesson);
-                    if (!existing.isEmpty()) {
+                    if (lessonsWithQuiz.contains(lesson.getId())) {
                         skipped++;
+                        status.lessonProcessed(false);
                         continue;
                     }
 
                     // Tạo quiz
-                    int questionsCreated = createQuizForLesson(lesson);
-                    if (questionsCreated > 0) {
-                        created++;
-                        totalQuestions += questionsCreated;
+                    List<QuizQuestion> questions = buildQuizForLesson(lesson, run);
+                    if (!questions.isEmpty()) {
+                        pending.add(questions);
                     } else {
                         errors.add("Không thể tạo quiz cho bài học: " + 
                                 (lesson.getTitle() != null ? lesson.getTitle() : "ID " + lesson.getId()));
                     }
+                    // Bài chỉ được tính là đã tạo quiz khi lô chứa câu hỏi của nó được ghi (xem flush)
+                    status.lessonProcessed(false);
                 } catch (Exception e) {
                     errors.add("Lỗi khi tạo quiz cho bài học " + 
                             (lesson.getTitle() != null ? lesson.getTitle() : "ID " + lesson.getId()) + 
                             ": " + e.getMessage());
+                    status.lessonProcessed(false);
+                }
+
+                if (pending.questions.size() >= batchWriter.getBatchSize()) {
+                    flush(pending, status, errors);
                 }
             }
+            flush(pending, status, errors);
         } catch (Exception e) {
             errors.add("Lỗi tổng quát: " + e.getMessage());
         }
 
-        return new QuizGenerationResult(created, skipped, totalQuestions, errors);
+        return new QuizGenerationResult(pending.lessonsWritten, skipped, pending.questionsWritten, errors);
+    }
+
+    /**
+     * Ghi các câu hỏi đang chờ bằng JDBC batch (một transaction cho cả lô);
+     * lô ghi lỗi thì các bài trong lô không được tính là đã tạo quiz
+     */
+    private void flush(PendingQuiz pending, QuizGenerationJob.JobStatus status, List<String> errors) {
+        if (pending.questions.isEmpty()) return;
+        try {
+            int written = batchWriter.write(pending.questions);
+            pending.lessonsWritten += pending.lessons;
+            pending.questionsWritten += written;
+            status.lessonsCreated(pending.lessons);
+            status.questionsWritten(written);
+        } catch (Exception e) {
+            errors.add("Lỗi khi ghi " + pending.questions.size() + " câu hỏi của " + pending.lessons + " bài học: " + e.getMessage());
+        } finally {
+            pending.questions.clear();
+            pending.lessons = 0;
+        }
+    }
+
+    /**
+     * Câu hỏi đang chờ ghi (và số bài của chúng), cùng số bài / câu hỏi đã ghi xong
+     */
+    private static final class PendingQuiz {
+        private final List<QuizQuestion> questions = new ArrayList<>();
+        private int lessons;
+        private int lessonsWritten;
+        private int questionsWritten;
+
+        void add(List<QuizQuestion> lessonQuestions) {
+            questions.addAll(lessonQuestions);
+            lessons++;
+        }
+    }
+
+    private static boolean containsWord(List<String> questions, String word) {
+        if (word == null) return false;
+        for (String q : questions) {
+            if (q.contains(word)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Bắt đầu một lượt tạo quiz: từ vựng chỉ được nạp khi bài đầu tiên cần tới
+     */
+    public GenerationRun newRun() {
+        return new GenerationRun(vocabularyRepository);
+    }
+
+    /**
+     * Từ vựng và DistractorIndex dùng chung trong một lượt tạo quiz (nạp tối đa một lần, dùng trong một luồng)
+     */
+    public static final class GenerationRun {
+        private final VocabularyRepository vocabularyRepository;
+        private List<Vocabulary> vocabularies;
+        private DistractorIndex distractors;
+
+        private GenerationRun(VocabularyRepository vocabularyRepository) {
+            this.vocabularyRepository = vocabularyRepository;
+        }
+
+        private List<Vocabulary> vocabularies() {
+            load();
+            return vocabularies;
+        }
+
+        private DistractorIndex distractors() {
+            load();
+            return distractors;
+        }
+
+        private void load() {
+            if (vocabularies != null) return;
+            vocabularies = vocabularyRepository.findAll();
+            distractors = DistractorIndex.build(vocabularies);
+        }
     }
 
     /**
@@ -0,0 +1,65 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.QuizQuestion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ghi câu hỏi quiz hàng loạt bằng JDBC batch (mỗi lô một transaction)
+ * - Dùng khi tạo quiz cho nhiều bài học cùng lúc, thay cho save() từng câu
+ * - Câu hỏi phải có lesson đã được lưu (có id)
+ * - Ghi xong thì xóa cache cấp 2 của câu hỏi quiz vì Hibernate không thấy các câu INSERT này
+ */
+@Component
+public class QuizQuestionBatchWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO quiz_questions (lesson_id, question, optiona, optionb, optionc, optiond, " +
+            "correct_option, explanation) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ContentCacheService contentCache;
+    private final int batchSize;
+
+    public QuizQuestionBatchWriter(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   ContentCacheService contentCache,
+                                   @Value("${quiz.generation.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.contentCache = contentCache;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Ghi danh sách câu hỏi, trả về số câu đã ghi
+     */
+    public int write(List<QuizQuestion> questions) {
+        if (questions == null || questions.isEmpty()) return 0;
+        List<QuizQuestion> batch = new ArrayList<>(questions);
+
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batchSize, (ps, q) -> {
+                    ps.setLong(1, q.getLesson().getId());
+                    ps.setString(2, q.getQuestion());
+                    ps.setString(3, q.getOptionA());
+                    ps.setString(4, q.getOptionB());
+                    ps.setString(5, q.getOptionC());
+                    ps.setString(6, q.getOptionD());
+                    ps.setString(7, q.getCorrectOption());
+                    ps.setString(8, q.getExplanation());
+                }));
+        contentCache.evictQuizQuestions();
+        return batch.size();
+    }
+}
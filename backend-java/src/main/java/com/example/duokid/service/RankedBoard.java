@@ -0,0 +1,191 @@
+package com.example.duokid.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Bảng xếp hạng trong bộ nhớ dựa trên skip list có đếm khoảng cách (indexable skip list)
+ * - Sắp xếp theo điểm giảm dần, cùng điểm thì id nhỏ hơn đứng trước
+ * - put / remove / rankOf là O(log n), top(k) là O(log n + k)
+ * - Mỗi id giữ kèm một giá trị hiển thị (V) để trang xếp hạng không cần query database
+ */
+public final class RankedBoard<V> {
+
+    private static final int MAX_LEVEL = 24;
+
+    private final Node<V> head = new Node<>(0L, 0L, null, MAX_LEVEL);
+    private final Map<Long, Node<V>> nodes = new HashMap<>();
+    private int level = 1;
+
+    /**
+     * Thêm hoặc cập nhật điểm và giá trị hiển thị của một id
+     */
+    public synchronized void put(Long id, long score, V value) {
+        Node<V> existing = nodes.get(id);
+        if (existing != null) {
+            if (existing.score == score) {
+                existing.value = value;
+                return;
+            }
+            unlink(existing);
+        }
+        nodes.put(id, insert(id, score, value));
+    }
+
+    public synchronized void remove(Long id) {
+        Node<V> node = nodes.remove(id);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Xóa toàn bộ rồi nạp lại (dùng khi seed từ database)
+     */
+    public synchronized void clear() {
+        nodes.clear();
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+            head.span[i] = 0;
+        }
+        level = 1;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized V get(Long id) {
+        Node<V> node = nodes.get(id);
+        return node != null ? node.value : null;
+    }
+
+    /**
+     * Hạng của id (bắt đầu từ 1), 0 nếu id không có trong bảng
+     */
+    public synchronized int rankOf(Long id) {
+        Node<V> target = nodes.get(id);
+        if (target == null) return 0;
+
+        int rank = 0;
+        Node<V> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && !before(target, x.next[i])) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x == target) return rank;
+        }
+        return 0;
+    }
+
+    /**
+     * k giá trị đứng đầu bảng theo thứ tự hạng
+     */
+    public synchronized List<V> top(int k) {
+        List<V> result = new ArrayList<>(Math.min(k, nodes.size()));
+        for (Node<V> x = head.next[0]; x != null && result.size() < k; x = x.next[0]) {
+            result.add(x.value);
+        }
+        return result;
+    }
+
+    private Node<V> insert(Long id, long score, V value) {
+        @SuppressWarnings("unchecked")
+        Node<V>[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+
+        Node<V> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && before(x.next[i], score, id)) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                update[i].span[i] = nodes.size();
+            }
+            level = nodeLevel;
+        }
+
+        Node<V> node = new Node<>(id, score, value, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        return node;
+    }
+
+    private void unlink(Node<V> node) {
+        Node<V> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i] != node && before(x.next[i], node.score, node.id)) {
+                x = x.next[i];
+            }
+            if (x.next[i] == node) {
+                x.span[i] += node.span[i] - 1;
+                x.next[i] = node.next[i];
+            } else {
+                x.span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+    }
+
+    /**
+     * a đứng trước (score, id) trong bảng
+     */
+    private static boolean before(Node<?> a, long score, long id) {
+        return a.score > score || (a.score == score && a.id < id);
+    }
+
+    /**
+     * target đứng trước a (dùng khi tính hạng: dừng khi a đã vượt qua target)
+     */
+    private static boolean before(Node<?> target, Node<?> a) {
+        return before(target, a.score, a.id);
+    }
+
+    private static int randomLevel() {
+        int lvl = 1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (lvl < MAX_LEVEL && random.nextInt(4) == 0) {
+            lvl++;
+        }
+        return lvl;
+    }
+
+    private static final class Node<V> {
+        final long id;
+        final long score;
+        V value;
+        final Node<V>[] next;
+        final int[] span;
+
+        @SuppressWarnings("unchecked")
+        Node(long id, long score, V value, int level) {
+            this.id = id;
+            this.score = score;
+            this.value = value;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+}
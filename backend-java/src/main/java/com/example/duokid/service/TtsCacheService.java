@@ -0,0 +1,350 @@
+package com.example.duokid.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Cache audio TTS phía Java, khóa là SHA-256 của text đã chuẩn hóa (NFC, bỏ khoảng trắng thừa, chữ thường)
+ * - Audio đã tạo được lưu trên đĩa (tts.cache.dir), tổng dung lượng giới hạn bởi tts.cache.max-disk-mb,
+ *   vượt quá thì xóa file ít được dùng nhất (LRU)
+ * - File nhỏ được giữ thêm trong bộ nhớ (LRU, tts.cache.max-memory-mb) để từ vựng hay đọc không phải đọc đĩa
+ * - Nhiều request cùng một text lúc chưa có cache chỉ gọi Python service một lần, các request còn lại chờ chung kết quả
+ * - Audio phục vụ tại /tts/audio/{key}.mp3 (xem TtsController): nội dung theo key không đổi nên cache lâu dài
+ */
+@Service
+public class TtsCacheService {
+
+    public static final String AUDIO_URL_PREFIX = "/tts/audio/";
+    public static final String AUDIO_EXTENSION = ".mp3";
+
+    private static final Pattern KEY = Pattern.compile("^[0-9a-f]{64}$");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final AiPythonClient aiPythonClient;
+    private final Path dir;
+    private final long maxDiskBytes;
+    private final long maxMemoryBytes;
+    private final long maxMemoryEntryBytes;
+
+    // Cả hai LinkedHashMap theo thứ tự truy cập: phần tử đầu là phần tử lâu chưa dùng nhất
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private long diskBytes;
+    private long memoryBytes;
+
+    private final Map<String, Mono<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public TtsCacheService(AiPythonClient aiPythonClient,
+                           @Value("${tts.cache.dir:./data/tts}") String dir,
+                           @Value("${tts.cache.max-disk-mb:512}") long maxDiskMb,
+                           @Value("${tts.cache.max-memory-mb:32}") long maxMemoryMb,
+                           @Value("${tts.cache.max-memory-entry-kb:256}") long maxMemoryEntryKb) {
+        this.aiPythonClient = aiPythonClient;
+        this.dir = Paths.get(dir).toAbsolutePath().normalize();
+        this.maxDiskBytes = Math.max(1, maxDiskMb) * 1024 * 1024;
+        this.maxMemoryBytes = Math.max(0, maxMemoryMb) * 1024 * 1024;
+        this.maxMemoryEntryBytes = Math.max(0, maxMemoryEntryKb) * 1024;
+
+        try {
+            Files.createDirectories(this.dir);
+        } catch (IOException e) {
+            System.err.println("Could not create TTS cache directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Dựng lại chỉ mục LRU từ các file đã có trên đĩa (file sửa gần nhất coi như dùng gần nhất)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(dir)) {
+            stream.filter(file -> KEY.matcher(keyOfFile(file)).matches()).forEach(files::add);
+        } catch (IOException e) {
+            System.err.println("Could not read TTS cache directory: " + e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparing(TtsCacheService::lastModified));
+
+        synchronized (diskIndex) {
+            diskIndex.clear();
+            diskBytes = 0;
+            for (Path file : files) {
+                try {
+                    long size = Files.size(file);
+                    diskIndex.put(keyOfFile(file), size);
+                    diskBytes += size;
+                } catch (IOException e) {
+                    // file vừa bị xóa: bỏ qua
+                }
+            }
+            evictFromDisk();
+        }
+        System.out.println("🔊 Đã nạp cache TTS: " + diskIndex.size() + " file, " + diskBytes / 1024 + " KB");
+    }
+
+    /**
+     * URL audio (/tts/audio/{key}.mp3) đọc text; rỗng nếu text trống hoặc Python service không tạo được
+     */
+    public Mono<String> getAudioUrl(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) return Mono.empty();
+
+        String key = keyOf(normalized);
+        if (contains(key)) {
+            return Mono.just(urlOf(key));
+        }
+
+        boolean[] created = new boolean[1];
+        Mono<String> pending = inFlight.computeIfAbsent(key, k -> {
+            created[0] = true;
+            misses.incrementAndGet();
+            return aiPythonClient.synthesizeSpeech(normalized)
+                    // ghi file là IO chặn: không chạy trên luồng event loop của Netty
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(bytes -> {
+                        store(k, bytes);
+                        return urlOf(k);
+                    })
+                    .doFinally(signal -> inFlight.remove(k))
+                    .cache();
+        });
+        if (!created[0]) coalesced.incrementAndGet();
+        return pending;
+    }
+
+    /**
+     * Text đã có audio trong cache hay chưa (không gọi Python service)
+     */
+    public boolean isCached(String text) {
+        String normalized = normalize(text);
+        return !normalized.isEmpty() && contains(keyOf(normalized));
+    }
+
+    /**
+     * Nội dung audio theo key; đọc từ bộ nhớ trước, sau đó tới đĩa
+     */
+    public Optional<byte[]> getAudio(String key) {
+        if (key == null || !KEY.matcher(key).matches()) return Optional.empty();
+
+        synchronized (memory) {
+            byte[] bytes = memory.get(key);
+            if (bytes != null) {
+                memoryHits.incrementAndGet();
+                return Optional.of(bytes);
+            }
+        }
+
+        synchronized (diskIndex) {
+            if (diskIndex.get(key) == null) return Optional.empty();
+        }
+        Path file = fileOf(key);
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            diskHits.incrementAndGet();
+            remember(key, bytes);
+            return Optional.of(bytes);
+        } catch (NoSuchFileException e) {
+            forget(key);
+            return Optional.empty();
+        } catch (IOException e) {
+            System.err.println("Could not read cached TTS audio " + key + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String nfc = Normalizer.normalize(text, Normalizer.Form.NFC);
+        return WHITESPACE.matcher(nfc).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    public static String keyOf(String normalizedText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalizedText.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String urlOf(String key) {
+        return AUDIO_URL_PREFIX + key + AUDIO_EXTENSION;
+    }
+
+    public CacheStats getStats() {
+        int diskEntries;
+        long diskSize;
+        synchronized (diskIndex) {
+            diskEntries = diskIndex.size();
+            diskSize = diskBytes;
+        }
+        int memoryEntries;
+        long memorySize;
+        synchronized (memory) {
+            memoryEntries = memory.size();
+            memorySize = memoryBytes;
+        }
+        return new CacheStats(diskEntries, diskSize, memoryEntries, memorySize, inFlight.size(),
+                memoryHits.get(), diskHits.get(), misses.get(), coalesced.get(), evictions.get());
+    }
+
+    private boolean contains(String key) {
+        synchronized (memory) {
+            if (memory.containsKey(key)) return true;
+        }
+        synchronized (diskIndex) {
+            return diskIndex.containsKey(key);
+        }
+    }
+
+    private void store(String key, byte[] bytes) {
+        Path target = fileOf(key);
+        try {
+            Path tmp = Files.createTempFile(dir, "tts-", ".tmp");
+            try {
+                Files.write(tmp, bytes);
+                try {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            synchronized (diskIndex) {
+                Long previous = diskIndex.put(key, (long) bytes.length);
+                diskBytes += bytes.length - (previous != null ? previous : 0);
+                evictFromDisk();
+            }
+        } catch (IOException e) {
+            // không ghi được đĩa: vẫn phục vụ được từ bộ nhớ
+            System.err.println("Could not write cached TTS audio " + key + ": " + e.getMessage());
+        }
+        remember(key, bytes);
+    }
+
+    /**
+     * Xóa file lâu chưa dùng nhất tới khi tổng dung lượng về dưới giới hạn (gọi khi đang giữ khóa diskIndex)
+     */
+    private void evictFromDisk() {
+        Iterator<Map.Entry<String, Long>> it = diskIndex.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            diskBytes -= eldest.getValue();
+            evictions.incrementAndGet();
+            try {
+                Files.deleteIfExists(fileOf(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("Could not delete cached TTS audio " + eldest.getKey() + ": " + e.getMessage());
+            }
+            synchronized (memory) {
+                byte[] bytes = memory.remove(eldest.getKey());
+                if (bytes != null) memoryBytes -= bytes.length;
+            }
+        }
+    }
+
+    private void remember(String key, byte[] bytes) {
+        if (bytes.length > maxMemoryEntryBytes || bytes.length > maxMemoryBytes) return;
+        synchronized (memory) {
+            byte[] previous = memory.put(key, bytes);
+            memoryBytes += bytes.length - (previous != null ? previous.length : 0);
+            Iterator<byte[]> it = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                memoryBytes -= it.next().length;
+                it.remove();
+            }
+        }
+    }
+
+    private void forget(String key) {
+        synchronized (diskIndex) {
+            Long size = diskIndex.remove(key);
+            if (size != null) diskBytes -= size;
+        }
+    }
+
+    private Path fileOf(String key) {
+        return dir.resolve(key + AUDIO_EXTENSION);
+    }
+
+    private static String keyOfFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(AUDIO_EXTENSION) ? name.substring(0, name.length() - AUDIO_EXTENSION.length()) : "";
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /**
+     * Số liệu cache TTS (được serialize thành JSON cho trang admin)
+     */
+    public static class CacheStats {
+        private final int diskEntries;
+        private final long diskBytes;
+        private final int memoryEntries;
+        private final long memoryBytes;
+        private final int inFlight;
+        private final long memoryHits;
+        private final long diskHits;
+        private final long misses;
+        private final long coalesced;
+        private final long evictions;
+
+        CacheStats(int diskEntries, long diskBytes, int memoryEntries, long memoryBytes, int inFlight,
+                   long memoryHits, long diskHits, long misses, long coalesced, long evictions) {
+            this.diskEntries = diskEntries;
+            this.diskBytes = diskBytes;
+            this.memoryEntries = memoryEntries;
+            this.memoryBytes = memoryBytes;
+            this.inFlight = inFlight;
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.coalesced = coalesced;
+            this.evictions = evictions;
+        }
+
+        public int getDiskEntries() { return diskEntries; }
+        public long getDiskBytes() { return diskBytes; }
+        public int getMemoryEntries() { return memoryEntries; }
+        public long getMemoryBytes() { return memoryBytes; }
+        public int getInFlight() { return inFlight; }
+        public long getMemoryHits() { return memoryHits; }
+        public long getDiskHits() { return diskHits; }
+        public long getMisses() { return misses; }
+        public long getCoalesced() { return coalesced; }
+        public long getEvictions() { return evictions; }
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.Vocabulary;
+import com.example.duokid.repo.VocabularyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tạo sẵn audio TTS cho từ vựng của bài học (englishWord và exampleSentence) để học sinh bấm loa không phải chờ
+ * - Bài học mới tạo (GateLessonService, VocabularyToLessonService) tự đưa từ vựng vào hàng đợi
+ * - resume() / getCoverage() chỉ xét từ vựng thuộc bài học hiện có (LessonVocabularyScope), không phải cả bảng
+ * - Luồng nền gọi Python service qua TtsCacheService, tối đa tts.prewarm.concurrency request cùng lúc
+ * - Text đã có trong cache TTS được bỏ qua, nên chạy lại (resume()) sau khi khởi động lại / hủy / AI lỗi
+ *   chỉ tạo phần còn thiếu
+ * - AI service không sẵn sàng (cầu dao mở) thì tạm dừng, phần còn lại giữ trong hàng đợi
+ */
+@Component
+public class TtsPrewarmJob {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final TtsCacheService ttsCacheService;
+    private final AiPythonClient aiPythonClient;
+    private final VocabularyRepository vocabularyRepository;
+    private final LessonCatalog lessonCatalog;
+    private final int concurrency;
+
+    // Text đã chuẩn hóa, chờ tạo audio (giữ thứ tự đưa vào, không trùng)
+    private final Set<String> queue = new LinkedHashSet<>();
+    // Lô đang được tạo audio (đã lấy khỏi hàng đợi nhưng chưa có trong cache)
+    private final Set<String> inProgress = new HashSet<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tts-prewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile PrewarmStatus current = new PrewarmStatus();
+    private boolean draining;
+
+    public TtsPrewarmJob(TtsCacheService ttsCacheService,
+                         AiPythonClient aiPythonClient,
+                         VocabularyRepository vocabularyRepository,
+                         LessonCatalog lessonCatalog,
+                         @Value("${tts.prewarm.concurrency:4}") int concurrency) {
+        this.ttsCacheService = ttsCacheService;
+        this.aiPythonClient = aiPythonClient;
+        this.vocabularyRepository = vocabularyRepository;
+        this.lessonCatalog = lessonCatalog;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Đưa từ và câu ví dụ của các bài học vừa tạo vào hàng đợi
+     */
+    public void enqueueVocabulary(Collection<Vocabulary> vocabularies) {
+        List<String> texts = new ArrayList<>(vocabularies.size() * 2);
+        for (Vocabulary vocabulary : vocabularies) {
+            texts.add(vocabulary.getEnglishWord());
+            texts.add(vocabulary.getExampleSentence());
+        }
+        enqueue(texts);
+    }
+
+    /**
+     * Chạy tiếp cho toàn bộ từ vựng thuộc bài học: chỉ những text chưa có trong cache được đưa vào hàng đợi
+     */
+    public PrewarmStatus resume() {
+        enqueue(lessonSpeechTexts());
+        return current;
+    }
+
+    /**
+     * Hủy: bỏ các text còn trong hàng đợi, chỉ chờ các request đang chạy dở
+     * @return false nếu không có gì đang chạy
+     */
+    public boolean cancel() {
+        synchronized (queue) {
+            if (!draining && queue.isEmpty()) return false;
+            queue.clear();
+            current.cancelRequested = true;
+            return true;
+        }
+    }
+
+    public PrewarmStatus getStatus() {
+        return current;
+    }
+
+    /**
+     * Tỉ lệ text (từ + câu ví dụ, không trùng) của từ vựng bài học đã có audio trong cache
+     */
+    public Coverage getCoverage() {
+        Set<String> texts = new HashSet<>();
+        for (String text : lessonSpeechTexts()) {
+            addNormalized(texts, text);
+        }
+        int cached = 0;
+        for (String text : texts) {
+            if (ttsCacheService.isCached(text)) cached++;
+        }
+        return new Coverage(texts.size(), cached);
+    }
+
+    /**
+     * Từ và câu ví dụ của từ vựng thuộc các bài học hiện có
+     */
+    private List<String> lessonSpeechTexts() {
+        LessonVocabularyScope scope = LessonVocabularyScope.of(lessonCatalog.getLessons());
+        List<String> texts = new ArrayList<>();
+        if (scope.isEmpty()) return texts;
+        for (Object[] row : vocabularyRepository.findSpeechTextsWithSource()) {
+            if (!scope.contains((String) row[0], (Integer) row[1], (String) row[2])) continue;
+            texts.add((String) row[3]);
+            texts.add((String) row[4]);
+        }
+        return texts;
+    }
+
+    private void enqueue(Collection<String> texts) {
+        int added = 0;
+        synchronized (queue) {
+            for (String text : texts) {
+                String normalized = TtsCacheService.normalize(text);
+                if (normalized.isEmpty() || inProgress.contains(normalized) || ttsCacheService.isCached(normalized)) continue;
+                if (queue.add(normalized)) added++;
+            }
+            if (queue.isEmpty() || draining) {
+                if (draining) current.queued.addAndGet(added);
+                return;
+            }
+            draining = true;
+            current = new PrewarmStatus(queue.size());
+        }
+        PrewarmStatus status = current;
+        executor.submit(() -> drain(status));
+    }
+
+    private void drain(PrewarmStatus status) {
+        try {
+            while (true) {
+                List<String> batch = new ArrayList<>(BATCH_SIZE);
+                synchronized (queue) {
+                    inProgress.clear();
+                    if (!aiPythonClient.isAvailable()) {
+                        status.finish(PrewarmStatus.PAUSED, "AI service chưa sẵn sàng, còn " + queue.size() +
+                                " text trong hàng đợi (chạy lại để tiếp tục)");
+                        draining = false;
+                        return;
+                    }
+                    Iterator<String> it = queue.iterator();
+                    while (batch.size() < BATCH_SIZE && it.hasNext()) {
+                        String text = it.next();
+                        batch.add(text);
+                        inProgress.add(text);
+                        it.remove();
+                    }
+                    if (batch.isEmpty()) {
+                        status.finish(status.cancelRequested ? PrewarmStatus.CANCELLED : PrewarmStatus.COMPLETED,
+                                "Đã tạo " + status.getGenerated() + " audio, lỗi " + status.getFailed());
+                        draining = false;
+                        return;
+                    }
+                }
+
+                Flux.fromIterable(batch)
+                        .takeWhile(text -> !status.cancelRequested)
+                        .flatMap(text -> ttsCacheService.getAudioUrl(text)
+                                .map(url -> true)
+                                .defaultIfEmpty(false)
+                                .onErrorReturn(false)
+                                .doOnNext(ok -> status.processed(ok)), concurrency)
+                        .blockLast();
+            }
+        } catch (Exception e) {
+            synchronized (queue) {
+                inProgress.clear();
+                status.finish(PrewarmStatus.FAILED, "Job bị lỗi: " + e.getMessage());
+                draining = false;
+            }
+            e.printStackTrace();
+        } finally {
+            System.out.println("🔊 Tạo sẵn audio TTS " + status.getState() + ": " + status.getGenerated() + "/" +
+                    status.getQueued() + " text, lỗi " + status.getFailed() + ", " + status.getElapsedMillis() + " ms");
+        }
+    }
+
+    private static void addNormalized(Set<String> texts, String text) {
+        String normalized = TtsCacheService.normalize(text);
+        if (!normalized.isEmpty()) texts.add(normalized);
+    }
+
+    /**
+     * Trạng thái lần chạy gần nhất (được serialize thành JSON cho trang admin)
+     */
+    public static class PrewarmStatus {
+        public static final String IDLE = "IDLE";
+        public static final String RUNNING = "RUNNING";
+        public static final String COMPLETED = "COMPLETED";
+        public static final String PAUSED = "PAUSED";
+        public static final String CANCELLED = "CANCELLED";
+        public static final String FAILED = "FAILED";
+
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger generated = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile String state;
+        private volatile String message;
+        private volatile long finishedAt;
+        private volatile boolean cancelRequested;
+
+        PrewarmStatus() {
+            this.state = IDLE;
+            this.finishedAt = startedAt;
+        }
+
+        PrewarmStatus(int queued) {
+            this.state = RUNNING;
+            this.queued.set(queued);
+        }
+
+        private void processed(boolean ok) {
+            if (ok) generated.incrementAndGet();
+            else failed.incrementAndGet();
+        }
+
+        private void finish(String finalState, String finalMessage) {
+            this.message = finalMessage;
+            this.finishedAt = System.currentTimeMillis();
+            this.state = finalState;
+        }
+
+        public String getState() { return state; }
+        public String getMessage() { return message; }
+        public boolean isRunning() { return RUNNING.equals(state); }
+        public int getQueued() { return queued.get(); }
+        public int getGenerated() { return generated.get(); }
+        public int getFailed() { return failed.get(); }
+
+        public int getPercent() {
+            int total = queued.get();
+            if (total == 0) return isRunning() ? 0 : 100;
+            return (int) Math.min(100, (generated.get() + failed.get()) * 100L / total);
+        }
+
+        public long getElapsedMillis() {
+            long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+            return end - startedAt;
+        }
+    }
+
+    /**
+     * Độ phủ cache TTS trên từ vựng bài học
+     */
+    public static class Coverage {
+        private final int totalTexts;
+        private final int cachedTexts;
+
+        public Coverage(int totalTexts, int cachedTexts) {
+            this.totalTexts = totalTexts;
+            this.cachedTexts = cachedTexts;
+        }
+
+        public int getTotalTexts() { return totalTexts; }
+        public int getCachedTexts() { return cachedTexts; }
+
+        public double getPercent() {
+            return totalTexts > 0 ? Math.round(cachedTexts * 1000.0 / totalTexts) / 10.0 : 100.0;
+        }
+    }
+}
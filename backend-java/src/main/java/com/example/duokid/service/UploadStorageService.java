@@ -0,0 +1,282 @@
+package com.example.duokid.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lưu ảnh upload (ảnh chat, avatar) vào thư mục cấu hình được (upload.dir), không ghi vào src/main/resources
+ * - Tên file là SHA-256 của nội dung: cùng một ảnh upload nhiều lần chỉ lưu một bản, URL không bao giờ đổi nội dung
+ *   nên có thể cache lâu dài (xem UploadController)
+ * - Đuôi file lấy từ định dạng ảnh đọc được trong nội dung (JPG, PNG, GIF), không lấy từ tên file client gửi lên:
+ *   file khác (x.html, x.svg gửi kèm image/png) bị từ chối, không bao giờ được phục vụ như trang web cùng domain
+ * - Ảnh thu nhỏ (JPEG, cạnh dài tối đa upload.thumbnail-size) được tạo ở luồng nền, chưa có thì phục vụ ảnh gốc
+ */
+@Service
+public class UploadStorageService {
+
+    public static final String CHAT = "chat";
+    public static final String AVATARS = "avatars";
+
+    private static final String URL_PREFIX = "/uploads/";
+    private static final String THUMBNAIL_DIR = "thumbs";
+    private static final Set<String> CATEGORIES = Set.of(CHAT, AVATARS);
+    private static final Pattern STORED_URL = Pattern.compile("^/uploads/([a-z]+)/([0-9a-f]{64})\\.(jpg|png|gif)$");
+    private static final Pattern SAFE_NAME = Pattern.compile("^[A-Za-z0-9][A-Za-z0-9._-]{0,199}$");
+    // Tên định dạng của ImageIO reader -> đuôi file được lưu; định dạng khác (bmp, wbmp, ...) bị từ chối
+    private static final Map<String, String> IMAGE_EXTENSIONS = Map.of("jpeg", "jpg", "png", "png", "gif", "gif");
+    private static final Set<String> SERVED_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "webp");
+
+    private final Path root;
+    private final Path legacyRoot;
+    private final int thumbnailSize;
+    private final ExecutorService thumbnailExecutor;
+    private final Set<String> pendingThumbnails = ConcurrentHashMap.newKeySet();
+
+    public UploadStorageService(@Value("${upload.dir:./data/uploads}") String dir,
+                                @Value("${upload.legacy-dir:src/main/resources/static/uploads}") String legacyDir,
+                                @Value("${upload.thumbnail-size:320}") int thumbnailSize,
+                                @Value("${upload.thumbnail-threads:2}") int thumbnailThreads) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.legacyRoot = Paths.get(legacyDir).toAbsolutePath().normalize();
+        this.thumbnailSize = Math.max(32, thumbnailSize);
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.thumbnailExecutor = Executors.newFixedThreadPool(Math.max(1, thumbnailThreads), runnable -> {
+            Thread thread = new Thread(runnable, "upload-thumbnail-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            for (String category : CATEGORIES) {
+                Files.createDirectories(root.resolve(category).resolve(THUMBNAIL_DIR));
+            }
+        } catch (IOException e) {
+            System.err.println("Could not create upload directory: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lưu file upload, trả về URL của ảnh gốc (/uploads/{category}/{sha256}.{jpg|png|gif})
+     * @throws IOException nếu nội dung không phải ảnh JPG, PNG hoặc GIF
+     */
+    public String store(MultipartFile file, String category) throws IOException {
+        Path dir = categoryDir(category);
+        Path tmp = Files.createTempFile(dir, "upload-", ".tmp");
+        try {
+            // Multipart đã nằm trên đĩa: transferTo(File) đổi tên file tạm khi cùng ổ đĩa, không chép lại dữ liệu
+            file.transferTo(tmp.toFile());
+
+            String name = sha256(tmp) + "." + imageExtensionOf(tmp);
+            Path target = dir.resolve(name);
+            if (!Files.exists(target)) {
+                try {
+                    Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            scheduleThumbnail(category, name);
+            return URL_PREFIX + category + "/" + name;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * URL ảnh thu nhỏ của một ảnh đã lưu; URL không phải do store() tạo ra thì trả về nguyên URL đó
+     */
+    public static String thumbnailUrl(String url) {
+        if (url == null) return null;
+        Matcher m = STORED_URL.matcher(url);
+        if (!m.matches()) return url;
+        return URL_PREFIX + m.group(1) + "/" + THUMBNAIL_DIR + "/" + m.group(2) + ".jpg";
+    }
+
+    /**
+     * Dùng trong template: ${@uploadStorageService.thumbnailOf(url)}
+     */
+    public String thumbnailOf(String url) {
+        return thumbnailUrl(url);
+    }
+
+    /**
+     * File ảnh gốc trong thư mục upload
+     */
+    public Optional<Path> resolve(String category, String filename) {
+        if (!CATEGORIES.contains(category) || !isImageName(filename)) return Optional.empty();
+        Path file = root.resolve(category).resolve(filename);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    /**
+     * File ảnh thu nhỏ; nếu chưa tạo xong thì trả về ảnh gốc cùng hash
+     */
+    public Optional<Path> resolveThumbnail(String category, String filename) {
+        if (!CATEGORIES.contains(category) || !isImageName(filename)) return Optional.empty();
+        Path thumbnail = root.resolve(category).resolve(THUMBNAIL_DIR).resolve(filename);
+        if (Files.isRegularFile(thumbnail)) return Optional.of(thumbnail);
+
+        String hash = filename.contains(".") ? filename.substring(0, filename.indexOf('.')) : filename;
+        try (DirectoryStream<Path> originals = Files.newDirectoryStream(root.resolve(category), hash + ".*")) {
+            for (Path original : originals) {
+                if (isImageName(original.getFileName().toString())) return Optional.of(original);
+            }
+        } catch (IOException e) {
+            // không đọc được thư mục: coi như không có file
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * File upload theo cách cũ (tên ngẫu nhiên trong src/main/resources/static/uploads)
+     */
+    public Optional<Path> resolveLegacy(String category, String filename) {
+        if (!SAFE_NAME.matcher(category).matches() || !isImageName(filename)) return Optional.empty();
+        Path file = legacyRoot.resolve(category).resolve(filename).normalize();
+        return file.startsWith(legacyRoot) && Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    private void scheduleThumbnail(String category, String name) {
+        String hash = name.substring(0, name.indexOf('.'));
+        Path source = root.resolve(category).resolve(name);
+        Path target = root.resolve(category).resolve(THUMBNAIL_DIR).resolve(hash + ".jpg");
+        if (Files.exists(target) || !pendingThumbnails.add(target.toString())) return;
+
+        thumbnailExecutor.submit(() -> {
+            try {
+                writeThumbnail(source, target);
+            } catch (Exception e) {
+                System.err.println("Could not create thumbnail for " + name + ": " + e.getMessage());
+            } finally {
+                pendingThumbnails.remove(target.toString());
+            }
+        });
+    }
+
+    private void writeThumbnail(Path source, Path target) throws IOException {
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (image == null) return; // định dạng ImageIO không đọc được: dùng ảnh gốc
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) thumbnailSize / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+
+        // Thu nhỏ từng nửa một để ảnh không bị răng cưa khi giảm kích thước nhiều lần
+        BufferedImage current = toRgb(image, width, height);
+        while (width / 2 >= targetWidth && height / 2 >= targetHeight) {
+            width /= 2;
+            height /= 2;
+            current = toRgb(current, width, height);
+        }
+        if (width != targetWidth || height != targetHeight) {
+            current = toRgb(current, targetWidth, targetHeight);
+        }
+
+        Path tmp = Files.createTempFile(target.getParent(), "thumb-", ".tmp");
+        try {
+            if (!ImageIO.write(current, "jpg", tmp.toFile())) return;
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Vẽ lại ảnh ở kích thước mới trên nền trắng (JPEG không có kênh trong suốt)
+     */
+    private static BufferedImage toRgb(BufferedImage source, int width, int height) {
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    private Path categoryDir(String category) {
+        if (!CATEGORIES.contains(category)) {
+            throw new IllegalArgumentException("Unknown upload category: " + category);
+        }
+        return root.resolve(category);
+    }
+
+    /**
+     * Đuôi file theo định dạng ảnh đọc được từ các byte đầu của file (ImageIO), không tin tên file / Content-Type của client
+     */
+    private static String imageExtensionOf(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            while (readers != null && readers.hasNext()) {
+                ImageReader reader = readers.next();
+                try {
+                    String extension = IMAGE_EXTENSIONS.get(reader.getFormatName().toLowerCase(Locale.ROOT));
+                    if (extension != null) return extension;
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+        throw new IOException("File phải là ảnh JPG, PNG hoặc GIF");
+    }
+
+    /**
+     * Chỉ phục vụ file có đuôi ảnh: file lạ trong thư mục upload (vd. .html từ bản cũ) không được trả về
+     */
+    private static boolean isImageName(String filename) {
+        if (!SAFE_NAME.matcher(filename).matches()) return false;
+        String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return filename.contains(".") && SERVED_EXTENSIONS.contains(extension);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -1,14 +1,11 @@
 package com.example.duokid.service;
 
-import com.example.duokid.model.ShopTransaction;
 import com.example.duokid.model.User;
-import com.example.duokid.repo.ShopTransactionRepository;
 import com.example.duokid.repo.UserRepository;
 import org.springframework.security.crypto.bcrypt.BCrypt;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Service
@@ -16,16 +13,22 @@ public class UserService {
 
     private final UserRepository userRepo;
     private final DailyGoalService dailyGoalService;
-    private final ShopTransactionRepository shopTxRepo;
+    private final LeaderboardService leaderboardService;
+    private final UserStateService userStateService;
+    private final WalletService walletService;
 
     private static final int MAX_HEARTS = 5;
 
     public UserService(UserRepository userRepo,
                        DailyGoalService dailyGoalService,
-                       ShopTransactionRepository shopTxRepo) {
+                       LeaderboardService leaderboardService,
+                       UserStateService userStateService,
+                       WalletService walletService) {
         this.userRepo = userRepo;
         this.dailyGoalService = dailyGoalService;
-        this.shopTxRepo = shopTxRepo;
+        this.leaderboardService = leaderboardService;
+        this.userStateService = userStateService;
+        this.walletService = walletService;
     }
 
     public User register(String email, String password, String name, String gradeLevel) {
@@ -44,7 +47,7 @@ public class UserService {
         user.setLastHeartRefillDate(LocalDate.now());
         user.setGradeLevel(gradeLevel != null ? gradeLevel : "GRADE1");
 
-        return userRepo.save(user);
+        return saveAndRank(user);
     }
 
     public User login(String email, String password) {
@@ -57,62 +60,62 @@ public class UserService {
         return null;
     }
 
-    public void addXpAndUpdateStreak(User user, int xpToAdd) {
+    /**
+     * Cộng XP và cập nhật streak theo ngày học, trả về trạng thái mới của user
+     */
+    public User addXpAndUpdateStreak(User user, int xpToAdd) {
         LocalDate today = LocalDate.now();
-        LocalDate last = user.getLastStudyDate();
-
-        if (last == null || last.isBefore(today.minusDays(1))) {
-            user.setStreak(1);
-        } else if (last.equals(today.minusDays(1))) {
-            user.setStreak(user.getStreak() + 1);
+        User updated = userStateService.update(user.getId(), u -> {
+            LocalDate last = u.getLastStudyDate();
+            if (last == null || last.isBefore(today.minusDays(1))) {
+                u.setStreak(1);
+            } else if (last.equals(today.minusDays(1))) {
+                u.setStreak(u.getStreak() + 1);
+            }
+            u.setLastStudyDate(today);
+        });
+        if (updated == null) return user;
+        if (xpToAdd > 0) {
+            User credited = walletService.change(user.getId(), xpToAdd, 0, 0, "XP_REWARD", "Cộng XP học tập");
+            if (credited != null) updated = credited;
         }
 
-        user.setLastStudyDate(today);
-        user.setXp(user.getXp() + xpToAdd);
-        userRepo.save(user);
-
-        dailyGoalService.checkStreakBadge(user);
+        dailyGoalService.checkStreakBadge(updated);
+        return updated;
     }
 
     public User addXp(User user, int xpToAdd) {
         if (xpToAdd <= 0) return user;
-        user.setXp(user.getXp() + xpToAdd);
-        return userRepo.save(user);
-    }
-
-    public User save(User u) {
-        return userRepo.save(u);
+        return walletService.change(user.getId(), xpToAdd, 0, 0, "XP_REWARD", "Cộng XP học tập");
     }
 
     public User checkDailyHeartRefill(User user) {
         LocalDate today = LocalDate.now();
         LocalDate last = user.getLastHeartRefillDate();
-
-        if (last == null || last.isBefore(today)) {
-            int currentHearts = user.getHearts();
-            int missing = MAX_HEARTS - currentHearts;
-
-            if (missing > 0) {
-                int refill = Math.min(2, missing);
-                int newHearts = currentHearts + refill;
-                user.setHearts(newHearts);
-                user.setLastHeartRefillDate(today);
-
-                ShopTransaction tx = new ShopTransaction();
-                tx.setUser(user);
-                tx.setTime(LocalDateTime.now());
-                tx.setHeartsChanged(refill);
-                tx.setXpChanged(0);
-                tx.setType("FREE_REFILL");
-                tx.setNote("Refill tim miễn phí hằng ngày");
-                shopTxRepo.save(tx);
-
-                return userRepo.save(user);
-            } else {
-                user.setLastHeartRefillDate(today);
-                return userRepo.save(user);
-            }
+        if (last != null && !last.isBefore(today)) return user;
+
+        int[] refilled = new int[1];
+        User updated = userStateService.update(user.getId(), u -> {
+            // Kiểm tra lại trên trạng thái mới nhất: request song song có thể đã refill
+            if (u.getLastHeartRefillDate() != null && !u.getLastHeartRefillDate().isBefore(today)) return;
+            refilled[0] = Math.max(0, Math.min(2, MAX_HEARTS - u.getHearts()));
+            u.setLastHeartRefillDate(today);
+        });
+
+        if (refilled[0] > 0) {
+            User refilledUser = walletService.change(user.getId(), 0, 0, refilled[0],
+                    "FREE_REFILL", "Refill tim miễn phí hằng ngày");
+            if (refilledUser != null) updated = refilledUser;
         }
-        return user;
+        return updated;
+    }
+
+    /**
+     * Lưu user và cập nhật bảng xếp hạng XP trong bộ nhớ
+     */
+    private User saveAndRank(User user) {
+        User saved = userRepo.save(user);
+        leaderboardService.update(saved);
+        return saved;
     }
 }
@@ -0,0 +1,213 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.SessionUser;
+import com.example.duokid.model.User;
+import com.example.duokid.model.WalletBalance;
+import com.example.duokid.repo.UserRepository;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Trạng thái hiện tại của user (xp, gems, hearts, streak, avatar...) trong cache ghi xuyên theo từng user
+ * - HttpSession chỉ giữ SessionUser (id, tên, lớp, admin); controller lấy user qua currentUser(session)
+ * - Đọc không query database, trừ lần đầu nạp user vào cache (LRU tối đa user.state.max-entries user)
+ * - Mọi thay đổi đi qua update(): khóa theo user, sửa trên trạng thái mới nhất trong cache rồi ghi database ngay,
+ *   nên hai request song song của cùng một user không ghi đè thay đổi của nhau
+ * - xp / gems / hearts không ghi qua update() mà qua WalletService; hai bên dùng chung khóa theo user (chia dải)
+ * - User trả ra là bản sao (không có mật khẩu): sửa trực tiếp trên bản sao không có tác dụng
+ */
+@Service
+public class UserStateService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final UserRepository userRepo;
+    private final LeaderboardService leaderboardService;
+    private final int maxEntries;
+
+    // userId -> trạng thái đã lưu (bản sao có mật khẩu)
+    private final Map<Long, User> states;
+    // Khóa ghi theo user: nạp, update() và WalletService của cùng một user chạy lần lượt
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public UserStateService(UserRepository userRepo,
+                            LeaderboardService leaderboardService,
+                            @Value("${user.state.max-entries:10000}") int maxEntries) {
+        this.userRepo = userRepo;
+        this.leaderboardService = leaderboardService;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.states = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, User> eldest) {
+                return size() > UserStateService.this.maxEntries;
+            }
+        };
+        for (int i = 0; i < locks.length; i++) locks[i] = new Object();
+    }
+
+    /**
+     * Đăng nhập: lưu SessionUser vào session và đưa user vào cache
+     */
+    public void login(HttpSession session, User user) {
+        synchronized (lockFor(user.getId())) {
+            cache(user.getId(), copyWithPassword(user));
+        }
+        session.setAttribute(SessionUser.SESSION_ATTRIBUTE, SessionUser.of(user));
+    }
+
+    public SessionUser principal(HttpSession session) {
+        return (SessionUser) session.getAttribute(SessionUser.SESSION_ATTRIBUTE);
+    }
+
+    /**
+     * User đang đăng nhập, null nếu chưa đăng nhập (hoặc tài khoản đã bị xóa)
+     */
+    public User currentUser(HttpSession session) {
+        SessionUser principal = principal(session);
+        return principal != null ? get(principal.getId()) : null;
+    }
+
+    /**
+     * Trạng thái mới nhất của user, null nếu không tồn tại
+     */
+    public User get(Long userId) {
+        if (userId == null) return null;
+        synchronized (lockFor(userId)) {
+            User state = state(userId);
+            return state != null ? copyOf(state) : null;
+        }
+    }
+
+    /**
+     * Thay đổi user: change được chạy trên trạng thái mới nhất (đang giữ khóa của user) rồi ghi xuống database
+     * (thay đổi xp / gems / hearts ở đây không được ghi, dùng WalletService)
+     * @return trạng thái sau khi ghi, null nếu user không tồn tại
+     */
+    public User update(Long userId, Consumer<User> change) {
+        if (userId == null) return null;
+        synchronized (lockFor(userId)) {
+            User state = state(userId);
+            if (state == null) return null;
+            User working = copyWithPassword(state);
+            change.accept(working);
+            working.setXp(state.getXp());
+            working.setGems(state.getGems());
+            working.setHearts(state.getHearts());
+            User saved = userRepo.save(working);
+            User cached = copyWithPassword(saved);
+            cache(userId, cached);
+            leaderboardService.update(cached);
+            return copyOf(cached);
+        }
+    }
+
+    /**
+     * Cập nhật SessionUser sau khi đổi tên / lớp
+     */
+    public void refreshPrincipal(HttpSession session, User user) {
+        session.setAttribute(SessionUser.SESSION_ATTRIBUTE, SessionUser.of(user));
+    }
+
+    /**
+     * Bỏ user khỏi cache (sau khi ghi thẳng bằng UserRepository), lần đọc sau sẽ nạp lại
+     */
+    public void evict(Long userId) {
+        synchronized (lockFor(userId)) {
+            synchronized (states) {
+                states.remove(userId);
+            }
+        }
+    }
+
+    /**
+     * Chạy action khi đang giữ khóa ghi của user (WalletService)
+     */
+    <T> T withLock(Long userId, Supplier<T> action) {
+        synchronized (lockFor(userId)) {
+            return action.get();
+        }
+    }
+
+    /**
+     * Đọc lại số dư từ database vào cache sau khi WalletService commit (gọi khi đang giữ khóa của user)
+     * @return trạng thái mới, null nếu user không tồn tại
+     */
+    User reloadBalance(Long userId) {
+        User state = state(userId);
+        if (state == null) return null;
+        WalletBalance balance = userRepo.findBalance(userId);
+        if (balance == null) return null;
+        state.setXp(balance.getXp());
+        state.setGems(balance.getGems());
+        state.setHearts(balance.getHearts());
+        leaderboardService.update(state);
+        return copyOf(state);
+    }
+
+    /**
+     * Trạng thái trong cache với số dư đã cho, không sửa cache (số dư đọc trong transaction chưa commit)
+     */
+    User withBalance(Long userId, WalletBalance balance) {
+        User user = get(userId);
+        if (user == null || balance == null) return user;
+        user.setXp(balance.getXp());
+        user.setGems(balance.getGems());
+        user.setHearts(balance.getHearts());
+        return user;
+    }
+
+    // Gọi khi đang giữ khóa của user
+    private User state(Long userId) {
+        User state;
+        synchronized (states) {
+            state = states.get(userId);
+        }
+        if (state == null) {
+            User user = userRepo.findById(userId).orElse(null);
+            if (user == null) return null;
+            state = copyWithPassword(user);
+            cache(userId, state);
+        }
+        return state;
+    }
+
+    private void cache(Long userId, User state) {
+        synchronized (states) {
+            states.put(userId, state);
+        }
+    }
+
+    private Object lockFor(Long userId) {
+        return locks[Math.floorMod(userId.hashCode(), locks.length)];
+    }
+
+    private static User copyOf(User user) {
+        User copy = copyWithPassword(user);
+        copy.setPassword(null);
+        return copy;
+    }
+
+    private static User copyWithPassword(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setEmail(user.getEmail());
+        copy.setPassword(user.getPassword());
+        copy.setDisplayName(user.getDisplayName());
+        copy.setAvatar(user.getAvatar());
+        copy.setStreak(user.getStreak());
+        copy.setXp(user.getXp());
+        copy.setGems(user.getGems());
+        copy.setHearts(user.getHearts());
+        copy.setGradeLevel(user.getGradeLevel());
+        copy.setLastStudyDate(user.getLastStudyDate());
+        copy.setLastHeartRefillDate(user.getLastHeartRefillDate());
+        copy.setIsAdmin(user.getIsAdmin());
+        return copy;
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.duokid.service;
 
 import com.example.duokid.model.User;
+import com.example.duokid.model.VocabGameLeaderboardEntry;
 import com.example.duokid.model.VocabGameScore;
 import com.example.duokid.repo.VocabGameScoreRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -21,14 +24,27 @@ public class VocabGameService {
     ) {}
 
     private static final int QUESTIONS_PER_ROUND = 5;
+    private static final int LEADERBOARD_SIZE = 10;
     private static final Map<Long, Question> QUESTION_BANK = buildBank();
 
     private final VocabGameScoreRepository scoreRepository;
 
+    // Bảng xếp hạng điểm tích lũy trong bộ nhớ, cập nhật trong recordScore()
+    private final RankedBoard<VocabGameLeaderboardEntry> pointsBoard = new RankedBoard<>();
+
     public VocabGameService(VocabGameScoreRepository scoreRepository) {
         this.scoreRepository = scoreRepository;
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildLeaderboard() {
+        pointsBoard.clear();
+        for (VocabGameScore score : scoreRepository.findAll()) {
+            rank(score);
+        }
+        System.out.println("🏆 Đã nạp bảng xếp hạng mini game cho " + pointsBoard.size() + " học sinh");
+    }
+
     public List<Question> generateRound() {
         List<Question> questions = new ArrayList<>(QUESTION_BANK.values());
         Collections.shuffle(questions);
@@ -71,7 +87,7 @@ public class VocabGameService {
                 score.setBestRoundScore(0);
                 score.setTotalPoints(0);
                 score.setLastPlayed(LocalDateTime.now());
-                return scoreRepository.save(score);
+                return rank(scoreRepository.save(score));
             });
         }
 
@@ -87,11 +103,26 @@ public class VocabGameService {
         score.setTotalPoints(score.getTotalPoints() + roundPoints);
         score.setBestRoundScore(Math.max(score.getBestRoundScore(), roundPoints));
         score.setLastPlayed(LocalDateTime.now());
-        return scoreRepository.save(score);
+        return rank(scoreRepository.save(score));
     }
 
-    public List<VocabGameScore> getLeaderboard() {
-        return scoreRepository.findTop10ByOrderByTotalPointsDesc();
+    public List<VocabGameLeaderboardEntry> getLeaderboard() {
+        return pointsBoard.top(LEADERBOARD_SIZE);
+    }
+
+    /**
+     * Hạng mini game của user (bắt đầu từ 1), 0 nếu chưa chơi
+     */
+    public int getRank(User user) {
+        if (user == null || user.getId() == null) return 0;
+        return pointsBoard.rankOf(user.getId());
+    }
+
+    private VocabGameScore rank(VocabGameScore score) {
+        if (score.getUser() != null && score.getUser().getId() != null) {
+            pointsBoard.put(score.getUser().getId(), score.getTotalPoints(), VocabGameLeaderboardEntry.from(score));
+        }
+        return score;
     }
 
     // Vocabulary item record for game interface
@@ -2,17 +2,33 @@ package com.example.duokid.service;
 
 import com.example.duokid.model.Vocabulary;
 import com.example.duokid.repo.VocabularyRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Service để import từ vựng từ file CSV vào database
@@ -20,10 +36,36 @@ import java.util.List;
 @Service
 public class VocabularyImportService {
 
-    private final VocabularyRepository vocabularyRepo;
+    private static final String INSERT_SQL =
+            "INSERT INTO vocabularies (english_word, vietnamese_meaning, word_type, ipa_american, ipa_british, " +
+            "synonyms, antonyms, example_sentence, test_type, part_number, test_number, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final Pattern TEST_FILE = Pattern.compile("TEST\\s*(\\d+)\\.csv", Pattern.CASE_INSENSITIVE);
 
-    public VocabularyImportService(VocabularyRepository vocabularyRepo) {
+    private final VocabularyRepository vocabularyRepo;
+    private final VocabularySearchIndex searchIndex;
+    private final VocabularyStats stats;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int parallelism;
+
+    public VocabularyImportService(VocabularyRepository vocabularyRepo,
+                                   VocabularySearchIndex searchIndex,
+                                   VocabularyStats stats,
+                                   JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${vocabulary.import.batch-size:500}") int batchSize,
+                                   @Value("${vocabulary.import.parallelism:0}") int parallelism) {
         this.vocabularyRepo = vocabularyRepo;
+        this.searchIndex = searchIndex;
+        this.stats = stats;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        // 0 = dùng số core của máy
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
     }
 
     /**
@@ -34,120 +76,164 @@ public class VocabularyImportService {
      * @return ImportResult chứa số lượng từ vựng đã import và lỗi (nếu có)
      */
     public ImportResult importFromCsv(String filePath, String testType, Integer testNumber) {
-        List<String> errors = new ArrayList<>();
-        int imported = 0;
-        int skipped = 0;
+        ImportResult result = importFile(Paths.get(filePath), testType, testNumber);
+        refreshSearchIndex(result);
+        return result;
+    }
 
+    /**
+     * Import từ MultipartFile (upload từ web)
+     */
+    public ImportResult importFromMultipartFile(MultipartFile file, String testType, Integer testNumber) {
+        long start = System.nanoTime();
+        ParsedFile parsed;
         try {
-            Path path = Paths.get(filePath);
-            if (!Files.exists(path)) {
-                return new ImportResult(0, 0, List.of("File not found: " + filePath));
-            }
+            CsvRecordReader reader = CsvRecordReader.of(file.getBytes());
+            parsed = parseRecords(reader, file.getOriginalFilename(), testType, testNumber, start);
+        } catch (Exception e) {
+            return new ImportResult(0, 0, List.of("Error reading file: " + e.getMessage()));
+        }
+        ImportResult result = writeParsed(parsed);
+        refreshSearchIndex(result);
+        return result;
+    }
 
-            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-                String line;
-                boolean isFirstLine = true;
-                int lineNumber = 0;
-
-                while ((line = reader.readLine()) != null) {
-                    lineNumber++;
-                    
-                    // Bỏ qua dòng header
-                    if (isFirstLine) {
-                        isFirstLine = false;
-                        continue;
-                    }
+    /**
+     * Import một file CSV (không cập nhật chỉ mục tìm kiếm)
+     */
+    private ImportResult importFile(Path path, String testType, Integer testNumber) {
+        ParsedFile parsed = parseFile(path, testType, testNumber);
+        if (parsed == null) {
+            return new ImportResult(0, 0, List.of("File not found: " + path));
+        }
+        return writeParsed(parsed);
+    }
 
-                    // Bỏ qua dòng trống
-                    if (line.trim().isEmpty()) {
-                        continue;
-                    }
+    /**
+     * Đọc và parse một file CSV, chưa ghi database (an toàn khi chạy song song).
+     * Trả về null nếu file không tồn tại.
+     */
+    private ParsedFile parseFile(Path path, String testType, Integer testNumber) {
+        long start = System.nanoTime();
+        if (!Files.exists(path)) {
+            return null;
+        }
+        String source = path.getFileName().toString();
+        try {
+            return parseRecords(CsvRecordReader.open(path), source, testType, testNumber, start);
+        } catch (Exception e) {
+            return new ParsedFile(source, testType, testNumber, List.of(),
+                    new ArrayList<>(List.of("Error reading file: " + e.getMessage())), millisSince(start));
+        }
+    }
 
-                    try {
-                        Vocabulary vocab = parseCsvLine(line, testType, testNumber);
-                        if (vocab != null) {
-                            // Kiểm tra xem đã tồn tại chưa
-                            if (!vocabularyRepo.existsByEnglishWordIgnoreCaseAndTestTypeAndTestNumber(
-                                    vocab.getEnglishWord(), testType, testNumber)) {
-                                vocabularyRepo.save(vocab);
-                                imported++;
-                            } else {
-                                skipped++;
-                            }
-                        }
-                    } catch (Exception e) {
-                        errors.add("Line " + lineNumber + ": " + e.getMessage());
-                    }
-                }
+    private ParsedFile parseRecords(CsvRecordReader reader, String source, String testType,
+                                    Integer testNumber, long startNanos) {
+        List<Vocabulary> rows = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+
+        // Bỏ qua dòng header
+        reader.next();
+
+        while (reader.next()) {
+            // Bỏ qua dòng trống
+            if (reader.isBlank()) {
+                continue;
             }
 
-        } catch (Exception e) {
-            errors.add("Error reading file: " + e.getMessage());
+            try {
+                Vocabulary vocab = parseCsvLine(reader, testType, testNumber);
+                if (vocab != null) {
+                    rows.add(vocab);
+                }
+            } catch (Exception e) {
+                errors.add("Line " + reader.lineNumber() + ": " + e.getMessage());
+            }
         }
-
-        return new ImportResult(imported, skipped, errors);
+        return new ParsedFile(source, testType, testNumber, rows, errors, millisSince(startNanos));
     }
 
     /**
-     * Import từ MultipartFile (upload từ web)
+     * Lọc trùng bằng HashSet các từ đã có của (testType, testNumber) và ghi xuống database
+     * theo lô (JDBC batch) thay vì một truy vấn exists + một insert cho mỗi dòng
      */
-    public ImportResult importFromMultipartFile(MultipartFile file, String testType, Integer testNumber) {
-        List<String> errors = new ArrayList<>();
+    private ImportResult writeParsed(ParsedFile parsed) {
+        long start = System.nanoTime();
+        List<String> errors = new ArrayList<>(parsed.errors());
         int imported = 0;
         int skipped = 0;
 
-        try {
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-                
-                String line;
-                boolean isFirstLine = true;
-                int lineNumber = 0;
-
-                while ((line = reader.readLine()) != null) {
-                    lineNumber++;
-                    
-                    if (isFirstLine) {
-                        isFirstLine = false;
-                        continue;
-                    }
+        Set<String> existingWords = new HashSet<>(
+                vocabularyRepo.findLowerEnglishWordsByTestTypeAndTestNumber(parsed.testType(), parsed.testNumber()));
+        List<Vocabulary> pending = new ArrayList<>(batchSize);
 
-                    if (line.trim().isEmpty()) {
-                        continue;
-                    }
+        for (Vocabulary vocab : parsed.rows()) {
+            // Kiểm tra xem đã tồn tại chưa (kể cả dòng trùng trong cùng file)
+            if (existingWords.add(vocab.getEnglishWord().toLowerCase(Locale.ROOT))) {
+                pending.add(vocab);
+            } else {
+                skipped++;
+            }
 
-                    try {
-                        Vocabulary vocab = parseCsvLine(line, testType, testNumber);
-                        if (vocab != null) {
-                            if (!vocabularyRepo.existsByEnglishWordIgnoreCaseAndTestTypeAndTestNumber(
-                                    vocab.getEnglishWord(), testType, testNumber)) {
-                                vocabularyRepo.save(vocab);
-                                imported++;
-                            } else {
-                                skipped++;
-                            }
-                        }
-                    } catch (Exception e) {
-                        errors.add("Line " + lineNumber + ": " + e.getMessage());
-                    }
-                }
+            if (pending.size() >= batchSize) {
+                imported += flush(pending, parsed.source(), errors);
             }
+        }
+        imported += flush(pending, parsed.source(), errors);
 
+        // Chỉ tính thời gian ghi của file này: ở chế độ song song file có thể đã parse xong từ lâu, đang chờ đến lượt ghi
+        FileTiming timing = new FileTiming(parsed.source(), imported, skipped, parsed.parseMillis(), millisSince(start));
+        return new ImportResult(imported, skipped, errors, timing.elapsedMillis(), List.of(timing));
+    }
+
+    /**
+     * Ghi một lô từ vựng trong một transaction, trả về số dòng đã ghi
+     */
+    private int flush(List<Vocabulary> pending, String source, List<String> errors) {
+        if (pending.isEmpty()) return 0;
+        List<Vocabulary> batch = new ArrayList<>(pending);
+        pending.clear();
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, v) -> {
+                        ps.setString(1, v.getEnglishWord());
+                        ps.setString(2, v.getVietnameseMeaning());
+                        ps.setString(3, v.getWordType());
+                        ps.setString(4, v.getIpaAmerican());
+                        ps.setString(5, v.getIpaBritish());
+                        ps.setString(6, v.getSynonyms());
+                        ps.setString(7, v.getAntonyms());
+                        ps.setString(8, v.getExampleSentence());
+                        ps.setString(9, v.getTestType());
+                        ps.setString(10, v.getPartNumber());
+                        ps.setObject(11, v.getTestNumber());
+                        ps.setTimestamp(12, now);
+                    }));
+            return batch.size();
         } catch (Exception e) {
-            errors.add("Error reading file: " + e.getMessage());
+            errors.add(source + ": lỗi khi ghi " + batch.size() + " từ vựng: " + e.getMessage());
+            return 0;
         }
+    }
 
-        return new ImportResult(imported, skipped, errors);
+    /**
+     * Từ vựng được ghi bằng JDBC nên chỉ mục tìm kiếm và thống kê được dựng lại một lần sau khi import
+     */
+    private void refreshSearchIndex(ImportResult result) {
+        if (result.getImported() > 0) {
+            searchIndex.rebuild();
+            stats.refresh();
+        }
     }
 
     /**
-     * Parse một dòng CSV thành Vocabulary object
+     * Parse bản ghi CSV hiện tại thành Vocabulary object
      * Format CSV có thể khác nhau giữa LISTENING và READING
+     * Chỉ các cột được dùng mới được tạo String
      */
-    private Vocabulary parseCsvLine(String line, String testType, Integer testNumber) {
-        // Parse CSV với xử lý dấu phẩy trong quotes
-        List<String> fields = parseCsvFields(line);
-        
+    private Vocabulary parseCsvLine(CsvRecordReader fields, String testType, Integer testNumber) {
         if (fields.size() < 3) {
             return null; // Không đủ dữ liệu
         }
@@ -160,26 +246,26 @@ public class VocabularyImportService {
             // Format LISTENING: Phân loại, Cột 2, Từ tiếng Anh, Luyện từ, Từ loại, Kiểm tra, 
             // Anh - Mỹ, Anh - Anh, Nghĩa tiếng Việt, ...
             if (fields.size() >= 9) {
-                vocab.setPartNumber(cleanField(fields.get(0))); // Phân loại (Part 1, Part 2...)
-                vocab.setEnglishWord(cleanField(fields.get(2))); // Từ tiếng Anh
-                vocab.setWordType(cleanField(fields.get(4))); // Từ loại
-                vocab.setIpaAmerican(cleanField(fields.get(6))); // Anh - Mỹ
-                vocab.setIpaBritish(cleanField(fields.get(7))); // Anh - Anh
-                vocab.setVietnameseMeaning(cleanField(fields.get(8))); // Nghĩa tiếng Việt
+                vocab.setPartNumber(fields.get(0)); // Phân loại (Part 1, Part 2...)
+                vocab.setEnglishWord(fields.get(2)); // Từ tiếng Anh
+                vocab.setWordType(fields.get(4)); // Từ loại
+                vocab.setIpaAmerican(fields.get(6)); // Anh - Mỹ
+                vocab.setIpaBritish(fields.get(7)); // Anh - Anh
+                vocab.setVietnameseMeaning(fields.get(8)); // Nghĩa tiếng Việt
                 
                 // Từ đồng nghĩa (cột 11)
                 if (fields.size() > 11) {
-                    vocab.setSynonyms(cleanField(fields.get(11)));
+                    vocab.setSynonyms(fields.get(11));
                 }
                 
                 // Từ trái nghĩa (cột 14)
                 if (fields.size() > 14) {
-                    vocab.setAntonyms(cleanField(fields.get(14)));
+                    vocab.setAntonyms(fields.get(14));
                 }
                 
                 // Câu ví dụ (cột 17)
                 if (fields.size() > 17) {
-                    vocab.setExampleSentence(cleanField(fields.get(17)));
+                    vocab.setExampleSentence(fields.get(17));
                 }
             }
         } else if ("READING".equals(testType)) {
@@ -187,34 +273,34 @@ public class VocabularyImportService {
             // Cột 1, Từ tiếng Anh, Luyện từ tiếng anh, Loại từ, Phiên âm, Check 0, 
             // Nghĩa tiếng Việt, ...
             if (fields.size() >= 7) {
-                vocab.setEnglishWord(cleanField(fields.get(1))); // Từ tiếng Anh
-                vocab.setWordType(cleanField(fields.get(3))); // Loại từ
+                vocab.setEnglishWord(fields.get(1)); // Từ tiếng Anh
+                vocab.setWordType(fields.get(3)); // Loại từ
                 
                 // Phiên âm (có thể chỉ có 1, hoặc có cả 2)
                 if (fields.size() > 4) {
-                    String ipa = cleanField(fields.get(4));
+                    String ipa = fields.get(4);
                     // Nếu có dấu / thì là phiên âm
-                    if (ipa.contains("/")) {
+                    if (ipa != null && ipa.contains("/")) {
                         vocab.setIpaAmerican(ipa);
                         vocab.setIpaBritish(ipa); // Tạm thời dùng chung
                     }
                 }
                 
-                vocab.setVietnameseMeaning(cleanField(fields.get(6))); // Nghĩa tiếng Việt
+                vocab.setVietnameseMeaning(fields.get(6)); // Nghĩa tiếng Việt
                 
                 // Từ đồng nghĩa (cột 10)
                 if (fields.size() > 10) {
-                    vocab.setSynonyms(cleanField(fields.get(10)));
+                    vocab.setSynonyms(fields.get(10));
                 }
                 
                 // Từ trái nghĩa (cột 12)
                 if (fields.size() > 12) {
-                    vocab.setAntonyms(cleanField(fields.get(12)));
+                    vocab.setAntonyms(fields.get(12));
                 }
                 
                 // Câu ví dụ (cột 15)
                 if (fields.size() > 15) {
-                    vocab.setExampleSentence(cleanField(fields.get(15)));
+                    vocab.setExampleSentence(fields.get(15));
                 }
             }
         }
@@ -230,94 +316,125 @@ public class VocabularyImportService {
         return vocab;
     }
 
-    /**
-     * Parse CSV line với xử lý quotes và commas
-     */
-    private List<String> parseCsvFields(String line) {
-        List<String> fields = new ArrayList<>();
-        StringBuilder currentField = new StringBuilder();
-        boolean inQuotes = false;
-
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            
-            if (c == '"') {
-                inQuotes = !inQuotes;
-            } else if (c == ',' && !inQuotes) {
-                fields.add(currentField.toString());
-                currentField = new StringBuilder();
-            } else {
-                currentField.append(c);
-            }
-        }
-        
-        // Thêm field cuối cùng
-        fields.add(currentField.toString());
-        
-        return fields;
-    }
-
-    /**
-     * Clean field: remove quotes, trim whitespace
-     */
-    private String cleanField(String field) {
-        if (field == null) {
-            return null;
-        }
-        field = field.trim();
-        // Remove surrounding quotes
-        if (field.startsWith("\"") && field.endsWith("\"")) {
-            field = field.substring(1, field.length() - 1);
-        }
-        // Replace double quotes with single
-        field = field.replace("\"\"", "\"");
-        return field.isEmpty() ? null : field;
-    }
-
     /**
      * Import tất cả file CSV từ thư mục Tieng-Anh
+     * - Quét thư mục LISTENING và READING để tìm các file "TEST N.csv"
+     * - Các file được parse song song trên một thread pool giới hạn
+     * - Chỉ một luồng (luồng gọi) ghi database, lần lượt theo thứ tự file nên kết quả luôn giống nhau
      */
     public ImportResult importAllFromDirectory(String baseDirectory) {
+        long start = System.nanoTime();
         List<String> errors = new ArrayList<>();
+        List<FileTiming> timings = new ArrayList<>();
         int totalImported = 0;
         int totalSkipped = 0;
 
+        List<CsvSource> sources = new ArrayList<>();
         try {
             Path basePath = Paths.get(baseDirectory);
-            
-            // Import LISTENING files (hỗ trợ test 1-100)
-            Path listeningPath = basePath.resolve("ETS 2024 – LISTENING");
-            if (Files.exists(listeningPath) && Files.isDirectory(listeningPath)) {
-                for (int i = 1; i <= 100; i++) {
-                    Path testFile = listeningPath.resolve("TEST " + i + ".csv");
-                    if (Files.exists(testFile)) {
-                        ImportResult result = importFromCsv(testFile.toString(), "LISTENING", i);
-                        totalImported += result.getImported();
-                        totalSkipped += result.getSkipped();
-                        errors.addAll(result.getErrors());
-                    }
+            sources.addAll(discoverTestFiles(basePath.resolve("ETS 2024 – LISTENING"), "LISTENING"));
+            sources.addAll(discoverTestFiles(basePath.resolve("ETS 2024 READING"), "READING"));
+        } catch (Exception e) {
+            errors.add("Error importing from directory: " + e.getMessage());
+        }
+
+        int workers = Math.min(parallelism, sources.size());
+        ExecutorService pool = workers > 1 ? Executors.newFixedThreadPool(workers, importThreadFactory()) : null;
+        try {
+            List<Future<ParsedFile>> parsedFiles = new ArrayList<>();
+            if (pool != null) {
+                for (CsvSource source : sources) {
+                    parsedFiles.add(pool.submit(() -> parseFile(source.path(), source.testType(), source.testNumber())));
                 }
             }
 
-            // Import READING files (hỗ trợ test 1-100)
-            Path readingPath = basePath.resolve("ETS 2024 READING");
-            if (Files.exists(readingPath) && Files.isDirectory(readingPath)) {
-                for (int i = 1; i <= 100; i++) {
-                    Path testFile = readingPath.resolve("TEST " + i + ".csv");
-                    if (Files.exists(testFile)) {
-                        ImportResult result = importFromCsv(testFile.toString(), "READING", i);
-                        totalImported += result.getImported();
-                        totalSkipped += result.getSkipped();
-                        errors.addAll(result.getErrors());
-                    }
+            for (int i = 0; i < sources.size(); i++) {
+                CsvSource source = sources.get(i);
+                ParsedFile parsed;
+                try {
+                    parsed = pool != null
+                            ? parsedFiles.get(i).get()
+                            : parseFile(source.path(), source.testType(), source.testNumber());
+                } catch (ExecutionException e) {
+                    errors.add(source.path().getFileName() + ": " + e.getCause().getMessage());
+                    continue;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    errors.add("Import bị gián đoạn");
+                    break;
                 }
+                if (parsed == null) continue;
+
+                ImportResult result = writeParsed(parsed);
+                totalImported += result.getImported();
+                totalSkipped += result.getSkipped();
+                errors.addAll(result.getErrors());
+                timings.addAll(result.getFileTimings());
             }
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
 
-        } catch (Exception e) {
-            errors.add("Error importing from directory: " + e.getMessage());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        ImportResult result = new ImportResult(totalImported, totalSkipped, errors, elapsedMillis, timings);
+        refreshSearchIndex(result);
+        System.out.println(String.format("📥 Import %d từ vựng từ %d file trong %d ms (%.0f từ/giây, %d luồng parse)",
+                totalImported, timings.size(), elapsedMillis, result.getRowsPerSecond(), Math.max(1, workers)));
+        return result;
+    }
+
+    /**
+     * Tìm các file "TEST N.csv" trong thư mục, sắp xếp theo số test
+     */
+    private List<CsvSource> discoverTestFiles(Path directory, String testType) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        List<CsvSource> sources = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = TEST_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches() && Files.isRegularFile(file)) {
+                    sources.add(new CsvSource(file, testType, Integer.parseInt(matcher.group(1))));
+                }
+            });
+        }
+        sources.sort(Comparator.comparing(CsvSource::testNumber));
+        return sources;
+    }
+
+    private static ThreadFactory importThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "vocab-import-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record CsvSource(Path path, String testType, Integer testNumber) {}
+
+    /**
+     * Kết quả parse một file CSV, chưa lọc trùng và chưa ghi database
+     */
+    private record ParsedFile(String source, String testType, Integer testNumber,
+                              List<Vocabulary> rows, List<String> errors, long parseMillis) {}
+
+    /**
+     * Thời gian import của từng file: parse (trên luồng parse) và ghi database (trên luồng ghi), đo riêng
+     * nên không tính thời gian chờ các file trước được ghi xong; tổng các file có thể nhỏ hơn thời gian cả lượt
+     * vì các file được parse song song
+     */
+    public record FileTiming(String file, int imported, int skipped, long parseMillis, long writeMillis) {
+        public long elapsedMillis() {
+            return parseMillis + writeMillis;
         }
+    }
 
-        return new ImportResult(totalImported, totalSkipped, errors);
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
     }
 
     /**
@@ -327,11 +444,20 @@ public class VocabularyImportService {
         private final int imported;
         private final int skipped;
         private final List<String> errors;
+        private final long elapsedMillis;
+        private final List<FileTiming> fileTimings;
 
         public ImportResult(int imported, int skipped, List<String> errors) {
+            this(imported, skipped, errors, 0, List.of());
+        }
+
+        public ImportResult(int imported, int skipped, List<String> errors,
+                            long elapsedMillis, List<FileTiming> fileTimings) {
             this.imported = imported;
             this.skipped = skipped;
             this.errors = errors != null ? errors : new ArrayList<>();
+            this.elapsedMillis = elapsedMillis;
+            this.fileTimings = fileTimings != null ? fileTimings : List.of();
         }
 
         public int getImported() {
@@ -346,9 +472,24 @@ public class VocabularyImportService {
             return errors;
         }
 
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public List<FileTiming> getFileTimings() {
+            return fileTimings;
+        }
+
+        /**
+         * Số dòng đã xử lý (import + bỏ qua) mỗi giây
+         */
+        public double getRowsPerSecond() {
+            if (elapsedMillis <= 0) return 0;
+            return (imported + skipped) * 1000.0 / elapsedMillis;
+        }
+
         public boolean isSuccess() {
             return errors.isEmpty();
         }
     }
 }
-
@@ -0,0 +1,239 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.Vocabulary;
+import com.example.duokid.repo.VocabularyRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục tìm kiếm từ vựng trong bộ nhớ (inverted index theo trigram)
+ * - Đánh chỉ mục englishWord, vietnameseMeaning, synonyms, exampleSentence
+ * - Tiếng Việt được bỏ dấu khi so khớp ("nghia" khớp "nghĩa")
+ * - Xây dựng khi ứng dụng khởi động, cập nhật khi lưu/xóa từ vựng
+ * - Tìm kiếm không truy vấn database
+ */
+@Component
+public class VocabularySearchIndex {
+
+    private static final int GRAM_SIZE = 3;
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    // Thứ tự ưu tiên khi xếp hạng kết quả
+    private static final int RANK_EXACT = 0;
+    private static final int RANK_PREFIX = 1;
+    private static final int RANK_ENGLISH = 2;
+    private static final int RANK_MEANING = 3;
+    private static final int RANK_SYNONYMS = 4;
+    private static final int RANK_EXAMPLE = 5;
+    private static final int NO_MATCH = -1;
+
+    private final VocabularyRepository vocabularyRepository;
+
+    private final Map<Long, IndexedEntry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    private volatile boolean built = false;
+
+    public VocabularySearchIndex(VocabularyRepository vocabularyRepository) {
+        this.vocabularyRepository = vocabularyRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        rebuild();
+        System.out.println("🔎 Đã xây dựng chỉ mục tìm kiếm cho " + entries.size() + " từ vựng");
+    }
+
+    /**
+     * Xây dựng lại toàn bộ chỉ mục từ database
+     */
+    public synchronized void rebuild() {
+        entries.clear();
+        postings.clear();
+        for (Vocabulary vocabulary : vocabularyRepository.findAll()) {
+            addInternal(vocabulary);
+        }
+        built = true;
+    }
+
+    /**
+     * Thêm hoặc cập nhật một từ vựng trong chỉ mục
+     */
+    public synchronized void add(Vocabulary vocabulary) {
+        if (vocabulary == null || vocabulary.getId() == null) return;
+        removeInternal(vocabulary.getId());
+        addInternal(vocabulary);
+    }
+
+    /**
+     * Xóa một từ vựng khỏi chỉ mục
+     */
+    public synchronized void remove(Long id) {
+        if (id == null) return;
+        removeInternal(id);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Tìm kiếm từ vựng theo từ khóa, kết quả đã được xếp hạng:
+     * khớp chính xác từ tiếng Anh > bắt đầu bằng từ khóa > chứa trong từ tiếng Anh
+     * > nghĩa tiếng Việt > từ đồng nghĩa > câu ví dụ
+     */
+    public List<Vocabulary> search(String keyword) {
+        ensureBuilt();
+        String query = fold(keyword);
+        if (query == null || query.isEmpty()) {
+            return List.of();
+        }
+
+        Collection<IndexedEntry> candidates = findCandidates(query);
+
+        List<RankedHit> hits = new ArrayList<>();
+        for (IndexedEntry entry : candidates) {
+            int rank = entry.rank(query);
+            if (rank != NO_MATCH) {
+                hits.add(new RankedHit(entry, rank));
+            }
+        }
+
+        hits.sort(Comparator.comparingInt(RankedHit::rank)
+                .thenComparing(h -> h.entry().vocabulary().getId()));
+
+        List<Vocabulary> results = new ArrayList<>(hits.size());
+        for (RankedHit hit : hits) {
+            results.add(hit.entry().vocabulary());
+        }
+        return results;
+    }
+
+    /**
+     * Lấy danh sách ứng viên bằng cách giao các posting list của trigram trong từ khóa.
+     * Từ khóa ngắn hơn 3 ký tự thì duyệt toàn bộ chỉ mục trong bộ nhớ.
+     */
+    private Collection<IndexedEntry> findCandidates(String query) {
+        if (query.length() < GRAM_SIZE) {
+            return entries.values();
+        }
+
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : grams(query)) {
+            Set<Long> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty()) {
+                return List.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+
+        List<IndexedEntry> candidates = new ArrayList<>();
+        for (Long id : lists.get(0)) {
+            boolean inAll = true;
+            for (int i = 1; i < lists.size() && inAll; i++) {
+                inAll = lists.get(i).contains(id);
+            }
+            if (inAll) {
+                IndexedEntry entry = entries.get(id);
+                if (entry != null) {
+                    candidates.add(entry);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private void ensureBuilt() {
+        if (!built) {
+            synchronized (this) {
+                if (!built) {
+                    rebuild();
+                }
+            }
+        }
+    }
+
+    private void addInternal(Vocabulary vocabulary) {
+        if (vocabulary.getId() == null) return;
+        IndexedEntry entry = new IndexedEntry(
+                vocabulary,
+                fold(vocabulary.getEnglishWord()),
+                fold(vocabulary.getVietnameseMeaning()),
+                fold(vocabulary.getSynonyms()),
+                fold(vocabulary.getExampleSentence())
+        );
+        entries.put(vocabulary.getId(), entry);
+        for (String gram : entry.grams()) {
+            postings.computeIfAbsent(gram, k -> ConcurrentHashMap.newKeySet()).add(vocabulary.getId());
+        }
+    }
+
+    private void removeInternal(Long id) {
+        IndexedEntry old = entries.remove(id);
+        if (old == null) return;
+        for (String gram : old.grams()) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> result = new HashSet<>();
+        if (text == null) return result;
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return result;
+    }
+
+    /**
+     * Chuẩn hóa chuỗi để so khớp: chữ thường, bỏ dấu tiếng Việt (kể cả đ -> d)
+     */
+    static String fold(String text) {
+        if (text == null) return null;
+        String lower = text.trim().toLowerCase(Locale.ROOT);
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("").replace('đ', 'd');
+    }
+
+    private record IndexedEntry(Vocabulary vocabulary,
+                                String english,
+                                String meaning,
+                                String synonyms,
+                                String example) {
+
+        Set<String> grams() {
+            Set<String> result = new HashSet<>();
+            result.addAll(VocabularySearchIndex.grams(english));
+            result.addAll(VocabularySearchIndex.grams(meaning));
+            result.addAll(VocabularySearchIndex.grams(synonyms));
+            result.addAll(VocabularySearchIndex.grams(example));
+            return result;
+        }
+
+        int rank(String query) {
+            if (english != null) {
+                if (english.equals(query)) return RANK_EXACT;
+                if (english.startsWith(query)) return RANK_PREFIX;
+                if (english.contains(query)) return RANK_ENGLISH;
+            }
+            if (meaning != null && meaning.contains(query)) return RANK_MEANING;
+            if (synonyms != null && synonyms.contains(query)) return RANK_SYNONYMS;
+            if (example != null && example.contains(query)) return RANK_EXAMPLE;
+            return NO_MATCH;
+        }
+    }
+
+    private record RankedHit(IndexedEntry entry, int rank) {}
+}
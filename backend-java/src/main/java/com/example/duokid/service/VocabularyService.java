@@ -5,6 +5,7 @@ import com.example.duokid.repo.VocabularyRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -14,9 +15,15 @@ import java.util.Optional;
 public class VocabularyService {
 
     private final VocabularyRepository vocabularyRepository;
+    private final VocabularySearchIndex searchIndex;
+    private final VocabularyStats stats;
 
-    public VocabularyService(VocabularyRepository vocabularyRepository) {
+    public VocabularyService(VocabularyRepository vocabularyRepository,
+                             VocabularySearchIndex searchIndex,
+                             VocabularyStats stats) {
         this.vocabularyRepository = vocabularyRepository;
+        this.searchIndex = searchIndex;
+        this.stats = stats;
     }
 
     /**
@@ -58,22 +65,13 @@ public class VocabularyService {
     }
 
     /**
-     * Tìm kiếm từ vựng
+     * Tìm kiếm từ vựng (dùng chỉ mục trong bộ nhớ, không truy vấn database)
      */
     public List<Vocabulary> searchVocabularies(String keyword) {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getAllVocabularies();
         }
-
-        String searchLower = keyword.toLowerCase().trim();
-        return vocabularyRepository.findAll().stream()
-                .filter(v -> 
-                    (v.getEnglishWord() != null && v.getEnglishWord().toLowerCase().contains(searchLower)) ||
-                    (v.getVietnameseMeaning() != null && v.getVietnameseMeaning().toLowerCase().contains(searchLower)) ||
-                    (v.getExampleSentence() != null && v.getExampleSentence().toLowerCase().contains(searchLower)) ||
-                    (v.getSynonyms() != null && v.getSynonyms().toLowerCase().contains(searchLower))
-                )
-                .toList();
+        return searchIndex.search(keyword);
     }
 
     /**
@@ -83,7 +81,16 @@ public class VocabularyService {
         if (vocabulary == null) {
             throw new IllegalArgumentException("Vocabulary cannot be null");
         }
-        return vocabularyRepository.save(vocabulary);
+        boolean isNew = vocabulary.getId() == null;
+        Vocabulary saved = vocabularyRepository.save(vocabulary);
+        searchIndex.add(saved);
+        if (isNew) {
+            stats.added(saved);
+        } else {
+            // testType / testNumber / partNumber có thể đã đổi: đếm lại bằng câu GROUP BY
+            stats.refresh();
+        }
+        return saved;
     }
 
     /**
@@ -93,35 +100,53 @@ public class VocabularyService {
         if (id == null) {
             throw new IllegalArgumentException("Vocabulary ID cannot be null");
         }
-        vocabularyRepository.deleteById(id);
+        vocabularyRepository.findById(id).ifPresent(vocabulary -> {
+            vocabularyRepository.delete(vocabulary);
+            stats.removed(vocabulary);
+        });
+        searchIndex.remove(id);
     }
 
     /**
-     * Đếm tổng số từ vựng
+     * Đếm tổng số từ vựng (từ thống kê trong bộ nhớ)
      */
     public long countAll() {
-        return vocabularyRepository.count();
+        return stats.getTotal();
     }
 
     /**
      * Đếm số từ vựng theo loại test
      */
     public long countByTestType(String testType) {
-        return vocabularyRepository.findByTestType(testType).size();
+        return stats.countByTestType(testType);
     }
 
     /**
      * Lấy danh sách số test theo loại
      */
     public List<Integer> getTestNumbersByType(String testType) {
-        return vocabularyRepository.findDistinctTestNumbersByTestType(testType);
+        return stats.getTestNumbers(testType);
     }
 
     /**
      * Lấy danh sách phần theo loại test
      */
     public List<String> getPartNumbersByType(String testType) {
-        return vocabularyRepository.findDistinctPartNumbersByTestType(testType);
+        return stats.getPartNumbers(testType);
+    }
+
+    /**
+     * Số từ của từng test trong một loại
+     */
+    public Map<Integer, Long> getTestNumberCounts(String testType) {
+        return stats.countsByTestNumber(testType);
+    }
+
+    /**
+     * Số từ của từng phần trong một loại
+     */
+    public Map<String, Long> getPartCounts(String testType) {
+        return stats.countsByPart(testType);
     }
 }
 
@@ -0,0 +1,137 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.Vocabulary;
+import com.example.duokid.repo.VocabularyRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Thống kê từ vựng trong bộ nhớ: số từ theo testType, theo (testType, testNumber), theo (testType, partNumber)
+ * và danh sách test / phần của mỗi loại
+ * - Nạp bằng một câu GROUP BY khi khởi động và sau khi import, cộng / trừ khi lưu hoặc xóa từng từ
+ * - Trang danh sách / thống kê từ vựng đọc số liệu từ đây, không đếm lại cả bảng
+ */
+@Component
+public class VocabularyStats {
+
+    private final VocabularyRepository vocabularyRepository;
+
+    // Số từ theo từng ô (testType, testNumber, partNumber); ảnh chụp dẫn xuất được dựng lại sau mỗi thay đổi
+    private final Map<Cell, Long> cells = new HashMap<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public VocabularyStats(VocabularyRepository vocabularyRepository) {
+        this.vocabularyRepository = vocabularyRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        refresh();
+        System.out.println("📊 Đã nạp thống kê cho " + getTotal() + " từ vựng");
+    }
+
+    /**
+     * Đọc lại toàn bộ số liệu từ database (sau khi import bằng JDBC)
+     */
+    public synchronized void refresh() {
+        cells.clear();
+        for (Object[] row : vocabularyRepository.countByTestTypeNumberAndPart()) {
+            cells.put(new Cell((String) row[0], (Integer) row[1], (String) row[2]), ((Number) row[3]).longValue());
+        }
+        snapshot = Snapshot.of(cells);
+    }
+
+    public synchronized void added(Vocabulary vocabulary) {
+        cells.merge(Cell.of(vocabulary), 1L, Long::sum);
+        snapshot = Snapshot.of(cells);
+    }
+
+    public synchronized void removed(Vocabulary vocabulary) {
+        cells.computeIfPresent(Cell.of(vocabulary), (cell, count) -> count > 1 ? count - 1 : null);
+        snapshot = Snapshot.of(cells);
+    }
+
+    public long getTotal() {
+        return snapshot.total;
+    }
+
+    public long countByTestType(String testType) {
+        return snapshot.byType.getOrDefault(testType, 0L);
+    }
+
+    /**
+     * Số từ của từng test trong một loại (theo thứ tự số test)
+     */
+    public Map<Integer, Long> countsByTestNumber(String testType) {
+        return snapshot.byTestNumber.getOrDefault(testType, Map.of());
+    }
+
+    /**
+     * Số từ của từng phần trong một loại (theo thứ tự tên phần)
+     */
+    public Map<String, Long> countsByPart(String testType) {
+        return snapshot.byPart.getOrDefault(testType, Map.of());
+    }
+
+    public List<Integer> getTestNumbers(String testType) {
+        return List.copyOf(countsByTestNumber(testType).keySet());
+    }
+
+    public List<String> getPartNumbers(String testType) {
+        return List.copyOf(countsByPart(testType).keySet());
+    }
+
+    private record Cell(String testType, Integer testNumber, String partNumber) {
+        static Cell of(Vocabulary vocabulary) {
+            return new Cell(vocabulary.getTestType(), vocabulary.getTestNumber(), vocabulary.getPartNumber());
+        }
+    }
+
+    /**
+     * Ảnh chụp bất biến để đọc không cần khóa
+     */
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, Map.of(), Map.of(), Map.of());
+
+        final long total;
+        final Map<String, Long> byType;
+        final Map<String, Map<Integer, Long>> byTestNumber;
+        final Map<String, Map<String, Long>> byPart;
+
+        private Snapshot(long total, Map<String, Long> byType,
+                         Map<String, Map<Integer, Long>> byTestNumber, Map<String, Map<String, Long>> byPart) {
+            this.total = total;
+            this.byType = byType;
+            this.byTestNumber = byTestNumber;
+            this.byPart = byPart;
+        }
+
+        static Snapshot of(Map<Cell, Long> cells) {
+            long total = 0;
+            Map<String, Long> byType = new HashMap<>();
+            Map<String, Map<Integer, Long>> byTestNumber = new HashMap<>();
+            Map<String, Map<String, Long>> byPart = new HashMap<>();
+            for (Map.Entry<Cell, Long> entry : cells.entrySet()) {
+                Cell cell = entry.getKey();
+                long count = entry.getValue();
+                total += count;
+                if (cell.testType() == null) continue;
+                byType.merge(cell.testType(), count, Long::sum);
+                if (cell.testNumber() != null) {
+                    byTestNumber.computeIfAbsent(cell.testType(), k -> new TreeMap<>())
+                            .merge(cell.testNumber(), count, Long::sum);
+                }
+                if (cell.partNumber() != null) {
+                    byPart.computeIfAbsent(cell.testType(), k -> new TreeMap<>())
+                            .merge(cell.partNumber(), count, Long::sum);
+                }
+            }
+            byTestNumber.replaceAll((type, counts) -> Collections.unmodifiableMap(counts));
+            byPart.replaceAll((type, counts) -> Collections.unmodifiableMap(counts));
+            return new Snapshot(total, Map.copyOf(byType), Map.copyOf(byTestNumber), Map.copyOf(byPart));
+        }
+    }
+}
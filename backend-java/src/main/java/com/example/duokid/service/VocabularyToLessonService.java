@@ -1,6 +1,7 @@
 package com.example.duokid.service;
 
 import com.example.duokid.model.Lesson;
+import com.example.duokid.model.LessonSummary;
 import com.example.duokid.model.QuizQuestion;
 import com.example.duokid.model.Vocabulary;
 import com.example.duokid.repo.LessonRepository;
@@ -10,8 +11,10 @@ import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -23,13 +26,22 @@ public class VocabularyToLessonService {
     private final VocabularyRepository vocabularyRepository;
     private final LessonRepository lessonRepository;
     private final QuizQuestionRepository quizQuestionRepository;
+    private final LessonCatalog lessonCatalog;
+    private final ContentCacheService contentCache;
+    private final TtsPrewarmJob ttsPrewarmJob;
 
     public VocabularyToLessonService(VocabularyRepository vocabularyRepository,
                                      LessonRepository lessonRepository,
-                                     QuizQuestionRepository quizQuestionRepository) {
+                                     QuizQuestionRepository quizQuestionRepository,
+                                     LessonCatalog lessonCatalog,
+                                     ContentCacheService contentCache,
+                                     TtsPrewarmJob ttsPrewarmJob) {
         this.vocabularyRepository = vocabularyRepository;
         this.lessonRepository = lessonRepository;
         this.quizQuestionRepository = quizQuestionRepository;
+        this.lessonCatalog = lessonCatalog;
+        this.contentCache = contentCache;
+        this.ttsPrewarmJob = ttsPrewarmJob;
     }
 
     /**
@@ -40,6 +52,7 @@ public class VocabularyToLessonService {
         int created = 0;
         int skipped = 0;
         List<String> errors = new ArrayList<>();
+        List<Vocabulary> newLessonVocabularies = new ArrayList<>();
 
         try {
             // Lấy tất cả từ vựng
@@ -49,6 +62,12 @@ public class VocabularyToLessonService {
                 return new CreateLessonsResult(0, 0, List.of("Không có từ vựng nào trong database. Hãy import từ vựng trước!"));
             }
 
+            // Dựng chỉ mục đáp án sai một lần cho tất cả bài
+            DistractorIndex distractors = DistractorIndex.build(allVocabularies);
+
+            // Tiêu đề và orderIndex của các bài đã có: đọc một lần, không đọc lại cả bảng lessons cho từng bài mới
+            ExistingLessons existingLessons = ExistingLessons.of(lessonRepository.findAllSummaries());
+
             // Nhóm theo testType và testNumber
             Map<String, Map<Integer, List<Vocabulary>>> groupedByTest = allVocabularies.stream()
                     .filter(v -> v.getTestType() != null && v.getTestNumber() != null)
@@ -69,14 +88,10 @@ public class VocabularyToLessonService {
                     if (vocabularies.isEmpty()) continue;
 
                     try {
-                        String lessonTitle = testType + " - TEST " + testNumber;
+                        String lessonTitle = LessonVocabularyScope.testTitle(testType, testNumber);
                         
                         // Kiểm tra xem đã có Lesson này chưa
-                        List<Lesson> existing = lessonRepository.findAll().stream()
-                                .filter(l -> l.getTitle() != null && l.getTitle().equals(lessonTitle))
-                                .toList();
-
-                        if (!existing.isEmpty()) {
+                        if (existingLessons.contains(lessonTitle)) {
                             skipped++;
                             continue;
                         }
@@ -89,14 +104,8 @@ public class VocabularyToLessonService {
                         lesson.setLessonType("VOCABULARY");
                         lesson.setXpReward(15); // XP cao hơn vì là từ vựng TOEIC
                         
-                        // Đặt orderIndex cao để không ảnh hưởng lộ trình chính
-                        // Tìm orderIndex cao nhất hiện tại
-                        Integer maxOrderIndex = lessonRepository.findAll().stream()
-                                .map(Lesson::getOrderIndex)
-                                .filter(java.util.Objects::nonNull)
-                                .max(Integer::compareTo)
-                                .orElse(100);
-                        lesson.setOrderIndex(maxOrderIndex + 1);
+                        // Đặt orderIndex cao để không ảnh hưởng lộ trình chính (sau orderIndex cao nhất hiện tại)
+                        lesson.setOrderIndex(existingLessons.nextOrderIndex());
                         
                         lesson.setPartName("ETS 2024 - " + testType);
 
@@ -105,10 +114,12 @@ public class VocabularyToLessonService {
                         lesson.setContentHtml(contentHtml);
 
                         lessonRepository.save(lesson);
+                        existingLessons.add(lessonTitle);
                         
                         // Tạo câu hỏi quiz từ từ vựng
-                        createQuizQuestionsForLesson(lesson, vocabularies);
+                        createQuizQuestionsForLesson(lesson, vocabularies, distractors);
                         
+                        newLessonVocabularies.addAll(vocabularies);
                         created++;
 
                     } catch (Exception e) {
@@ -119,8 +130,8 @@ public class VocabularyToLessonService {
 
             // Tạo Lesson theo Part (Part 1, Part 2, Part 3, Part 4) cho LISTENING
             CreateLessonsResult tempResult = new CreateLessonsResult(created, skipped, errors);
-            tempResult = createLessonsByPart("LISTENING", allVocabularies, tempResult);
-            tempResult = createLessonsByPart("READING", allVocabularies, tempResult);
+            tempResult = createLessonsByPart("LISTENING", allVocabularies, distractors, existingLessons, tempResult, newLessonVocabularies);
+            tempResult = createLessonsByPart("READING", allVocabularies, distractors, existingLessons, tempResult, newLessonVocabularies);
             created = tempResult.getCreated();
             skipped = tempResult.getSkipped();
             errors = tempResult.getErrors();
@@ -129,6 +140,11 @@ public class VocabularyToLessonService {
             errors.add("Lỗi tổng quát: " + e.getMessage());
         }
 
+        if (created > 0) {
+            lessonCatalog.invalidate();
+            contentCache.evictAll();
+            ttsPrewarmJob.enqueueVocabulary(newLessonVocabularies);
+        }
         return new CreateLessonsResult(created, skipped, errors);
     }
 
@@ -136,7 +152,8 @@ public class VocabularyToLessonService {
      * Tạo Lesson theo Part (Part 1, Part 2, Part 3, Part 4)
      */
     private CreateLessonsResult createLessonsByPart(String testType, List<Vocabulary> allVocabularies,
-                                    CreateLessonsResult result) {
+                                    DistractorIndex distractors, ExistingLessons existingLessons,
+                                    CreateLessonsResult result, List<Vocabulary> newLessonVocabularies) {
         int created = result.getCreated();
         int skipped = result.getSkipped();
         List<String> errors = new ArrayList<>(result.getErrors());
@@ -151,13 +168,9 @@ public class VocabularyToLessonService {
             if (vocabularies.size() < 5) continue; // Bỏ qua nếu ít hơn 5 từ
 
             try {
-                String lessonTitle = testType + " - " + partNumber;
+                String lessonTitle = LessonVocabularyScope.partTitle(testType, partNumber);
                 
-                List<Lesson> existing = lessonRepository.findAll().stream()
-                        .filter(l -> l.getTitle() != null && l.getTitle().equals(lessonTitle))
-                        .toList();
-
-                if (!existing.isEmpty()) {
+                if (existingLessons.contains(lessonTitle)) {
                     skipped++;
                     continue;
                 }
@@ -169,12 +182,7 @@ public class VocabularyToLessonService {
                 lesson.setLessonType("VOCABULARY");
                 lesson.setXpReward(12);
                 
-                Integer maxOrderIndex = lessonRepository.findAll().stream()
-                        .map(Lesson::getOrderIndex)
-                        .filter(java.util.Objects::nonNull)
-                        .max(Integer::compareTo)
-                        .orElse(100);
-                lesson.setOrderIndex(maxOrderIndex + 1);
+                lesson.setOrderIndex(existingLessons.nextOrderIndex());
                 
                 lesson.setPartName("ETS 2024 - " + testType);
 
@@ -182,10 +190,12 @@ public class VocabularyToLessonService {
                 lesson.setContentHtml(contentHtml);
 
                 lessonRepository.save(lesson);
+                existingLessons.add(lessonTitle);
                 
                 // Tạo câu hỏi quiz từ từ vựng
-                createQuizQuestionsForLesson(lesson, vocabularies);
+                createQuizQuestionsForLesson(lesson, vocabularies, distractors);
                 
+                newLessonVocabularies.addAll(vocabularies);
                 created++;
 
             } catch (Exception e) {
@@ -248,7 +258,8 @@ public class VocabularyToLessonService {
     /**
      * Tạo câu hỏi quiz từ từ vựng cho một lesson
      */
-    private void createQuizQuestionsForLesson(Lesson lesson, List<Vocabulary> vocabularies) {
+    private void createQuizQuestionsForLesson(Lesson lesson, List<Vocabulary> vocabularies,
+                                              DistractorIndex distractors) {
         if (vocabularies == null || vocabularies.isEmpty()) return;
         
         // Chọn ngẫu nhiên tối đa 10 từ vựng để tạo câu hỏi
@@ -257,18 +268,13 @@ public class VocabularyToLessonService {
         int maxQuestions = Math.min(10, selectedVocabs.size());
         selectedVocabs = selectedVocabs.subList(0, maxQuestions);
         
-        // Lấy tất cả từ vựng để làm đáp án sai
-        List<Vocabulary> allVocabs = vocabularyRepository.findAll();
+        // Lesson vừa tạo (hoặc chưa có quiz) nên chỉ cần tránh trùng với các câu vừa tạo trong vòng lặp
+        Set<String> usedWords = new HashSet<>();
         
         for (Vocabulary vocab : selectedVocabs) {
             try {
                 // Kiểm tra xem đã có câu hỏi này chưa
-                List<QuizQuestion> existing = quizQuestionRepository.findByLesson(lesson).stream()
-                        .filter(q -> q.getQuestion() != null && 
-                                q.getQuestion().contains(vocab.getEnglishWord()))
-                        .toList();
-                
-                if (!existing.isEmpty()) continue;
+                if (vocab.getEnglishWord() == null || !usedWords.add(vocab.getEnglishWord())) continue;
                 
                 // Tạo câu hỏi về nghĩa của từ
                 QuizQuestion question = new QuizQuestion();
@@ -279,14 +285,7 @@ public class VocabularyToLessonService {
                 String correctAnswer = vocab.getVietnameseMeaning();
                 
                 // Tạo 3 đáp án sai từ các từ vựng khác
-                List<String> wrongAnswers = allVocabs.stream()
-                        .filter(v -> !v.getId().equals(vocab.getId()) && 
-                                v.getVietnameseMeaning() != null && 
-                                !v.getVietnameseMeaning().equals(correctAnswer))
-                        .map(Vocabulary::getVietnameseMeaning)
-                        .distinct()
-                        .limit(3)
-                        .collect(Collectors.toList());
+                List<String> wrongAnswers = distractors.sample(vocab, 3);
                 
                 // Đảm bảo có đủ 3 đáp án sai
                 while (wrongAnswers.size() < 3) {
@@ -352,12 +351,12 @@ public class VocabularyToLessonService {
             
             // Lấy tất cả từ vựng
             List<Vocabulary> allVocabularies = vocabularyRepository.findAll();
+            DistractorIndex distractors = DistractorIndex.build(allVocabularies);
             
             for (Lesson lesson : etsLessons) {
                 try {
                     // Kiểm tra xem đã có quiz questions chưa
-                    List<QuizQuestion> existingQuestions = quizQuestionRepository.findByLesson(lesson);
-                    if (!existingQuestions.isEmpty()) {
+                    if (quizQuestionRepository.existsByLessonId(lesson.getId())) {
                         skipped++;
                         continue;
                     }
@@ -371,7 +370,7 @@ public class VocabularyToLessonService {
                     }
                     
                     // Tạo quiz questions
-                    createQuizQuestionsForLesson(lesson, relatedVocabs);
+                    createQuizQuestionsForLesson(lesson, relatedVocabs, distractors);
                     created++;
                     
                 } catch (Exception e) {
@@ -438,6 +437,39 @@ public class VocabularyToLessonService {
                   .replace("'", "&#39;");
     }
 
+    /**
+     * Tiêu đề đã có và orderIndex cao nhất, cập nhật khi tạo thêm bài trong cùng lượt
+     */
+    private static final class ExistingLessons {
+        private final Set<String> titles = new HashSet<>();
+        private int maxOrderIndex;
+
+        static ExistingLessons of(List<LessonSummary> lessons) {
+            ExistingLessons existing = new ExistingLessons();
+            Integer max = null;
+            for (LessonSummary lesson : lessons) {
+                if (lesson.getTitle() != null) existing.titles.add(lesson.getTitle());
+                if (lesson.getOrderIndex() != null && (max == null || lesson.getOrderIndex() > max)) {
+                    max = lesson.getOrderIndex();
+                }
+            }
+            existing.maxOrderIndex = max != null ? max : 100;
+            return existing;
+        }
+
+        boolean contains(String title) {
+            return titles.contains(title);
+        }
+
+        void add(String title) {
+            titles.add(title);
+        }
+
+        int nextOrderIndex() {
+            return ++maxOrderIndex;
+        }
+    }
+
     /**
      * Result class
      */
@@ -0,0 +1,122 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.ShopTransaction;
+import com.example.duokid.model.User;
+import com.example.duokid.model.WalletBalance;
+import com.example.duokid.repo.ShopTransactionRepository;
+import com.example.duokid.repo.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.function.Supplier;
+
+/**
+ * Ví của user: mọi thay đổi xp / gems / hearts đi qua đây
+ * - Số dư được cộng / trừ bằng một câu UPDATE trên database (u.gems = u.gems + ?), không đọc - sửa - ghi cả entity,
+ *   nên request song song (tab game + tab quiz) không làm mất thay đổi của nhau
+ * - Không cho số dư âm: trả về null khi không đủ; riêng trừ tim thì trừ tối đa về 0
+ * - Mỗi thay đổi ghi một dòng ShopTransaction (sổ giao dịch) trong cùng transaction với câu UPDATE
+ * - Caller đang có transaction (vd. markLessonCompleted) thì ghi chung transaction đó: rollback thì không cộng thưởng;
+ *   không có thì chạy transaction riêng và commit ngay
+ * - Chạy khi đang giữ khóa của user trong UserStateService, đọc lại số dư vào cache sau khi commit
+ */
+@Service
+public class WalletService {
+
+    // Số lần thử lại khi trừ tim bị ghi chen ngoài khóa của user (instance khác, sửa tay trong database)
+    private static final int MAX_HEART_RETRIES = 10;
+
+    private final UserRepository userRepo;
+    private final ShopTransactionRepository shopTxRepo;
+    private final UserStateService userStateService;
+    private final TransactionTemplate transactionTemplate;
+
+    public WalletService(UserRepository userRepo,
+                         ShopTransactionRepository shopTxRepo,
+                         UserStateService userStateService,
+                         TransactionTemplate transactionTemplate) {
+        this.userRepo = userRepo;
+        this.shopTxRepo = shopTxRepo;
+        this.userStateService = userStateService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Cộng (số dương) / trừ (số âm) xp, gems, hearts cùng lúc
+     * @return trạng thái mới của user, null nếu có số dư không đủ (không thay đổi gì) hoặc user không tồn tại
+     */
+    public User change(Long userId, int xp, int gems, int hearts, String type, String note) {
+        if (userId == null) return null;
+        if (xp == 0 && gems == 0 && hearts == 0) return userStateService.get(userId);
+
+        return apply(userId, () -> {
+            if (userRepo.addBalances(userId, xp, gems, hearts) == 0) return false;
+            record(userId, xp, gems, hearts, type, note);
+            return true;
+        });
+    }
+
+    /**
+     * Trừ tim, tối đa về 0
+     * @return trạng thái mới của user, null nếu user không tồn tại
+     * @throws IllegalStateException nếu số tim liên tục bị ghi chen và không trừ được
+     */
+    public User loseHearts(Long userId, int hearts, String type, String note) {
+        if (userId == null) return null;
+        if (hearts <= 0) return userStateService.get(userId);
+
+        return apply(userId, () -> {
+            for (int attempt = 0; attempt < MAX_HEART_RETRIES; attempt++) {
+                WalletBalance balance = userRepo.findBalance(userId);
+                if (balance == null) return false;
+                int lost = Math.min(hearts, balance.getHearts());
+                if (lost == 0) return true;
+                if (userRepo.takeHearts(userId, balance.getHearts(), lost) > 0) {
+                    record(userId, 0, 0, -lost, type, note);
+                    return true;
+                }
+            }
+            // Ném lỗi để transaction rollback, caller không nhận số dư như thể đã trừ
+            throw new IllegalStateException("Không trừ được tim của user " + userId + " sau " + MAX_HEART_RETRIES + " lần thử");
+        });
+    }
+
+    /**
+     * Chạy work (câu UPDATE + dòng sổ giao dịch) khi đang giữ khóa của user, trong transaction của caller nếu có
+     */
+    private User apply(Long userId, Supplier<Boolean> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return userStateService.withLock(userId, () -> {
+                if (!work.get()) return null;
+                // Cache chỉ đọc lại số dư khi transaction của caller đã commit; rollback thì cache giữ nguyên
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        userStateService.withLock(userId, () -> userStateService.reloadBalance(userId));
+                    }
+                });
+                return userStateService.withBalance(userId, userRepo.findBalance(userId));
+            });
+        }
+
+        return userStateService.withLock(userId, () -> {
+            Boolean applied = transactionTemplate.execute(status -> work.get());
+            return Boolean.TRUE.equals(applied) ? userStateService.reloadBalance(userId) : null;
+        });
+    }
+
+    private void record(Long userId, int xp, int gems, int hearts, String type, String note) {
+        ShopTransaction tx = new ShopTransaction();
+        tx.setUser(userRepo.getReferenceById(userId));
+        tx.setTime(LocalDateTime.now());
+        tx.setXpChanged(xp);
+        tx.setGemsChanged(gems);
+        tx.setHeartsChanged(hearts);
+        tx.setType(type);
+        tx.setNote(note);
+        shopTxRepo.save(tx);
+    }
+}
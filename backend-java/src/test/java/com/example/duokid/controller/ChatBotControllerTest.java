@@ -0,0 +1,65 @@
+package com.example.duokid.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tra từ của chatbot không giữ request thread: Python service không chạy (profile test) thì trả kết quả tra cục bộ
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatBotControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private MockHttpSession session;
+
+    @BeforeEach
+    void login() throws Exception {
+        session = TestLogin.admin(mockMvc);
+    }
+
+    @Test
+    void vocabularyFallsBackToLocalLookupWhenPythonIsDown() throws Exception {
+        MvcResult started = lookup("{\"word\":\"Apple\"}");
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"word\":\"apple\"")))
+                .andExpect(content().string(containsString("Quả táo")));
+    }
+
+    @Test
+    void vocabularyRequiresWord() throws Exception {
+        MvcResult started = lookup("{\"word\":\"  \"}");
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isBadRequest());
+    }
+
+    private MvcResult lookup(String json) throws Exception {
+        return mockMvc.perform(post("/chatbot/api/vocabulary")
+                        .session(session)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+}
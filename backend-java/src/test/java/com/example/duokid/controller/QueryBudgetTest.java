@@ -0,0 +1,90 @@
+package com.example.duokid.controller;
+
+import com.example.duokid.repo.QuizQuestionRepository;
+import com.example.duokid.service.QueryMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Endpoint khai báo @QueryBudget không được chạy quá số câu SQL cho phép
+ * (profile test bật query.budget.fail-on-exceed nên vượt ngân sách thì request ném lỗi);
+ * số liệu gồm cả các câu chạy lúc render view
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class QueryBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private QuizQuestionRepository quizQuestionRepository;
+
+    private MockHttpSession session;
+
+    @BeforeEach
+    void login() throws Exception {
+        session = TestLogin.admin(mockMvc);
+    }
+
+    @Test
+    void dashboardStaysWithinBudget() throws Exception {
+        // Lần đầu còn nạp danh mục bài học và tạo mục tiêu ngày: chỉ cần nằm trong ngân sách
+        assertWithinBudget(renderDashboard(), 8);
+
+        // Các lần sau: tiến độ bài học chỉ được đọc một lần, không câu SQL nào bị lặp lại
+        QueryMetrics.RequestQueries queries = assertWithinBudget(renderDashboard(), 8);
+        assertThat(queries.getStatements()).isLessThanOrEqualTo(5);
+        assertThat(queries.getSqlCounts().values()).allMatch(count -> count == 1);
+        assertThat(queries.getSqlCounts().keySet())
+                .filteredOn(sql -> sql.contains("user_lesson_progress"))
+                .hasSize(1);
+    }
+
+    @Test
+    void submitQuizStaysWithinBudget() throws Exception {
+        List<Long> lessonIds = quizQuestionRepository.findLessonIdsWithQuestions();
+        assertThat(lessonIds).isNotEmpty();
+
+        MvcResult result = mockMvc.perform(post("/quiz/" + lessonIds.get(0)).session(session))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertWithinBudget(result, 15);
+    }
+
+    private MvcResult renderDashboard() throws Exception {
+        return mockMvc.perform(get("/dashboard").session(session))
+                .andExpect(status().isOk())
+                .andReturn();
+    }
+
+    private static QueryMetrics.RequestQueries assertWithinBudget(MvcResult result, int budget) {
+        String header = result.getResponse().getHeader("X-Query-Count");
+        assertThat(header).isNotNull();
+        assertThat(Integer.parseInt(header)).isLessThanOrEqualTo(budget);
+
+        // Số liệu đầy đủ, gồm cả các câu chạy lúc render view
+        QueryMetrics.RequestQueries queries =
+                (QueryMetrics.RequestQueries) result.getRequest().getAttribute(QueryBudgetFilter.RESULT_ATTRIBUTE);
+        assertThat(queries).isNotNull();
+        assertThat(queries.getBudget()).isEqualTo(budget);
+        assertThat(queries.getStatements()).isLessThanOrEqualTo(budget);
+        return queries;
+    }
+}
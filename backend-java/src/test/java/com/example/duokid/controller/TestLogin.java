@@ -0,0 +1,24 @@
+package com.example.duokid.controller;
+
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Đăng nhập qua MockMvc cho các test controller (tài khoản admin được seed khi khởi động)
+ */
+final class TestLogin {
+
+    private TestLogin() {
+    }
+
+    static MockHttpSession admin(MockMvc mockMvc) throws Exception {
+        return (MockHttpSession) mockMvc.perform(post("/login")
+                        .param("email", "admin@duokid.com")
+                        .param("password", "admin123"))
+                .andExpect(status().is3xxRedirection())
+                .andReturn().getRequest().getSession(false);
+    }
+}
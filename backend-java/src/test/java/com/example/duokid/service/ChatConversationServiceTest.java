@@ -0,0 +1,123 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.Message;
+import com.example.duokid.model.User;
+import com.example.duokid.repo.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bộ đếm tin chưa đọc và badge của hội thoại khớp với database khi gửi tin và mở hội thoại chen nhau
+ */
+@SpringBootTest
+// Không dùng MockMvc: giữ cùng cấu hình với các test controller để dùng lại application context đã cache
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ChatConversationServiceTest {
+
+    @Autowired
+    private ChatConversationService chatConversationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void sendCountsUnreadAfterCommit() {
+        User sender = newUser();
+        User receiver = newUser();
+
+        chatConversationService.send(message(sender, receiver));
+        chatConversationService.send(message(sender, receiver));
+
+        assertThat(chatConversationService.getUnreadCount(receiver)).isEqualTo(2);
+        assertThat(summaryUnread(receiver, sender)).isEqualTo(2);
+
+        assertThat(chatConversationService.markConversationRead(receiver, sender)).isEqualTo(2);
+        assertThat(chatConversationService.getUnreadCount(receiver)).isZero();
+        assertThat(summaryUnread(receiver, sender)).isZero();
+    }
+
+    @Test
+    void counterMatchesDatabaseWhenSendAndReadInterleave() throws Exception {
+        User sender = newUser();
+        User receiver = newUser();
+        int messages = 60;
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < messages; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return chatConversationService.send(message(sender, receiver));
+                }));
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return chatConversationService.markConversationRead(receiver, sender);
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Lần mở hội thoại cuối cùng đưa bộ đếm và badge về đúng giá trị trong database
+        chatConversationService.markConversationRead(receiver, sender);
+        assertThat(chatConversationService.getUnreadCount(receiver)).isEqualTo(unreadInDatabase(receiver)).isZero();
+        assertThat(summaryUnread(receiver, sender)).isZero();
+    }
+
+    private User newUser() {
+        User user = new User();
+        user.setEmail("chat-" + UUID.randomUUID() + "@duokid.test");
+        user.setDisplayName("Chat test");
+        user.setGradeLevel("GRADE1");
+        return userRepository.save(user);
+    }
+
+    private static Message message(User sender, User receiver) {
+        Message message = new Message();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent("hello");
+        message.setSentAt(LocalDateTime.now());
+        message.setIsRead(false);
+        return message;
+    }
+
+    private int unreadInDatabase(User receiver) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM messages WHERE receiver_id = ? AND is_read = false", Integer.class, receiver.getId());
+        return count != null ? count : 0;
+    }
+
+    private int summaryUnread(User owner, User partner) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT unread_count FROM conversation_summaries WHERE owner_id = ? AND partner_id = ?",
+                Integer.class, owner.getId(), partner.getId());
+        return count != null ? count : 0;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.duokid.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * So sánh CsvRecordReader với cách đọc cũ (BufferedReader.readLine + tách từng field) trên các file trong Tieng-Anh
+ * - legacySplitter / recordReader: đọc đúng các cột VocabularyImportService dùng (LISTENING, READING)
+ * - recordReaderAllColumns: tạo String cho mọi cột, để so phần tách field không tính lợi ích đọc lười
+ * Chạy từ thư mục backend-java (thư mục CSV đổi bằng -Dcsv.dir=...):
+ *   mvn -B test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt -Dmdep.includeScope=test
+ *   java -cp "target/test-classes:target/classes:$(cat target/test-classpath.txt)" com.example.duokid.service.CsvRecordReaderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvRecordReaderBenchmark {
+
+    // Các cột parseCsvLine đọc cho từng loại đề
+    private static final int[] LISTENING_COLUMNS = {0, 2, 4, 6, 7, 8, 11, 14, 17};
+    private static final int[] READING_COLUMNS = {1, 3, 4, 6, 10, 12, 15};
+
+    private List<Path> files;
+    private List<int[]> columns;
+
+    @Setup
+    public void findFiles() throws IOException {
+        Path dir = Paths.get(System.getProperty("csv.dir", "Tieng-Anh"));
+        try (Stream<Path> paths = Files.walk(dir)) {
+            files = paths.filter(p -> p.toString().toLowerCase().endsWith(".csv")).sorted().toList();
+        }
+        if (files.isEmpty()) {
+            throw new IllegalStateException("Không tìm thấy file CSV trong " + dir.toAbsolutePath());
+        }
+        columns = files.stream()
+                .map(p -> p.getParent().getFileName().toString().contains("READING") ? READING_COLUMNS : LISTENING_COLUMNS)
+                .toList();
+    }
+
+    @Benchmark
+    public void legacySplitter(Blackhole blackhole) throws IOException {
+        for (int f = 0; f < files.size(); f++) {
+            int[] used = columns.get(f);
+            try (BufferedReader reader = Files.newBufferedReader(files.get(f), StandardCharsets.UTF_8)) {
+                reader.readLine(); // header
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) continue;
+                    List<String> fields = LegacyCsv.parseCsvFields(line);
+                    for (int column : used) {
+                        if (column < fields.size()) blackhole.consume(LegacyCsv.cleanField(fields.get(column)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void recordReader(Blackhole blackhole) throws IOException {
+        for (int f = 0; f < files.size(); f++) {
+            int[] used = columns.get(f);
+            CsvRecordReader reader = CsvRecordReader.open(files.get(f));
+            reader.next(); // header
+            while (reader.next()) {
+                if (reader.isBlank()) continue;
+                for (int column : used) {
+                    blackhole.consume(reader.get(column));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void recordReaderAllColumns(Blackhole blackhole) throws IOException {
+        for (Path file : files) {
+            CsvRecordReader reader = CsvRecordReader.open(file);
+            reader.next(); // header
+            while (reader.next()) {
+                if (reader.isBlank()) continue;
+                for (int column = 0; column < reader.size(); column++) {
+                    blackhole.consume(reader.get(column));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Tham số dòng lệnh của JMH (vd. -wi 1 -i 2 -prof gc) ghi đè cấu hình trong annotation
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(CsvRecordReaderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+
+    /**
+     * Cách tách CSV cũ của VocabularyImportService (trước CsvRecordReader), giữ lại để so sánh
+     */
+    static final class LegacyCsv {
+
+        private LegacyCsv() {
+        }
+
+        static List<String> parseCsvFields(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder currentField = new StringBuilder();
+            boolean inQuotes = false;
+
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+
+                if (c == '"') {
+                    inQuotes = !inQuotes;
+                } else if (c == ',' && !inQuotes) {
+                    fields.add(currentField.toString());
+                    currentField = new StringBuilder();
+                } else {
+                    currentField.append(c);
+                }
+            }
+
+            // Thêm field cuối cùng
+            fields.add(currentField.toString());
+
+            return fields;
+        }
+
+        static String cleanField(String field) {
+            if (field == null) {
+                return null;
+            }
+            field = field.trim();
+            // Remove surrounding quotes
+            if (field.startsWith("\"") && field.endsWith("\"")) {
+                field = field.substring(1, field.length() - 1);
+            }
+            // Replace double quotes with single
+            field = field.replace("\"\"", "\"");
+            return field.isEmpty() ? null : field;
+        }
+    }
+}
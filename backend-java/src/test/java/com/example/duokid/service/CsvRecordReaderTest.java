@@ -0,0 +1,117 @@
+package com.example.duokid.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvRecordReaderTest {
+
+    @Test
+    void quotedFieldsKeepCommasAndNewlines() throws IOException {
+        List<List<String>> records = readAll("a,\"b, c\",d\n\"line 1\nline 2\",e\n");
+
+        assertThat(records).containsExactly(
+                List.of("a", "b, c", "d"),
+                List.of("line 1\nline 2", "e"));
+    }
+
+    @Test
+    void doubledQuotesAreLiteralQuotes() throws IOException {
+        List<List<String>> records = readAll("\"say \"\"hi\"\"\",\"\"\"\"\n");
+
+        assertThat(records).containsExactly(List.of("say \"hi\"", "\""));
+    }
+
+    @Test
+    void strayQuotesInUnquotedFieldsAreKept() throws IOException {
+        List<List<String>> records = readAll("5\" screen,it\"s,x\n");
+
+        assertThat(records).containsExactly(List.of("5\" screen", "it\"s", "x"));
+    }
+
+    @Test
+    void recordsEndOnCrlfAndBareCr() throws IOException {
+        CsvRecordReader reader = CsvRecordReader.of(bytes("a,b\r\nc,d\re,f"));
+
+        assertThat(reader.next()).isTrue();
+        assertThat(fields(reader)).containsExactly("a", "b");
+        assertThat(reader.lineNumber()).isEqualTo(1);
+        assertThat(reader.next()).isTrue();
+        assertThat(fields(reader)).containsExactly("c", "d");
+        assertThat(reader.lineNumber()).isEqualTo(2);
+        assertThat(reader.next()).isTrue();
+        assertThat(fields(reader)).containsExactly("e", "f");
+        assertThat(reader.lineNumber()).isEqualTo(3);
+        assertThat(reader.next()).isFalse();
+    }
+
+    @Test
+    void skipsBomAndHandlesBlankLinesAndTrailingNewline() throws IOException {
+        CsvRecordReader reader = CsvRecordReader.of(bytes("\uFEFFword,meaning\n\n  \nbook,sách\n"));
+
+        assertThat(reader.next()).isTrue();
+        assertThat(fields(reader)).containsExactly("word", "meaning");
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.isBlank()).isTrue();
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.isBlank()).isTrue();
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.isBlank()).isFalse();
+        assertThat(fields(reader)).containsExactly("book", "sách");
+        assertThat(reader.lineNumber()).isEqualTo(4);
+        // Dòng trống cuối file không tạo thêm bản ghi
+        assertThat(reader.next()).isFalse();
+    }
+
+    @Test
+    void emptyFieldsAreNullAndMissingColumnsAreNull() throws IOException {
+        CsvRecordReader reader = CsvRecordReader.of(bytes("a,, \"\" ,\"\"\n"));
+
+        assertThat(reader.next()).isTrue();
+        assertThat(reader.size()).isEqualTo(4);
+        assertThat(reader.get(0)).isEqualTo("a");
+        assertThat(reader.get(1)).isNull();
+        assertThat(reader.get(3)).isNull();
+        assertThat(reader.get(10)).isNull();
+    }
+
+    @Test
+    void lineNumbersCountNewlinesInsideQuotedFields() throws IOException {
+        // Xuống dòng trong quotes: \n, \r\n và \r đứng riêng đều là một dòng
+        CsvRecordReader reader = CsvRecordReader.of(bytes("h\n\"a\nb\",1\n\"c\r\nd\",2\r\n\"e\rf\",3\rlast\n"));
+
+        int[] expectedLines = {1, 2, 4, 6, 8};
+        for (int expected : expectedLines) {
+            assertThat(reader.next()).isTrue();
+            assertThat(reader.lineNumber()).isEqualTo(expected);
+        }
+        assertThat(fields(reader)).containsExactly("last");
+        assertThat(reader.next()).isFalse();
+    }
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        CsvRecordReader reader = CsvRecordReader.of(bytes(csv));
+        List<List<String>> records = new ArrayList<>();
+        while (reader.next()) {
+            records.add(fields(reader));
+        }
+        return records;
+    }
+
+    private static List<String> fields(CsvRecordReader reader) {
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < reader.size(); i++) {
+            fields.add(reader.get(i));
+        }
+        return fields;
+    }
+
+    private static byte[] bytes(String csv) {
+        return csv.getBytes(StandardCharsets.UTF_8);
+    }
+}
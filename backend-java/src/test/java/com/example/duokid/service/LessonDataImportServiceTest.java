@@ -0,0 +1,73 @@
+package com.example.duokid.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Import nhiều bài học trong một file: từ vựng để tạo quiz chỉ được nạp một lần cho cả lượt import
+ */
+@SpringBootTest
+// Không dùng MockMvc: giữ cùng cấu hình với các test controller để dùng lại application context đã cache
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LessonDataImportServiceTest {
+
+    private static final String LEVEL = "IMPORT_TEST";
+
+    @Autowired
+    private LessonDataImportService importService;
+
+    @Autowired
+    private QueryMetrics queryMetrics;
+
+    @Autowired
+    private LessonCatalog lessonCatalog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void removeImportedLessons() {
+        jdbcTemplate.update("DELETE FROM quiz_questions WHERE lesson_id IN (SELECT id FROM lessons WHERE level = ?)", LEVEL);
+        jdbcTemplate.update("DELETE FROM lessons WHERE level = ?", LEVEL);
+        lessonCatalog.invalidate();
+    }
+
+    @Test
+    void loadsVocabularyOncePerImport() throws Exception {
+        String json = """
+                {"lessons": [
+                  {"title": "READING - TEST 901", "level": "%1$s"},
+                  {"title": "READING - TEST 902", "level": "%1$s"},
+                  {"title": "LISTENING - TEST 903", "level": "%1$s",
+                   "contentHtml": "<ul><li>apple – quả táo</li><li>book – quyển sách</li></ul>"}
+                ]}
+                """.formatted(LEVEL);
+
+        queryMetrics.begin("import", Integer.MAX_VALUE);
+        LessonDataImportService.ImportResult result;
+        QueryMetrics.RequestQueries queries;
+        try {
+            result = importService.importFromJson(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        } finally {
+            queries = queryMetrics.end();
+        }
+
+        assertThat(result.getLessonsImported()).isEqualTo(3);
+        int vocabularyLoads = queries.getSqlCounts().entrySet().stream()
+                .filter(e -> e.getKey().contains("from vocabularies"))
+                .mapToInt(e -> e.getValue())
+                .sum();
+        assertThat(vocabularyLoads).isEqualTo(1);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.Lesson;
+import com.example.duokid.repo.LessonRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tìm bài học theo nội dung: "%", "_" trong từ người dùng nhập được so khớp nguyên văn
+ */
+@SpringBootTest
+// Không dùng MockMvc: giữ cùng cấu hình với các test controller để dùng lại application context đã cache
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LessonServiceTest {
+
+    private static final String LEVEL = "SEARCH_TEST";
+
+    @Autowired
+    private LessonService lessonService;
+
+    @Autowired
+    private LessonRepository lessonRepo;
+
+    @AfterEach
+    void removeLessons() {
+        lessonRepo.deleteAll(lessonRepo.findAll().stream().filter(l -> LEVEL.equals(l.getLevel())).toList());
+    }
+
+    @Test
+    void contentSearchTreatsWildcardsLiterally() {
+        lesson("<b>abc</b>");
+        lesson("<b>a_c</b>");
+        lesson("<b>50%</b>");
+
+        assertThat(titles("<b>a_c</b>")).containsExactly("<b>a_c</b>");
+        assertThat(titles("<b>abc</b>")).containsExactly("<b>abc</b>");
+        assertThat(titles("%")).containsExactly("<b>50%</b>");
+        assertThat(titles("<b>a%</b>")).isEmpty();
+    }
+
+    private void lesson(String contentHtml) {
+        Lesson lesson = new Lesson();
+        lesson.setTitle(contentHtml);
+        lesson.setLevel(LEVEL);
+        lesson.setContentHtml(contentHtml);
+        lessonRepo.save(lesson);
+    }
+
+    private List<String> titles(String text) {
+        return lessonService.findByContentHtmlContaining(text).stream()
+                .filter(l -> LEVEL.equals(l.getLevel()))
+                .map(Lesson::getTitle)
+                .toList();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.LessonSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LessonVocabularyScopeTest {
+
+    @Test
+    void matchesOnlyVocabularyOfExistingLessons() {
+        LessonVocabularyScope scope = LessonVocabularyScope.of(List.of(
+                lesson(LessonVocabularyScope.testTitle("LISTENING", "3.2")),
+                lesson(LessonVocabularyScope.testTitle("READING", 7)),
+                lesson(LessonVocabularyScope.partTitle("LISTENING", "Part 2")),
+                lesson("Greetings - Hello")));
+
+        assertThat(scope.contains("LISTENING", 3, null)).isTrue();
+        assertThat(scope.contains("READING", 7, "Part 5")).isTrue();
+        assertThat(scope.contains("LISTENING", 99, "Part 2")).isTrue();
+
+        assertThat(scope.contains("LISTENING", 4, "Part 1")).isFalse();
+        assertThat(scope.contains("READING", 3, null)).isFalse();
+        assertThat(scope.contains(null, 3, "Part 2")).isFalse();
+    }
+
+    @Test
+    void isEmptyWithoutLessons() {
+        assertThat(LessonVocabularyScope.of(List.of()).isEmpty()).isTrue();
+    }
+
+    private static LessonSummary lesson(String title) {
+        return new LessonSummary(1L, title, null, "GRADE1", 1, null, 10, "VOCABULARY");
+    }
+}
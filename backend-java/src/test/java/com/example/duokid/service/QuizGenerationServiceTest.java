@@ -0,0 +1,86 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.Lesson;
+import com.example.duokid.model.Vocabulary;
+import com.example.duokid.repo.LessonRepository;
+import com.example.duokid.repo.QuizQuestionRepository;
+import com.example.duokid.repo.VocabularyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kết quả tạo quiz hàng loạt chỉ tính các bài có câu hỏi đã được ghi xuống database
+ */
+class QuizGenerationServiceTest {
+
+    private final LessonRepository lessonRepository = mock(LessonRepository.class);
+    private final QuizQuestionRepository quizQuestionRepository = mock(QuizQuestionRepository.class);
+    private final VocabularyRepository vocabularyRepository = mock(VocabularyRepository.class);
+    private final QuizQuestionBatchWriter batchWriter = mock(QuizQuestionBatchWriter.class);
+    private final QuizGenerationService service =
+            new QuizGenerationService(lessonRepository, quizQuestionRepository, vocabularyRepository, batchWriter);
+
+    @BeforeEach
+    void lessonsWithVocabulary() {
+        List<Vocabulary> vocabularies = new ArrayList<>();
+        List<Lesson> lessons = new ArrayList<>();
+        for (int test = 1; test <= 3; test++) {
+            for (int word = 0; word < 4; word++) {
+                Vocabulary vocabulary = new Vocabulary();
+                vocabulary.setTestType("READING");
+                vocabulary.setTestNumber(test);
+                vocabulary.setEnglishWord("word" + test + "_" + word);
+                vocabulary.setVietnameseMeaning("nghĩa " + test + "_" + word);
+                vocabularies.add(vocabulary);
+            }
+            Lesson lesson = new Lesson();
+            lesson.setId((long) test);
+            lesson.setTitle(LessonVocabularyScope.testTitle("READING", test));
+            lessons.add(lesson);
+        }
+        when(vocabularyRepository.findAll()).thenReturn(vocabularies);
+        when(lessonRepository.findAll()).thenReturn(lessons);
+        when(quizQuestionRepository.findLessonIdsWithQuestions()).thenReturn(List.of());
+        // Mỗi bài 4 câu: lô 5 câu nên được ghi sau bài thứ 2, bài thứ 3 ghi ở lần cuối
+        when(batchWriter.getBatchSize()).thenReturn(5);
+    }
+
+    @Test
+    void countsLessonsWhoseQuestionsWereWritten() {
+        when(batchWriter.write(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        QuizGenerationJob.JobStatus status = QuizGenerationJob.JobStatus.detached(QuizGenerationJob.ALL_LESSONS);
+
+        QuizGenerationService.QuizGenerationResult result = service.createQuizForAllLessons(status);
+
+        assertThat(result.getLessonsCreated()).isEqualTo(3);
+        assertThat(result.getTotalQuestions()).isEqualTo(12);
+        assertThat(status.getLessonsCreated()).isEqualTo(3);
+        assertThat(status.getQuestionsCreated()).isEqualTo(12);
+        assertThat(status.getLessonsProcessed()).isEqualTo(3);
+    }
+
+    @Test
+    void failedBatchDoesNotCountItsLessons() {
+        // Lô đầu (bài 1, 2) ghi lỗi, lô cuối (bài 3) ghi được
+        when(batchWriter.write(anyList()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).size());
+        QuizGenerationJob.JobStatus status = QuizGenerationJob.JobStatus.detached(QuizGenerationJob.ALL_LESSONS);
+
+        QuizGenerationService.QuizGenerationResult result = service.createQuizForAllLessons(status);
+
+        assertThat(result.getLessonsCreated()).isEqualTo(1);
+        assertThat(result.getTotalQuestions()).isEqualTo(4);
+        assertThat(status.getLessonsCreated()).isEqualTo(1);
+        assertThat(status.getQuestionsCreated()).isEqualTo(4);
+        assertThat(result.getErrors()).anyMatch(error -> error.contains("db down"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.duokid.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UploadStorageServiceTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void extensionComesFromImageContentNotClientFilename() throws IOException {
+        UploadStorageService storage = storage();
+        byte[] png = image("png");
+
+        String asHtml = storage.store(new MockMultipartFile("file", "x.html", "image/png", png), UploadStorageService.CHAT);
+        String asJpg = storage.store(new MockMultipartFile("file", "photo.jpg", "image/jpeg", png), UploadStorageService.CHAT);
+
+        assertThat(asHtml).matches("/uploads/chat/[0-9a-f]{64}\\.png");
+        // Cùng nội dung thì cùng một file, bất kể tên file client gửi lên
+        assertThat(asJpg).isEqualTo(asHtml);
+        assertThat(storage.store(new MockMultipartFile("file", "a.png", "image/png", image("jpg")), UploadStorageService.CHAT))
+                .endsWith(".jpg");
+        assertThat(storage.store(new MockMultipartFile("file", "a.png", "image/png", image("gif")), UploadStorageService.CHAT))
+                .endsWith(".gif");
+    }
+
+    @Test
+    void rejectsNonImageContent() throws IOException {
+        UploadStorageService storage = storage();
+        byte[] svg = "<svg xmlns=\"http://www.w3.org/2000/svg\"><script>alert(1)</script></svg>".getBytes(StandardCharsets.UTF_8);
+        byte[] bmp = image("bmp");
+
+        assertThatThrownBy(() -> storage.store(new MockMultipartFile("file", "x.svg", "image/png", svg), UploadStorageService.CHAT))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> storage.store(new MockMultipartFile("file", "x.png", "image/png", bmp), UploadStorageService.CHAT))
+                .isInstanceOf(IOException.class);
+        assertThat(dir.resolve(UploadStorageService.CHAT).toFile().list((d, name) -> !name.equals("thumbs"))).isEmpty();
+    }
+
+    @Test
+    void servesOnlyImageFiles() throws IOException {
+        UploadStorageService storage = storage();
+        Files.writeString(dir.resolve(UploadStorageService.CHAT).resolve("page.html"), "<script>alert(1)</script>");
+        Files.write(dir.resolve(UploadStorageService.CHAT).resolve("ok.png"), image("png"));
+
+        assertThat(storage.resolve(UploadStorageService.CHAT, "page.html")).isEmpty();
+        assertThat(storage.resolve(UploadStorageService.CHAT, "ok.png")).isPresent();
+    }
+
+    private UploadStorageService storage() {
+        return new UploadStorageService(dir.toString(), dir.resolve("legacy").toString(), 64, 1);
+    }
+
+    private static byte[] image(String format) throws IOException {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(1, 1, 0xff0000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.duokid.service;
+
+import com.example.duokid.model.User;
+import com.example.duokid.model.WalletBalance;
+import com.example.duokid.repo.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Ví dưới tải song song: không mất lượt cộng, không mua quá số dư, mỗi thay đổi đúng một dòng sổ giao dịch
+ */
+@SpringBootTest
+// Không dùng MockMvc: giữ cùng cấu hình với các test controller để dùng lại application context đã cache
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class WalletServiceTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private UserStateService userStateService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void concurrentGemCreditsAreNotLost() throws Exception {
+        User user = newUser(0, 0, 5);
+        int credits = 200;
+
+        List<User> results = runConcurrently(credits,
+                () -> walletService.change(user.getId(), 0, 1, 0, "TEST_CREDIT", "+1 gem"));
+
+        assertThat(results).doesNotContainNull();
+        assertThat(userRepository.findBalance(user.getId()).getGems()).isEqualTo(credits);
+        assertThat(userStateService.get(user.getId()).getGems()).isEqualTo(credits);
+        assertThat(ledgerRows(user, "TEST_CREDIT")).isEqualTo(credits);
+    }
+
+    @Test
+    void concurrentHeartPurchasesNeverOverspend() throws Exception {
+        User user = newUser(0, 1000, 0);
+        int attempts = 12;
+
+        List<User> results = runConcurrently(attempts,
+                () -> walletService.change(user.getId(), 0, -200, 1, "BUY_GEMS", "Mua tim bằng Gems"));
+
+        long bought = results.stream().filter(Objects::nonNull).count();
+        assertThat(bought).isEqualTo(5);
+        WalletBalance balance = userRepository.findBalance(user.getId());
+        assertThat(balance.getGems()).isEqualTo(0);
+        assertThat(balance.getHearts()).isEqualTo(5);
+        assertThat(userStateService.get(user.getId()).getHearts()).isEqualTo(5);
+        assertThat(ledgerRows(user, "BUY_GEMS")).isEqualTo(5);
+    }
+
+    @Test
+    void creditsAndPurchasesInterleaveWithoutLostUpdates() throws Exception {
+        User user = newUser(0, 2000, 0);
+
+        // Một nửa cộng 1 gem, một nửa mua 1 tim giá 10 gems: đủ tiền cho mọi lượt mua
+        List<User> results = runConcurrently(100, new Supplier<>() {
+            private final AtomicInteger next = new AtomicInteger();
+
+            @Override
+            public User get() {
+                return next.getAndIncrement() % 2 == 0
+                        ? walletService.change(user.getId(), 0, 1, 0, "TEST_CREDIT", "+1 gem")
+                        : walletService.change(user.getId(), 0, -10, 1, "BUY_GEMS", "Mua tim bằng Gems");
+            }
+        });
+
+        assertThat(results).doesNotContainNull();
+        WalletBalance balance = userRepository.findBalance(user.getId());
+        assertThat(balance.getGems()).isEqualTo(2000 + 50 - 500);
+        assertThat(balance.getHearts()).isEqualTo(50);
+        assertThat(ledgerRows(user, "TEST_CREDIT")).isEqualTo(50);
+        assertThat(ledgerRows(user, "BUY_GEMS")).isEqualTo(50);
+    }
+
+    @Test
+    void concurrentHeartLossStopsAtZero() throws Exception {
+        User user = newUser(0, 0, 5);
+
+        List<User> results = runConcurrently(20,
+                () -> walletService.loseHearts(user.getId(), 1, "TEST_FAIL", "-1 tim"));
+
+        assertThat(results).doesNotContainNull();
+        assertThat(userRepository.findBalance(user.getId()).getHearts()).isEqualTo(0);
+        assertThat(ledgerRows(user, "TEST_FAIL")).isEqualTo(5);
+    }
+
+    @Test
+    void changeInsideRolledBackTransactionIsDiscarded() {
+        User user = newUser(0, 100, 5);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            User rewarded = walletService.change(user.getId(), 10, 20, 0, "GATE_REWARD", "Rương thưởng");
+            assertThat(rewarded.getGems()).isEqualTo(120);
+            status.setRollbackOnly();
+        });
+
+        assertThat(userRepository.findBalance(user.getId()).getGems()).isEqualTo(100);
+        assertThat(userStateService.get(user.getId()).getGems()).isEqualTo(100);
+        assertThat(ledgerRows(user, "GATE_REWARD")).isZero();
+    }
+
+    @Test
+    void changeInsideCommittedTransactionUpdatesCacheAfterCommit() {
+        User user = newUser(0, 100, 5);
+
+        transactionTemplate.executeWithoutResult(status ->
+                walletService.change(user.getId(), 10, 20, 0, "GATE_REWARD", "Rương thưởng"));
+
+        assertThat(userRepository.findBalance(user.getId()).getGems()).isEqualTo(120);
+        assertThat(userStateService.get(user.getId()).getGems()).isEqualTo(120);
+        assertThat(userStateService.get(user.getId()).getXp()).isEqualTo(10);
+        assertThat(ledgerRows(user, "GATE_REWARD")).isEqualTo(1);
+    }
+
+    private User newUser(int xp, int gems, int hearts) {
+        User user = new User();
+        user.setEmail("wallet-" + UUID.randomUUID() + "@duokid.test");
+        user.setDisplayName("Wallet test");
+        user.setXp(xp);
+        user.setGems(gems);
+        user.setHearts(hearts);
+        user.setGradeLevel("GRADE1");
+        User saved = userRepository.save(user);
+        // Nạp vào cache trước để kiểm tra cả số dư trong UserStateService
+        userStateService.get(saved.getId());
+        return saved;
+    }
+
+    private long ledgerRows(User user, String type) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM shop_transactions WHERE user_id = ? AND type = ?", Long.class, user.getId(), type);
+        return count != null ? count : 0;
+    }
+
+    private static List<User> runConcurrently(int tasks, Supplier<User> action) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<User>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return action.get();
+                }));
+            }
+            start.countDown();
+            List<User> results = new ArrayList<>();
+            for (Future<User> future : futures) results.add(future.get(30, TimeUnit.SECONDS));
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -64,6 +64,14 @@ class GradeResponse(BaseModel):
     commentVi: str
 
 
+class GradeBatchRequest(BaseModel):
+    items: list[GradeRequest]
+
+
+class GradeBatchResponse(BaseModel):
+    results: list[GradeResponse]
+
+
 class ChatRequest(BaseModel):
     message: str
     context: str | None = None
@@ -260,6 +268,12 @@ def grade(req: GradeRequest):
     )
 
 
+# Chấm nhiều câu trong một request (backend Java gom các bài nộp cùng lúc), kết quả theo đúng thứ tự items
+@app.post("/grade/batch", response_model=GradeBatchResponse)
+def grade_batch(req: GradeBatchRequest):
+    return GradeBatchResponse(results=[grade(item) for item in req.items])
+
+
 # ChatBot API
 VOCABULARY_LIBRARY = {
     "apple": {